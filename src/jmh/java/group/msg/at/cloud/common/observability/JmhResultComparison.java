@@ -0,0 +1,94 @@
+package group.msg.at.cloud.common.observability;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH result file with a baseline result file and fails if any benchmark regressed.
+ * <p>
+ * A benchmark regressed, if its throughput dropped by more than the throughput tolerance
+ * or if it allocates more than the allocation tolerance in bytes per operation on top of the baseline.
+ * Benchmarks are matched by name and parameters; benchmarks missing in either file are reported but ignored.
+ * </p>
+ * <pre>
+ * mvn -P jmh test-compile exec:exec -Djmh.main=group.msg.at.cloud.common.observability.JmhResultComparison \
+ *     -Djmh.args="src/jmh/baseline.json target/jmh-result.json [throughputTolerance] [allocationTolerance]"
+ * </pre>
+ */
+public final class JmhResultComparison {
+
+    private static final double DEFAULT_THROUGHPUT_TOLERANCE = 0.10;
+
+    private static final double DEFAULT_ALLOCATION_TOLERANCE = 16.0;
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private JmhResultComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JmhResultComparison <baseline.json> <result.json> [throughputTolerance] [allocationTolerance]");
+            System.exit(2);
+        }
+        double throughputTolerance = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THROUGHPUT_TOLERANCE;
+        double allocationTolerance = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_ALLOCATION_TOLERANCE;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode baselineResult = baseline.get(entry.getKey());
+            if (baselineResult == null) {
+                System.out.printf("NEW        %s%n", entry.getKey());
+                continue;
+            }
+            double baselineScore = baselineResult.path("primaryMetric").path("score").asDouble();
+            double currentScore = entry.getValue().path("primaryMetric").path("score").asDouble();
+            double baselineAllocation = allocationOf(baselineResult);
+            double currentAllocation = allocationOf(entry.getValue());
+            boolean slower = currentScore < baselineScore * (1.0 - throughputTolerance);
+            boolean moreGarbage = !Double.isNaN(baselineAllocation) && !Double.isNaN(currentAllocation)
+                    && currentAllocation > baselineAllocation + allocationTolerance;
+            if (slower || moreGarbage) {
+                regressions++;
+            }
+            System.out.printf("%-10s %s: %.1f -> %.1f %s (%+.1f%%), %.1f -> %.1f B/op%n",
+                    slower || moreGarbage ? "REGRESSED" : "OK", entry.getKey(),
+                    baselineScore, currentScore, entry.getValue().path("primaryMetric").path("scoreUnit").asText(),
+                    (currentScore / baselineScore - 1.0) * 100.0, baselineAllocation, currentAllocation);
+        }
+        baseline.keySet().stream().filter(key -> !current.containsKey(key)).forEach(key -> System.out.printf("MISSING    %s%n", key));
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed%n", regressions);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> read(File resultFile) throws IOException {
+        Map<String, JsonNode> result = new LinkedHashMap<>();
+        for (JsonNode current : new ObjectMapper().readTree(resultFile)) {
+            StringBuilder key = new StringBuilder(current.path("benchmark").asText());
+            Iterator<Map.Entry<String, JsonNode>> params = current.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(key.indexOf("[") < 0 ? "[" : ",").append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            if (key.indexOf("[") >= 0) {
+                key.append(']');
+            }
+            result.put(key.toString(), current);
+        }
+        return result;
+    }
+
+    private static double allocationOf(JsonNode benchmarkResult) {
+        JsonNode allocation = benchmarkResult.path("secondaryMetrics").path(ALLOCATION_METRIC);
+        return allocation.isMissingNode() ? Double.NaN : allocation.path("score").asDouble();
+    }
+}
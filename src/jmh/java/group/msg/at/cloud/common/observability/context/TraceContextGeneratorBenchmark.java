@@ -0,0 +1,47 @@
+package group.msg.at.cloud.common.observability.context;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generating a trace context by {@link TraceContextGenerator} compared to a random {@code UUID},
+ * which draws from a {@code SecureRandom} shared by all threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraceContextGeneratorBenchmark {
+
+    private final TraceContext traceContext = new TraceContext();
+
+    @Benchmark
+    public String newTraceparent() {
+        return TraceContextGenerator.newTraceparent();
+    }
+
+    /**
+     * Generates a trace context and materializes all values added to the MDC and the response header.
+     */
+    @Benchmark
+    public void generateAndMaterialize(Blackhole blackhole) {
+        blackhole.consume(TraceContextGenerator.generate(this.traceContext));
+        blackhole.consume(this.traceContext.getTraceId());
+        blackhole.consume(this.traceContext.getSpanId());
+    }
+
+    @Benchmark
+    public String formatTraceparent() {
+        return TraceContextGenerator.traceparent("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7", "true");
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,90 @@
+package group.msg.at.cloud.common.observability.context;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TraceContextParser} with the former split-based extraction of the trace ID
+ * for each supported trace header format.
+ * <p>
+ * Headers are held in a plain map, since header lookups of mock requests allocate and would hide the cost of parsing.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraceContextParserBenchmark {
+
+    @Param({"w3c", "b3", "b3multi", "jaeger", "jaegerEncoded", "none"})
+    public String traceHeader;
+
+    private final Map<String, String> headers = new HashMap<>();
+
+    private final TraceContext traceContext = new TraceContext();
+
+    @Setup
+    public void setUp() {
+        switch (this.traceHeader) {
+            case "w3c" -> this.headers.put("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+            case "b3" -> this.headers.put("b3", "4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-1-05e3ac9a4f6e3b90");
+            case "b3multi" -> {
+                this.headers.put("X-B3-TraceId", "4bf92f3577b34da6a3ce929d0e0e4736");
+                this.headers.put("X-B3-SpanId", "00f067aa0ba902b7");
+                this.headers.put("X-B3-Sampled", "1");
+            }
+            case "jaeger" -> this.headers.put("uber-trace-id", "4bf92f3577b34da6a3ce929d0e0e4736:00f067aa0ba902b7:0:1");
+            case "jaegerEncoded" -> this.headers.put("uber-trace-id", "4bf92f3577b34da6a3ce929d0e0e4736%3A00f067aa0ba902b7%3A0%3A1");
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Extracts the trace context, but doesn't materialize any IDs.
+     */
+    @Benchmark
+    public boolean parse() {
+        return TraceContextParser.extract(this.headers, Map::get, this.traceContext);
+    }
+
+    /**
+     * Extracts the trace context and materializes trace ID and span ID, as needed for the MDC.
+     */
+    @Benchmark
+    public void parseAndMaterialize(Blackhole blackhole) {
+        if (TraceContextParser.extract(this.headers, Map::get, this.traceContext)) {
+            blackhole.consume(this.traceContext.getTraceId());
+            blackhole.consume(this.traceContext.getSpanId());
+        }
+    }
+
+    /**
+     * Former extraction of the trace ID only, which supports W3C and Jaeger headers only.
+     */
+    @Benchmark
+    public String split() {
+        String w3cTraceHeader = this.headers.get("traceparent");
+        if (w3cTraceHeader != null) {
+            String[] traceparentComponents = w3cTraceHeader.split("-");
+            if (traceparentComponents.length > 1) {
+                return traceparentComponents[1];
+            }
+        }
+        String jaegerTraceHeader = this.headers.get("uber-trace-id");
+        if (jaegerTraceHeader != null) {
+            String[] traceIdComponents = jaegerTraceHeader.split(":");
+            if (traceIdComponents.length == 1) {
+                traceIdComponents = jaegerTraceHeader.split("%3A");
+            }
+            return traceIdComponents[0];
+        }
+        return null;
+    }
+}
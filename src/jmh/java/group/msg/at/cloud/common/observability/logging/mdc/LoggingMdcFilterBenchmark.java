@@ -0,0 +1,70 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request cost of {@link LoggingMdcFilter} adding the trace ID and user ID to the MDC
+ * for requests carrying a W3C trace header, a B3 trace header, a Jaeger trace header or none of them,
+ * either eagerly or lazily; the chain doesn't log, so lazy mode never resolves the context information.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggingMdcFilterBenchmark {
+
+    @Param({"w3c", "b3", "jaeger", "none"})
+    public String traceHeader;
+
+    @Param({"eager", "lazy"})
+    public String mdcMode;
+
+    private LoggingMdcFilter filter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private final FilterChain filterChain = (request, response) -> {
+    };
+
+    @Setup
+    public void setUp() {
+        this.filter = new LoggingMdcFilter();
+        this.filter.setEnabled(true);
+        this.filter.setLazy("lazy".equals(this.mdcMode));
+        this.request = new MockHttpServletRequest("GET", "/api/v1/tasks/4711");
+        switch (this.traceHeader) {
+            case "w3c" -> this.request.addHeader("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+            case "b3" -> this.request.addHeader("b3", "4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-1");
+            case "jaeger" -> this.request.addHeader("uber-trace-id", "4bf92f3577b34da6a3ce929d0e0e4736:00f067aa0ba902b7:0:1");
+            default -> {
+            }
+        }
+        this.response = new MockHttpServletResponse();
+        // security context is bound to the benchmark thread, which is the thread running this setup
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated("benchmark-user", null, List.of()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public void doFilter() throws ServletException, IOException {
+        this.filter.doFilter(this.request, this.response, this.filterChain);
+    }
+}
@@ -0,0 +1,60 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-task cost of propagating the MDC by {@link LoggingMdcPropagator} compared to copying the whole MDC
+ * with {@code MDC.getCopyOfContextMap()}; tasks are run on the benchmark thread to measure capture and restore only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggingMdcPropagatorBenchmark {
+
+    private final LoggingMdcPropagator propagator = new LoggingMdcPropagator(List.of("tenant"));
+
+    private final Runnable task = () -> {
+    };
+
+    @Setup
+    public void setUp() {
+        MDC.put("traceId", "4bf92f3577b34da6a3ce929d0e0e4736");
+        MDC.put("spanId", "00f067aa0ba902b7");
+        MDC.put("sampled", "true");
+        MDC.put("userId", "benchmark-user");
+        MDC.put("tenant", "acme");
+    }
+
+    @TearDown
+    public void tearDown() {
+        MDC.clear();
+    }
+
+    @Benchmark
+    public void decorate() {
+        this.propagator.decorate(this.task).run();
+    }
+
+    @Benchmark
+    public void copyOfContextMap() {
+        Map<String, String> captured = MDC.getCopyOfContextMap();
+        Runnable decorated = () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            MDC.setContextMap(captured);
+            try {
+                this.task.run();
+            } finally {
+                MDC.setContextMap(previous);
+            }
+        };
+        decorated.run();
+    }
+}
@@ -0,0 +1,204 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of the gauges exported by {@link JbossThreadPoolMetrics} against a thread pool MBean
+ * registered with a private MBean server.
+ * <p>
+ * {@code gaugeValue} and {@code scrapeAllGauges} read from a snapshot within its sampling window,
+ * {@code scrapeAllGaugesExpired} samples a new snapshot for every scrape like a scrape interval longer than the window,
+ * and {@code scrapeAllAttributesIndividually} reads each attribute on its own like the gauges did before snapshots.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JbossThreadPoolMetricsBenchmark {
+
+    private MBeanServer mBeanServer;
+
+    private JbossThreadPoolMetrics metrics;
+
+    private SimpleMeterRegistry registry;
+
+    private Gauge activeCount;
+
+    private Gauge[] allGauges;
+
+    private JbossThreadPoolMetrics expiringMetrics;
+
+    private SimpleMeterRegistry expiringRegistry;
+
+    private Gauge[] allExpiringGauges;
+
+    private long nanoTime;
+
+    private ObjectName objectName;
+
+    private String[] attributeNames;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.mBeanServer = MBeanServerFactory.newMBeanServer();
+        this.objectName = new ObjectName("jboss.threads:type=thread-pool,name=\"XNIO-1\"");
+        this.mBeanServer.registerMBean(new ThreadPool(), this.objectName);
+        this.metrics = new JbossThreadPoolMetrics(this.mBeanServer, Tags.empty());
+        this.registry = new SimpleMeterRegistry();
+        this.metrics.bindTo(this.registry);
+        this.activeCount = this.registry.get("undertow.threads.active.count").gauge();
+        this.allGauges = this.registry.getMeters().stream().filter(Gauge.class::isInstance).toArray(Gauge[]::new);
+        this.expiringMetrics = new JbossThreadPoolMetrics(this.mBeanServer, Tags.empty(), JbossThreadPoolMetrics.DEFAULT_SNAPSHOT_WINDOW, () -> this.nanoTime);
+        this.expiringRegistry = new SimpleMeterRegistry();
+        this.expiringMetrics.bindTo(this.expiringRegistry);
+        this.allExpiringGauges = this.expiringRegistry.getMeters().stream().filter(Gauge.class::isInstance).toArray(Gauge[]::new);
+        this.attributeNames = Arrays.stream(ThreadPoolMBean.class.getMethods()).map(method -> method.getName().substring(3)).toArray(String[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.metrics.close();
+        this.registry.close();
+        this.expiringMetrics.close();
+        this.expiringRegistry.close();
+    }
+
+    @Benchmark
+    public double gaugeValue() {
+        return this.activeCount.value();
+    }
+
+    @Benchmark
+    public double scrapeAllGauges() {
+        double result = 0.0;
+        for (Gauge current : this.allGauges) {
+            result += current.value();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public double scrapeAllGaugesExpired() {
+        this.nanoTime += JbossThreadPoolMetrics.DEFAULT_SNAPSHOT_WINDOW.toNanos();
+        double result = 0.0;
+        for (Gauge current : this.allExpiringGauges) {
+            result += current.value();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public double scrapeAllAttributesIndividually() throws Exception {
+        double result = 0.0;
+        for (String current : this.attributeNames) {
+            if (this.mBeanServer.isRegistered(this.objectName)) {
+                result += Double.parseDouble(this.mBeanServer.getAttribute(this.objectName, current).toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Management interface of the JBoss thread pool MBean, reduced to the attributes read by the metrics.
+     */
+    public interface ThreadPoolMBean {
+        int getCorePoolSize();
+
+        int getMaximumPoolSize();
+
+        int getPoolSize();
+
+        int getLargestPoolSize();
+
+        int getActiveCount();
+
+        long getKeepAliveTimeSeconds();
+
+        int getMaximumQueueSize();
+
+        int getQueueSize();
+
+        int getLargestQueueSize();
+
+        long getSubmittedTaskCount();
+
+        long getRejectedTaskCount();
+
+        long getCompletedTaskCount();
+    }
+
+    public static class ThreadPool implements ThreadPoolMBean {
+
+        @Override
+        public int getCorePoolSize() {
+            return 16;
+        }
+
+        @Override
+        public int getMaximumPoolSize() {
+            return 128;
+        }
+
+        @Override
+        public int getPoolSize() {
+            return 42;
+        }
+
+        @Override
+        public int getLargestPoolSize() {
+            return 64;
+        }
+
+        @Override
+        public int getActiveCount() {
+            return 7;
+        }
+
+        @Override
+        public long getKeepAliveTimeSeconds() {
+            return 60;
+        }
+
+        @Override
+        public int getMaximumQueueSize() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return 0;
+        }
+
+        @Override
+        public int getLargestQueueSize() {
+            return 12;
+        }
+
+        @Override
+        public long getSubmittedTaskCount() {
+            return 1_000_000;
+        }
+
+        @Override
+        public long getRejectedTaskCount() {
+            return 0;
+        }
+
+        @Override
+        public long getCompletedTaskCount() {
+            return 999_993;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures admitting and releasing a request with {@link UndertowLoadShedder} including the adaptation of the limit,
+ * both below the share of low priority requests and above it, where the priority is looked up by path, against
+ * a {@code Semaphore} with a fixed number of permits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UndertowLoadShedderBenchmark {
+
+    private static final String[] PATHS = {"/api/v1/customers/42", "/api/v1/orders", "/batch/export", "/actuator/health"};
+
+    private UndertowLoadShedder shedder;
+
+    private UndertowLoadShedder saturatedShedder;
+
+    private Semaphore semaphore;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(100, 10, 1000, Duration.ofSeconds(1), 0.9);
+        this.shedder = new UndertowLoadShedder(limit, 0.5, 0, Duration.ofSeconds(1), List.of("/actuator/**"), List.of("/batch/**"), List.of());
+        this.shedder.bindTo(new SimpleMeterRegistry());
+        AimdConcurrencyLimit saturatedLimit = new AimdConcurrencyLimit(100, 100, 100, Duration.ofSeconds(1), 0.9);
+        this.saturatedShedder = new UndertowLoadShedder(saturatedLimit, 0.5, 0, Duration.ofSeconds(1), List.of("/actuator/**"), List.of("/batch/**"), List.of());
+        for (int i = 0; i < 50; i++) {
+            saturatedLimit.acquire();
+        }
+        this.semaphore = new Semaphore(100);
+    }
+
+    @Benchmark
+    public boolean acquireAndReleaseLoadShedder() {
+        long start = System.nanoTime();
+        boolean result = this.shedder.tryAcquire(PATHS[this.index++ & 3], null);
+        if (result) {
+            this.shedder.release(start, System.nanoTime());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public boolean acquireAndReleaseSaturatedLoadShedder() {
+        long start = System.nanoTime();
+        boolean result = this.saturatedShedder.tryAcquire(PATHS[this.index++ & 3], null);
+        if (result) {
+            this.saturatedShedder.release(start, System.nanoTime());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public boolean acquireAndReleaseSemaphore() {
+        boolean result = this.semaphore.tryAcquire();
+        if (result) {
+            this.semaphore.release();
+        }
+        return result;
+    }
+}
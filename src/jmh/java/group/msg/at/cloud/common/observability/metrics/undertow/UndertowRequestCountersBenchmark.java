@@ -0,0 +1,55 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures counting a response with {@link UndertowRequestCounters} against looking up a Micrometer counter
+ * by method and status tags for every response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UndertowRequestCountersBenchmark {
+
+    private static final HttpString[] METHODS = {Methods.GET, Methods.POST, Methods.DELETE, Methods.PUT};
+
+    private static final int[] STATUS_CODES = {200, 201, 404, 429, 503};
+
+    private UndertowRequestCounters counters;
+
+    private SimpleMeterRegistry registry;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        this.registry = new SimpleMeterRegistry();
+        this.counters = new UndertowRequestCounters();
+        this.counters.bindTo(this.registry);
+    }
+
+    @Benchmark
+    public void recordCounterMatrix() {
+        int current = this.index++;
+        this.counters.record(METHODS[current & 3], STATUS_CODES[current % STATUS_CODES.length]);
+    }
+
+    @Benchmark
+    public void recordTaggedCounter() {
+        int current = this.index++;
+        Counter.builder("micrometer.responses")
+                .tag("method", METHODS[current & 3].toString())
+                .tag("status", Integer.toString(STATUS_CODES[current % STATUS_CODES.length]))
+                .register(this.registry)
+                .increment();
+    }
+}
@@ -0,0 +1,68 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recording an exchange latency with {@link UndertowRouteLatencyMetrics} against a Micrometer timer
+ * publishing the same percentiles, and scraping a percentile of a filled histogram.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UndertowRouteLatencyMetricsBenchmark {
+
+    private UndertowRouteLatencyMetrics metrics;
+
+    private Timer timer;
+
+    private RotatingLatencyHistogram histogram;
+
+    private long[] durations;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        this.metrics = new UndertowRouteLatencyMetrics();
+        this.metrics.bindTo(registry);
+        this.timer = Timer.builder("micrometer.requests")
+                .tag("route", "/api/v1/customers/{id}")
+                .tag("status", "2xx")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+        this.histogram = new RotatingLatencyHistogram(UndertowRouteLatencyMetrics.DEFAULT_EXPIRY.toNanos());
+        this.durations = new long[1024];
+        for (int i = 0; i < this.durations.length; i++) {
+            this.durations[i] = (long) Math.exp(ThreadLocalRandom.current().nextGaussian() * 1.5 + 13);
+            this.histogram.record(this.durations[i], System.nanoTime());
+        }
+    }
+
+    @Benchmark
+    public void recordRouteLatency() {
+        this.metrics.record("/api/v1/customers/{id}", 200, nextDuration(), System.nanoTime());
+    }
+
+    @Benchmark
+    public void recordMicrometerTimer() {
+        this.timer.record(nextDuration(), TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public long percentile() {
+        return this.histogram.percentileNanos(0.99, System.nanoTime());
+    }
+
+    private long nextDuration() {
+        return this.durations[this.index++ & (this.durations.length - 1)];
+    }
+}
@@ -0,0 +1,73 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares logging a trace message as {@code String}, like {@link LoggingRestTraceWriter} does through SLF4J,
+ * with logging it as reusable message by {@link Log4j2RestTraceWriter}.
+ * <p>
+ * Trace messages are encoded by a pattern layout into a random access file appender writing to {@code /dev/null}.
+ * Log4j2 runs in garbage-free mode, which requires thread locals and is switched off by default if the Servlet API
+ * is on the classpath: {@code gc.alloc.rate.norm} of {@code reusableMessage} must be (close to) zero bytes per operation.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog4j2.enableThreadlocals=true", "-Dlog4j2.is.webapp=false", "-Dlog4j2.maxReusableMsgSize=8192", "-Dlog4j2.layoutStringBuilderMaxSize=8192", "-Dlog4j2.encoderCharBufferSize=8192"})
+@State(Scope.Thread)
+public class Log4j2RestTraceWriterBenchmark {
+
+    @Param({"512", "2048"})
+    public int messageLength;
+
+    private LoggerContext loggerContext;
+
+    private Logger logger;
+
+    private Log4j2RestTraceWriter writer;
+
+    private final StringBuilder traceMessage = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.add(builder.newAppender("devnull", "RandomAccessFile")
+                .addAttribute("fileName", "/dev/null")
+                .addAttribute("immediateFlush", false)
+                .add(builder.newLayout("PatternLayout").addAttribute("pattern", "%m%n")));
+        builder.add(builder.newRootLogger(Level.INFO).add(builder.newAppenderRef("devnull")));
+        this.loggerContext = new LoggerContext("rest-trace-benchmark");
+        this.loggerContext.start(builder.build());
+        this.logger = this.loggerContext.getLogger(RestTraceConstants.REST_TRACE_LOGGER_NAME);
+        this.writer = new Log4j2RestTraceWriter(this.logger);
+        while (this.traceMessage.length() < this.messageLength) {
+            this.traceMessage.append("{\"type\":\"REST_REQUEST_IN\",\"method\":\"GET\",\"uri\":\"/api/v1/tasks/4711\"}");
+        }
+        this.traceMessage.setLength(this.messageLength);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.loggerContext.stop();
+    }
+
+    @Benchmark
+    public void string() {
+        this.logger.info(this.traceMessage.toString());
+    }
+
+    @Benchmark
+    public void reusableMessage() {
+        this.writer.write(this.traceMessage);
+    }
+}
@@ -0,0 +1,63 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares allocating and recycling {@link RestTraceMessageBuffers} when building a trace message of typical size.
+ * <p>
+ * Run with the GC profiler: {@code gc.alloc.rate.norm} of {@code recycling} must be (close to) zero bytes per operation,
+ * which proves that building trace messages into recycled buffers produces no garbage; {@code RestTraceMessageBuffersTest}
+ * enforces this on every build for the trace messages of the message builders.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RestTraceMessageBuffersBenchmark {
+
+    /**
+     * Size of the trace message in characters; the larger size exceeds the initial capacity of the buffers.
+     */
+    @Param({"512", "2048"})
+    public int messageLength;
+
+    private RestTraceMessageBuffers allocating;
+
+    private RestTraceMessageBuffers recycling;
+
+    private String messageChunk;
+
+    @Setup
+    public void setUp() {
+        this.allocating = RestTraceMessageBuffers.allocating();
+        this.recycling = RestTraceMessageBuffers.recycling(RestTraceMessageBuffers.DEFAULT_INITIAL_CAPACITY, RestTraceMessageBuffers.DEFAULT_MAX_RETAINED_CAPACITY);
+        this.messageChunk = "x".repeat(64);
+    }
+
+    @Benchmark
+    public int allocating() {
+        return buildMessage(this.allocating);
+    }
+
+    @Benchmark
+    public int recycling() {
+        return buildMessage(this.recycling);
+    }
+
+    private int buildMessage(RestTraceMessageBuffers buffers) {
+        StringBuilder traceMessage = buffers.acquire();
+        try {
+            for (int i = 0; i < this.messageLength; i += this.messageChunk.length()) {
+                traceMessage.append(this.messageChunk);
+            }
+            return traceMessage.length();
+        } finally {
+            buffers.release(traceMessage);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package group.msg.at.cloud.common.observability.web;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link RequestPathSelector} with matching the request path against each {@code PathPattern} in turn,
+ * for an excluded actuator request, an included API request and a request which is neither.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestPathSelectorBenchmark {
+
+    private static final List<String> INCLUDES = List.of("/api/**", "/internal/**");
+
+    private static final List<String> EXCLUDES = List.of("/actuator/**", "/api/v1/ping", "/favicon.ico");
+
+    @Param({"/actuator/health", "/api/v1/tasks/4711", "/static/app.js"})
+    public String path;
+
+    private final RequestPathSelector selector = new RequestPathSelector(INCLUDES, EXCLUDES);
+
+    private final List<PathPattern> includePatterns = INCLUDES.stream().map(PathPatternParser.defaultInstance::parse).toList();
+
+    private final List<PathPattern> excludePatterns = EXCLUDES.stream().map(PathPatternParser.defaultInstance::parse).toList();
+
+    @Benchmark
+    public boolean selector() {
+        return this.selector.selects(this.path);
+    }
+
+    @Benchmark
+    public boolean pathPatterns() {
+        PathContainer pathContainer = PathContainer.parsePath(this.path);
+        for (PathPattern current : this.excludePatterns) {
+            if (current.matches(pathContainer)) {
+                return false;
+            }
+        }
+        for (PathPattern current : this.includePatterns) {
+            if (current.matches(pathContainer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
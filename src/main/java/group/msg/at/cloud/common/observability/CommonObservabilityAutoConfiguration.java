@@ -1,13 +1,16 @@
 package group.msg.at.cloud.common.observability;
 
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationExcludeFilter;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 
 /**
  * This AutoConfiguration is required to allow applications using this library activating provided features.
  */
 @AutoConfiguration
-@ComponentScan(basePackageClasses = CommonObservability.class)
+@ComponentScan(basePackageClasses = CommonObservability.class,
+        excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = AutoConfigurationExcludeFilter.class))
 public class CommonObservabilityAutoConfiguration {
 
 }
@@ -0,0 +1,124 @@
+package group.msg.at.cloud.common.observability.context;
+
+/**
+ * Trace context extracted from the trace headers of a request by {@link TraceContextParser}.
+ * <p>
+ * Instances are mutable and meant to be reused: the parser only records where the trace ID and span ID are located
+ * within the header values, so no strings are created until {@link #getTraceId()} or {@link #getSpanId()} is called.
+ * </p>
+ */
+public final class TraceContext {
+
+    /**
+     * Format of the trace header a trace context has been extracted from.
+     */
+    public enum Format {
+        /**
+         * W3C Trace Context {@code traceparent} header.
+         */
+        W3C,
+        /**
+         * Zipkin B3 single {@code b3} header.
+         */
+        B3_SINGLE,
+        /**
+         * Zipkin B3 multi headers {@code X-B3-TraceId}, {@code X-B3-SpanId}, {@code X-B3-Sampled} and {@code X-B3-Flags}.
+         */
+        B3_MULTI,
+        /**
+         * Jaeger {@code uber-trace-id} header, either raw or URL encoded.
+         */
+        JAEGER
+    }
+
+    private Format format;
+
+    private String traceIdSource;
+
+    private int traceIdStart;
+
+    private int traceIdEnd;
+
+    private String spanIdSource;
+
+    private int spanIdStart;
+
+    private int spanIdEnd;
+
+    private Boolean sampled;
+
+    /**
+     * Returns {@code true}, if this trace context holds a valid trace ID and span ID.
+     */
+    public boolean isValid() {
+        return format != null;
+    }
+
+    /**
+     * Returns the format of the trace header this trace context has been extracted from or {@code null}, if invalid.
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the trace ID as transmitted or {@code null}, if this trace context is invalid.
+     */
+    public String getTraceId() {
+        return format != null ? traceIdSource.substring(traceIdStart, traceIdEnd) : null;
+    }
+
+    /**
+     * Returns the span ID of the caller as transmitted or {@code null}, if this trace context is invalid.
+     */
+    public String getSpanId() {
+        return format != null ? spanIdSource.substring(spanIdStart, spanIdEnd) : null;
+    }
+
+    /**
+     * Returns the sampling decision of the caller or {@code null}, if the caller deferred the decision.
+     */
+    public Boolean getSampled() {
+        return sampled;
+    }
+
+    /**
+     * Appends the trace ID to the given buffer without creating intermediate strings.
+     */
+    public StringBuilder appendTraceId(StringBuilder buffer) {
+        return format != null ? buffer.append(traceIdSource, traceIdStart, traceIdEnd) : buffer;
+    }
+
+    /**
+     * Appends the span ID to the given buffer without creating intermediate strings.
+     */
+    public StringBuilder appendSpanId(StringBuilder buffer) {
+        return format != null ? buffer.append(spanIdSource, spanIdStart, spanIdEnd) : buffer;
+    }
+
+    /**
+     * Resets this trace context to invalid.
+     */
+    public void clear() {
+        this.format = null;
+        this.traceIdSource = null;
+        this.spanIdSource = null;
+        this.sampled = null;
+    }
+
+    void set(Format format, String traceIdSource, int traceIdStart, int traceIdEnd, String spanIdSource, int spanIdStart, int spanIdEnd, Boolean sampled) {
+        this.format = format;
+        this.traceIdSource = traceIdSource;
+        this.traceIdStart = traceIdStart;
+        this.traceIdEnd = traceIdEnd;
+        this.spanIdSource = spanIdSource;
+        this.spanIdStart = spanIdStart;
+        this.spanIdEnd = spanIdEnd;
+        this.sampled = sampled;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceContext{format=" + format + ", traceId=" + getTraceId() + ", spanId=" + getSpanId() + ", sampled=" + sampled + '}';
+    }
+}
@@ -0,0 +1,125 @@
+package group.msg.at.cloud.common.observability.context;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates and formats W3C {@code traceparent} headers without a tracing SDK.
+ * <p>
+ * Random IDs are drawn from {@code ThreadLocalRandom}, which never blocks and doesn't contend between threads;
+ * trace IDs only need to be unique, not unpredictable.
+ * </p>
+ */
+public final class TraceContextGenerator {
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final int TRACEPARENT_LENGTH = 55;
+
+    private static final int TRACE_ID_START = 3;
+
+    private static final int SPAN_ID_START = 36;
+
+    private static final int FLAGS_START = 53;
+
+    private TraceContextGenerator() {
+    }
+
+    /**
+     * Returns a new {@code traceparent} header with a random trace ID and span ID, which is not sampled.
+     */
+    public static String newTraceparent() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long traceIdHigh;
+        long traceIdLow;
+        do {
+            traceIdHigh = random.nextLong();
+            traceIdLow = random.nextLong();
+        } while (traceIdHigh == 0L && traceIdLow == 0L);
+        long spanId;
+        do {
+            spanId = random.nextLong();
+        } while (spanId == 0L);
+        byte[] result = newBuffer(false);
+        writeHex(traceIdHigh, result, TRACE_ID_START);
+        writeHex(traceIdLow, result, TRACE_ID_START + 16);
+        writeHex(spanId, result, SPAN_ID_START);
+        return new String(result, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Generates a new trace context, which is not sampled.
+     *
+     * @param into receives the generated trace context
+     * @return the {@code traceparent} header of the generated trace context
+     */
+    public static String generate(TraceContext into) {
+        String result = newTraceparent();
+        // well-formed by construction, so there is nothing to validate
+        into.set(TraceContext.Format.W3C, result, TRACE_ID_START, TRACE_ID_START + 32, result, SPAN_ID_START, SPAN_ID_START + 16, false);
+        return result;
+    }
+
+    /**
+     * Formats the given trace context as {@code traceparent} header; shorter IDs, like 64-bit trace IDs of B3 headers,
+     * are left-padded with zeros.
+     *
+     * @param traceId trace ID of up to 32 hex digits
+     * @param spanId  span ID of up to 16 hex digits
+     * @param sampled sampling decision; only {@code "true"} sets the sampled flag
+     * @return the {@code traceparent} header or {@code null}, if any ID is missing or invalid
+     */
+    public static String traceparent(String traceId, String spanId, String sampled) {
+        if (traceId == null || spanId == null || traceId.isEmpty() || spanId.isEmpty() || traceId.length() > 32 || spanId.length() > 16) {
+            return null;
+        }
+        byte[] result = newBuffer("true".equals(sampled));
+        if (!copyHex(traceId, result, TRACE_ID_START + 32 - traceId.length()) || !copyHex(spanId, result, SPAN_ID_START + 16 - spanId.length())
+                || isZero(result, TRACE_ID_START, TRACE_ID_START + 32) || isZero(result, SPAN_ID_START, SPAN_ID_START + 16)) {
+            return null;
+        }
+        return new String(result, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] newBuffer(boolean sampled) {
+        byte[] result = new byte[TRACEPARENT_LENGTH];
+        Arrays.fill(result, (byte) '0');
+        result[TRACE_ID_START - 1] = '-';
+        result[SPAN_ID_START - 1] = '-';
+        result[FLAGS_START - 1] = '-';
+        if (sampled) {
+            result[FLAGS_START + 1] = '1';
+        }
+        return result;
+    }
+
+    private static void writeHex(long value, byte[] into, int start) {
+        for (int i = 15; i >= 0; i--) {
+            into[start + i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    private static boolean copyHex(String value, byte[] into, int start) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 'A' && c <= 'F') {
+                c = (char) (c + ('a' - 'A'));
+            } else if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+            into[start + i] = (byte) c;
+        }
+        return true;
+    }
+
+    private static boolean isZero(byte[] value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (value[i] != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,345 @@
+package group.msg.at.cloud.common.observability.context;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiFunction;
+
+/**
+ * Index-based parser for the trace headers of W3C Trace Context, Zipkin B3 and Jaeger.
+ * <p>
+ * Header values are validated in a single pass over their characters; the parser neither splits strings nor allocates,
+ * and malformed values are reported by returning {@code false} instead of throwing exceptions.
+ * If a request carries more than one trace header, the first valid one in the following order wins:
+ * <ol>
+ * <li>W3C {@code traceparent}</li>
+ * <li>B3 single {@code b3}</li>
+ * <li>B3 multi {@code X-B3-TraceId} and {@code X-B3-SpanId}</li>
+ * <li>Jaeger {@code uber-trace-id}</li>
+ * </ol>
+ * </p>
+ */
+public final class TraceContextParser {
+
+    public static final String W3C_TRACEPARENT_HEADER = "traceparent";
+
+    public static final String W3C_BAGGAGE_HEADER = "baggage";
+
+    public static final String B3_SINGLE_HEADER = "b3";
+
+    public static final String B3_TRACE_ID_HEADER = "X-B3-TraceId";
+
+    public static final String B3_SPAN_ID_HEADER = "X-B3-SpanId";
+
+    public static final String B3_SAMPLED_HEADER = "X-B3-Sampled";
+
+    public static final String B3_FLAGS_HEADER = "X-B3-Flags";
+
+    public static final String JAEGER_HEADER = "uber-trace-id";
+
+    private static final int W3C_VERSION_00_LENGTH = 55;
+
+    private TraceContextParser() {
+    }
+
+    /**
+     * Extracts the trace context from the trace headers of the given carrier according to the precedence order.
+     * <p>
+     * Pass a non-capturing method reference like {@code HttpServletRequest::getHeader} as header accessor
+     * to keep the extraction free of allocations.
+     * </p>
+     *
+     * @param carrier carrier of the headers, e.g. a request
+     * @param headers returns the first value of the header with the given name or {@code null}, if there is none
+     * @param into    receives the extracted trace context
+     * @return {@code true}, if a valid trace context has been found
+     */
+    public static <C> boolean extract(C carrier, BiFunction<C, String, String> headers, TraceContext into) {
+        into.clear();
+        if (parseTraceparent(headers.apply(carrier, W3C_TRACEPARENT_HEADER), into)
+                || parseB3Single(headers.apply(carrier, B3_SINGLE_HEADER), into)) {
+            return true;
+        }
+        String b3TraceId = headers.apply(carrier, B3_TRACE_ID_HEADER);
+        if (b3TraceId != null && parseB3Multi(b3TraceId, headers.apply(carrier, B3_SPAN_ID_HEADER),
+                headers.apply(carrier, B3_SAMPLED_HEADER), headers.apply(carrier, B3_FLAGS_HEADER), into)) {
+            return true;
+        }
+        return parseJaeger(headers.apply(carrier, JAEGER_HEADER), into);
+    }
+
+    /**
+     * Parses a W3C {@code traceparent} header: {@code version-traceid-parentid-traceflags}.
+     *
+     * @param header value of the header; may be {@code null}
+     * @param into   receives the trace context, if the header is valid; left untouched otherwise
+     * @return {@code true}, if the header is valid
+     */
+    public static boolean parseTraceparent(String header, TraceContext into) {
+        if (header == null || header.length() < W3C_VERSION_00_LENGTH) {
+            return false;
+        }
+        if (!isLowerHex(header, 0, 2) || header.charAt(2) != '-' || (header.charAt(0) == 'f' && header.charAt(1) == 'f')) {
+            return false;
+        }
+        // version 00 has a fixed length, future versions may append fields after another dash
+        boolean version00 = header.charAt(0) == '0' && header.charAt(1) == '0';
+        if (version00 ? header.length() != W3C_VERSION_00_LENGTH
+                : header.length() > W3C_VERSION_00_LENGTH && header.charAt(W3C_VERSION_00_LENGTH) != '-') {
+            return false;
+        }
+        if (!isLowerHex(header, 3, 35) || header.charAt(35) != '-' || isZero(header, 3, 35)
+                || !isLowerHex(header, 36, 52) || header.charAt(52) != '-' || isZero(header, 36, 52)
+                || !isLowerHex(header, 53, 55)) {
+            return false;
+        }
+        boolean sampled = (hexValue(header.charAt(54)) & 1) != 0;
+        into.set(TraceContext.Format.W3C, header, 3, 35, header, 36, 52, sampled);
+        return true;
+    }
+
+    /**
+     * Parses a B3 single header: {@code traceid-spanid[-sampled[-parentspanid]]}.
+     * <p>
+     * A header carrying a sampling decision only is not a valid trace context.
+     * </p>
+     *
+     * @param header value of the header; may be {@code null}
+     * @param into   receives the trace context, if the header is valid; left untouched otherwise
+     * @return {@code true}, if the header is valid
+     */
+    public static boolean parseB3Single(String header, TraceContext into) {
+        if (header == null) {
+            return false;
+        }
+        int length = header.length();
+        int traceIdEnd = header.indexOf('-');
+        if ((traceIdEnd != 16 && traceIdEnd != 32) || !isLowerHex(header, 0, traceIdEnd) || isZero(header, 0, traceIdEnd)) {
+            return false;
+        }
+        int spanIdStart = traceIdEnd + 1;
+        int spanIdEnd = spanIdStart + 16;
+        if (length < spanIdEnd || !isLowerHex(header, spanIdStart, spanIdEnd) || isZero(header, spanIdStart, spanIdEnd)) {
+            return false;
+        }
+        Boolean sampled = null;
+        if (length > spanIdEnd) {
+            if (length < spanIdEnd + 2 || header.charAt(spanIdEnd) != '-') {
+                return false;
+            }
+            char sampling = header.charAt(spanIdEnd + 1);
+            if (sampling == '1' || sampling == 'd') {
+                sampled = Boolean.TRUE;
+            } else if (sampling == '0') {
+                sampled = Boolean.FALSE;
+            } else {
+                return false;
+            }
+            int parentSpanIdStart = spanIdEnd + 3;
+            if (length > spanIdEnd + 2 && (length != parentSpanIdStart + 16 || header.charAt(spanIdEnd + 2) != '-'
+                    || !isLowerHex(header, parentSpanIdStart, length))) {
+                return false;
+            }
+        }
+        into.set(TraceContext.Format.B3_SINGLE, header, 0, traceIdEnd, header, spanIdStart, spanIdEnd, sampled);
+        return true;
+    }
+
+    /**
+     * Parses the B3 multi headers.
+     *
+     * @param traceId value of the {@code X-B3-TraceId} header; may be {@code null}
+     * @param spanId  value of the {@code X-B3-SpanId} header; may be {@code null}
+     * @param sampled value of the {@code X-B3-Sampled} header; may be {@code null}
+     * @param flags   value of the {@code X-B3-Flags} header; may be {@code null}
+     * @param into    receives the trace context, if the headers are valid; left untouched otherwise
+     * @return {@code true}, if the headers are valid
+     */
+    public static boolean parseB3Multi(String traceId, String spanId, String sampled, String flags, TraceContext into) {
+        if (traceId == null || spanId == null) {
+            return false;
+        }
+        int traceIdLength = traceId.length();
+        if ((traceIdLength != 16 && traceIdLength != 32) || !isLowerHex(traceId, 0, traceIdLength) || isZero(traceId, 0, traceIdLength)) {
+            return false;
+        }
+        if (spanId.length() != 16 || !isLowerHex(spanId, 0, 16) || isZero(spanId, 0, 16)) {
+            return false;
+        }
+        Boolean sampling = null;
+        if ("1".equals(flags)) {
+            // debug implies sampled
+            sampling = Boolean.TRUE;
+        } else if ("1".equals(sampled) || "true".equalsIgnoreCase(sampled)) {
+            sampling = Boolean.TRUE;
+        } else if ("0".equals(sampled) || "false".equalsIgnoreCase(sampled)) {
+            sampling = Boolean.FALSE;
+        }
+        into.set(TraceContext.Format.B3_MULTI, traceId, 0, traceIdLength, spanId, 0, 16, sampling);
+        return true;
+    }
+
+    /**
+     * Parses a Jaeger {@code uber-trace-id} header: {@code traceid:spanid:parentspanid:flags},
+     * where the colons may be URL encoded as {@code %3A}.
+     *
+     * @param header value of the header; may be {@code null}
+     * @param into   receives the trace context, if the header is valid; left untouched otherwise
+     * @return {@code true}, if the header is valid
+     */
+    public static boolean parseJaeger(String header, TraceContext into) {
+        if (header == null) {
+            return false;
+        }
+        int traceIdEnd = hexRunEnd(header, 0);
+        if (traceIdEnd == 0 || traceIdEnd > 32 || isZero(header, 0, traceIdEnd)) {
+            return false;
+        }
+        int spanIdStart = traceIdEnd + separatorLength(header, traceIdEnd);
+        int spanIdEnd = hexRunEnd(header, spanIdStart);
+        if (spanIdStart == traceIdEnd || spanIdEnd == spanIdStart || spanIdEnd - spanIdStart > 16 || isZero(header, spanIdStart, spanIdEnd)) {
+            return false;
+        }
+        int parentSpanIdStart = spanIdEnd + separatorLength(header, spanIdEnd);
+        int parentSpanIdEnd = hexRunEnd(header, parentSpanIdStart);
+        if (parentSpanIdStart == spanIdEnd || parentSpanIdEnd == parentSpanIdStart || parentSpanIdEnd - parentSpanIdStart > 16) {
+            return false;
+        }
+        int flagsStart = parentSpanIdEnd + separatorLength(header, parentSpanIdEnd);
+        int flagsEnd = hexRunEnd(header, flagsStart);
+        if (flagsStart == parentSpanIdEnd || flagsEnd == flagsStart || flagsEnd - flagsStart > 2 || flagsEnd != header.length()) {
+            return false;
+        }
+        boolean sampled = (hexValue(header.charAt(flagsEnd - 1)) & 1) != 0;
+        into.set(TraceContext.Format.JAEGER, header, 0, traceIdEnd, header, spanIdStart, spanIdEnd, sampled);
+        return true;
+    }
+
+    /**
+     * Returns the value of the given key in a W3C {@code baggage} header or {@code null}, if the key is not present.
+     * <p>
+     * Only the returned value is allocated; it is percent-decoded, if necessary.
+     * </p>
+     *
+     * @param header value of the header; may be {@code null}
+     * @param key    key of the baggage entry, case-sensitive
+     */
+    public static String baggageValue(String header, String key) {
+        if (header == null) {
+            return null;
+        }
+        int length = header.length();
+        int memberStart = 0;
+        while (memberStart < length) {
+            int memberEnd = header.indexOf(',', memberStart);
+            if (memberEnd < 0) {
+                memberEnd = length;
+            }
+            int keyStart = skipWhitespace(header, memberStart, memberEnd);
+            int equals = header.indexOf('=', keyStart);
+            if (equals >= 0 && equals < memberEnd) {
+                int keyEnd = trimWhitespace(header, keyStart, equals);
+                if (keyEnd - keyStart == key.length() && header.startsWith(key, keyStart)) {
+                    int valueStart = skipWhitespace(header, equals + 1, memberEnd);
+                    int valueEnd = header.indexOf(';', valueStart);
+                    if (valueEnd < 0 || valueEnd > memberEnd) {
+                        valueEnd = memberEnd;
+                    }
+                    return percentDecode(header, valueStart, trimWhitespace(header, valueStart, valueEnd));
+                }
+            }
+            memberStart = memberEnd + 1;
+        }
+        return null;
+    }
+
+    private static String percentDecode(String value, int start, int end) {
+        int firstEscape = value.indexOf('%', start);
+        if (firstEscape < 0 || firstEscape >= end) {
+            return value.substring(start, end);
+        }
+        byte[] bytes = new byte[end - start];
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= end || !isHex(value.charAt(i + 1)) || !isHex(value.charAt(i + 2))) {
+                    // malformed escape, keep the value as transmitted
+                    return value.substring(start, end);
+                }
+                bytes[count++] = (byte) ((hexValue(value.charAt(i + 1)) << 4) | hexValue(value.charAt(i + 2)));
+                i += 2;
+            } else if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            } else {
+                // baggage values are restricted to ASCII, anything else is not encoded by the sender
+                return value.substring(start, end);
+            }
+        }
+        return new String(bytes, 0, count, StandardCharsets.UTF_8);
+    }
+
+    private static int skipWhitespace(String value, int start, int end) {
+        while (start < end && (value.charAt(start) == ' ' || value.charAt(start) == '\t')) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(String value, int start, int end) {
+        while (end > start && (value.charAt(end - 1) == ' ' || value.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the length of the Jaeger field separator at the given index or {@code 0}, if there is none.
+     */
+    private static int separatorLength(String value, int index) {
+        if (index < value.length() && value.charAt(index) == ':') {
+            return 1;
+        }
+        if (index + 2 < value.length() && value.charAt(index) == '%' && value.charAt(index + 1) == '3'
+                && (value.charAt(index + 2) == 'A' || value.charAt(index + 2) == 'a')) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private static int hexRunEnd(String value, int start) {
+        int result = start;
+        while (result < value.length() && isHex(value.charAt(result))) {
+            result++;
+        }
+        return result;
+    }
+
+    private static boolean isLowerHex(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static int hexValue(char c) {
+        if (c <= '9') {
+            return c - '0';
+        }
+        return (c | 0x20) - 'a' + 10;
+    }
+}
@@ -1,16 +1,40 @@
 package group.msg.at.cloud.common.observability.logging.mdc;
 
+import ch.qos.logback.classic.LoggerContext;
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configuration for logging context information.
+ * <p>
+ * Servlet-based web applications get a servlet filter, reactive web applications get a web filter
+ * plus automatic propagation of the context information from the Reactor {@code Context} to the MDC.
+ * The context information is propagated to asynchronous tasks as well, and to {@code WebClient} exchanges
+ * in reactive web applications or, if switched on explicitly, in any application.
+ * </p>
+ * <p>
+ * If trace context propagation is switched on, missing trace contexts are generated and the trace context is passed
+ * on to callers and downstream services as W3C {@code traceparent} header.
+ * </p>
  */
 @Configuration
 @ConditionalOnClass(name = "org.springframework.security.core.context.SecurityContextHolder")
@@ -25,15 +49,212 @@ public class LoggingMdcAutoConfiguration {
     @Value("${cnj.observability.logging.mdc.urlPatterns:/api/*}")
     private String urlPatterns;
 
+    @Value("${cnj.observability.logging.mdc.includes:}")
+    private List<String> includes;
+
+    @Value("${cnj.observability.logging.mdc.excludes:${management.endpoints.web.base-path:/actuator}/**}")
+    private List<String> excludes;
+
+    @Value("${cnj.observability.logging.mdc.baggageKeys:}")
+    private List<String> baggageKeys;
+
+    @Value("${cnj.observability.logging.mdc.mode:eager}")
+    private String mode;
+
+    @Value("${cnj.observability.logging.mdc.traceparent.enabled:false}")
+    private boolean traceparentEnabled;
+
     @Bean
     public FilterRegistrationBean<LoggingMdcFilter> loggingMdcFilter() {
-        logger.info("*** CONFIG *** Adding logging MDC filter to application context with enabled [{}]", enabled);
+        RequestPathSelector pathSelector = pathSelector(this.includes, this.excludes, this.urlPatterns);
+        logger.info("*** CONFIG *** Adding logging MDC filter to application context with enabled [{}], mode [{}], baggage keys {}, trace context propagation [{}] and path selector {}",
+                enabled, mode, baggageKeys, traceparentEnabled, pathSelector);
+        if (!"eager".equalsIgnoreCase(this.mode) && !"lazy".equalsIgnoreCase(this.mode)) {
+            throw new IllegalArgumentException(String.format("Unsupported logging MDC mode [%s]; expected one of [eager, lazy]", this.mode));
+        }
         FilterRegistrationBean<LoggingMdcFilter> result = new FilterRegistrationBean<>();
         LoggingMdcFilter filter = new LoggingMdcFilter();
         filter.setEnabled(this.enabled);
+        filter.setBaggageKeys(this.baggageKeys);
+        filter.setLazy("lazy".equalsIgnoreCase(this.mode));
+        filter.setTraceContextPropagation(this.traceparentEnabled);
+        filter.setPathSelector(pathSelector);
         result.setFilter(filter);
-        result.addUrlPatterns(this.urlPatterns);
+        // requests are selected by the filter itself, which matches paths within the application
+        result.addUrlPatterns("/*");
         result.setOrder(5000);
         return result;
     }
+
+    /**
+     * Propagates the context information to tasks run by the auto-configured {@code applicationTaskExecutor}; backs off,
+     * if the application defines a task decorator of its own, since Spring Boot only applies a unique one.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "cnj.observability.logging.mdc.propagation.enabled", havingValue = "true", matchIfMissing = true)
+    @ConditionalOnMissingBean(TaskDecorator.class)
+    public LoggingMdcPropagator loggingMdcPropagator() {
+        logger.info("*** CONFIG *** Adding logging MDC propagator to application context as task decorator");
+        return new LoggingMdcPropagator(this.baggageKeys);
+    }
+
+    /**
+     * Resolves the context information of lazy mode when Logback is about to log an event.
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.security.core.context.SecurityContextHolder", "ch.qos.logback.classic.LoggerContext"})
+    @ConditionalOnProperty(name = "cnj.observability.logging.mdc.mode", havingValue = "lazy")
+    static class LogbackLazyLoggingMdcConfiguration {
+
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Bean(destroyMethod = "stop")
+        public LoggingMdcTurboFilter loggingMdcTurboFilter() {
+            LoggingMdcTurboFilter result = new LoggingMdcTurboFilter();
+            if (LoggerFactory.getILoggerFactory() instanceof LoggerContext loggerContext) {
+                logger.info("*** CONFIG *** Adding logging MDC turbo filter to Logback for lazy mode");
+                result.setContext(loggerContext);
+                result.setName("cnjLoggingMdc");
+                result.start();
+                loggerContext.addTurboFilter(result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Propagates the context information to {@code WebClient} exchanges, if Reactor context propagation is present.
+     * Since this switches on Reactor's automatic context propagation for the whole JVM, applications which are not
+     * reactive web applications have to opt in.
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.security.core.context.SecurityContextHolder", "io.micrometer.context.ContextRegistry",
+            "org.springframework.web.reactive.function.client.WebClient"})
+    @ConditionalOnProperty(name = {"cnj.observability.logging.mdc.enabled", "cnj.observability.logging.mdc.propagation.enabled"}, havingValue = "true", matchIfMissing = true)
+    @Conditional(ReactiveOrReactorPropagationEnabledCondition.class)
+    static class WebClientLoggingMdcConfiguration {
+
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Value("${cnj.observability.logging.mdc.baggageKeys:}")
+        private List<String> baggageKeys;
+
+        @Bean
+        public LoggingMdcWebClientCustomizer loggingMdcWebClientCustomizer(ObjectProvider<LoggingMdcPropagator> loggingMdcPropagator) {
+            logger.info("*** CONFIG *** Adding logging MDC web client customizer to application context");
+            LoggingMdcContextPropagation.install(this.baggageKeys);
+            // the propagator bean backs off in favour of a task decorator of the application
+            LoggingMdcPropagator propagator = loggingMdcPropagator.getIfAvailable(() -> new LoggingMdcPropagator(this.baggageKeys));
+            return new LoggingMdcWebClientCustomizer(new LoggingMdcExchangeFilterFunction(propagator));
+        }
+    }
+
+    /**
+     * Propagates the trace context to downstream services called by {@code RestTemplate}s built by the auto-configured
+     * {@code RestTemplateBuilder}.
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.security.core.context.SecurityContextHolder", "org.springframework.web.client.RestTemplate"})
+    @ConditionalOnProperty(name = "cnj.observability.logging.mdc.traceparent.enabled", havingValue = "true")
+    static class RestTemplateTraceparentConfiguration {
+
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Bean
+        public RestTemplateCustomizer loggingMdcTraceparentRestTemplateCustomizer() {
+            logger.info("*** CONFIG *** Adding logging MDC traceparent interceptor customizer to application context");
+            LoggingMdcTraceparentInterceptor interceptor = new LoggingMdcTraceparentInterceptor();
+            return restTemplate -> {
+                List<ClientHttpRequestInterceptor> customizedInterceptors = new ArrayList<>(restTemplate.getInterceptors());
+                customizedInterceptors.add(interceptor);
+                restTemplate.setInterceptors(customizedInterceptors);
+            };
+        }
+    }
+
+    /**
+     * Propagates the trace context to downstream services called by {@code WebClient}s built by the auto-configured
+     * {@code WebClient.Builder}.
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.security.core.context.SecurityContextHolder", "org.springframework.web.reactive.function.client.WebClient"})
+    @ConditionalOnProperty(name = "cnj.observability.logging.mdc.traceparent.enabled", havingValue = "true")
+    static class WebClientTraceparentConfiguration {
+
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Bean
+        public WebClientCustomizer loggingMdcTraceparentWebClientCustomizer() {
+            logger.info("*** CONFIG *** Adding logging MDC traceparent web client customizer to application context");
+            LoggingMdcTraceparentExchangeFilterFunction filterFunction = new LoggingMdcTraceparentExchangeFilterFunction();
+            return webClientBuilder -> webClientBuilder.filter(filterFunction);
+        }
+    }
+
+    /**
+     * Adds context information to reactive web applications, if Reactor context propagation is present.
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @ConditionalOnClass(name = {"org.springframework.security.core.context.SecurityContextHolder", "io.micrometer.context.ContextRegistry"})
+    @ConditionalOnProperty(name = "cnj.observability.logging.mdc.enabled", havingValue = "true", matchIfMissing = true)
+    static class ReactiveLoggingMdcConfiguration {
+
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Value("${cnj.observability.logging.mdc.enabled:true}")
+        private boolean enabled;
+
+        @Value("${cnj.observability.logging.mdc.baggageKeys:}")
+        private List<String> baggageKeys;
+
+        @Value("${cnj.observability.logging.mdc.urlPatterns:/api/*}")
+        private String urlPatterns;
+
+        @Value("${cnj.observability.logging.mdc.includes:}")
+        private List<String> includes;
+
+        @Value("${cnj.observability.logging.mdc.excludes:${management.endpoints.web.base-path:/actuator}/**}")
+        private List<String> excludes;
+
+        @Value("${cnj.observability.logging.mdc.traceparent.enabled:false}")
+        private boolean traceparentEnabled;
+
+        @Bean
+        public LoggingMdcWebFilter loggingMdcWebFilter() {
+            RequestPathSelector pathSelector = pathSelector(this.includes, this.excludes, this.urlPatterns);
+            logger.info("*** CONFIG *** Adding logging MDC web filter to application context with enabled [{}], baggage keys {}, trace context propagation [{}] and path selector {}",
+                    enabled, baggageKeys, traceparentEnabled, pathSelector);
+            LoggingMdcContextPropagation.install(this.baggageKeys);
+            LoggingMdcWebFilter result = new LoggingMdcWebFilter();
+            result.setEnabled(this.enabled);
+            result.setBaggageKeys(this.baggageKeys);
+            result.setTraceContextPropagation(this.traceparentEnabled);
+            result.setPathSelector(pathSelector);
+            result.setOrder(5000);
+            return result;
+        }
+    }
+
+    static class ReactiveOrReactorPropagationEnabledCondition extends AnyNestedCondition {
+
+        ReactiveOrReactorPropagationEnabledCondition() {
+            super(ConfigurationPhase.PARSE_CONFIGURATION);
+        }
+
+        @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+        static class ReactiveWebApplication {
+        }
+
+        @ConditionalOnProperty(name = "cnj.observability.logging.mdc.propagation.reactor.enabled", havingValue = "true")
+        static class ReactorPropagationEnabled {
+        }
+    }
+
+    /**
+     * Selects requests by the given include patterns or, if there are none, by the legacy servlet URL pattern.
+     */
+    static RequestPathSelector pathSelector(List<String> includes, List<String> excludes, String urlPatterns) {
+        return new RequestPathSelector(includes.isEmpty() ? List.of(RequestPathSelector.fromServletUrlPattern(urlPatterns)) : includes, excludes);
+    }
 }
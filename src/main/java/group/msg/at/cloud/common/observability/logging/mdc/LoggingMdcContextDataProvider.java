@@ -0,0 +1,48 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import org.apache.logging.log4j.core.util.ContextDataProvider;
+import org.apache.logging.log4j.util.SortedArrayStringMap;
+import org.apache.logging.log4j.util.StringMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Log4j2 {@code ContextDataProvider} which adds the {@link LoggingMdcLazyContext lazy context information}
+ * to each log event Log4j2 actually creates, i.e. only to events passing the level of their logger.
+ * <p>
+ * Registered with Log4j2 via {@code META-INF/services}, since Log4j2 collects its providers once when it initializes,
+ * before any Spring configuration is read; supplies nothing unless {@link LoggingMdcFilter} runs in lazy mode. Without
+ * bound context information, e.g. in eager mode, it returns a shared empty map instead of allocating one per log event.
+ * </p>
+ */
+public final class LoggingMdcContextDataProvider implements ContextDataProvider {
+
+    private static final StringMap EMPTY = frozen(new SortedArrayStringMap(0));
+
+    @Override
+    public Map<String, String> supplyContextData() {
+        if (!LoggingMdcLazyContext.isBound()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> result = new HashMap<>(8);
+        LoggingMdcLazyContext.forEach(result::put);
+        return result;
+    }
+
+    @Override
+    public StringMap supplyStringMap() {
+        if (!LoggingMdcLazyContext.isBound()) {
+            return EMPTY;
+        }
+        StringMap result = new SortedArrayStringMap(8);
+        LoggingMdcLazyContext.forEach(result::putValue);
+        return frozen(result);
+    }
+
+    private static StringMap frozen(StringMap map) {
+        map.freeze();
+        return map;
+    }
+}
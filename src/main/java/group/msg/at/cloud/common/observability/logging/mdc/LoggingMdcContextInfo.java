@@ -0,0 +1,33 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import group.msg.at.cloud.common.observability.context.TraceContext;
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
+
+import java.util.List;
+
+/**
+ * Names of the context information shared by all logging MDC filters.
+ */
+final class LoggingMdcContextInfo {
+
+    static final String MDC_PROPERTY_NAME_TRACE_ID = "traceId";
+
+    static final String MDC_PROPERTY_NAME_SPAN_ID = "spanId";
+
+    static final String MDC_PROPERTY_NAME_SAMPLED = "sampled";
+
+    static final String MDC_PROPERTY_NAME_USER_ID = "userId";
+
+    /**
+     * Selects all requests except the ones of the actuator endpoints at their default base path.
+     */
+    static final RequestPathSelector DEFAULT_PATH_SELECTOR = new RequestPathSelector(List.of(), List.of("/actuator/**"));
+
+    /**
+     * Reusable trace context per thread, since servlet filters process a request on a single thread.
+     */
+    static final ThreadLocal<TraceContext> TRACE_CONTEXTS = ThreadLocal.withInitial(TraceContext::new);
+
+    private LoggingMdcContextInfo() {
+    }
+}
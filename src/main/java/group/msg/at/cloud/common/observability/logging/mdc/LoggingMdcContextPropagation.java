@@ -0,0 +1,126 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.context.ThreadLocalAccessor;
+import org.slf4j.MDC;
+import reactor.core.publisher.Hooks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Propagates the context information added to the Reactor {@code Context} by {@link LoggingMdcWebFilter}
+ * to the MDC of whichever thread processes a signal.
+ * <p>
+ * Relies on Reactor's automatic context propagation: Reactor restores the MDC entries from the {@code Context}
+ * only where a signal crosses a thread boundary and resets them afterwards, instead of each operator copying
+ * the MDC on every signal.
+ * </p>
+ */
+public final class LoggingMdcContextPropagation {
+
+    /**
+     * Key of the trace ID in the Reactor {@code Context}.
+     */
+    public static final String TRACE_ID_CONTEXT_KEY = "cnj.observability.mdc.traceId";
+
+    /**
+     * Key of the span ID in the Reactor {@code Context}.
+     */
+    public static final String SPAN_ID_CONTEXT_KEY = "cnj.observability.mdc.spanId";
+
+    /**
+     * Key of the sampling decision in the Reactor {@code Context}.
+     */
+    public static final String SAMPLED_CONTEXT_KEY = "cnj.observability.mdc.sampled";
+
+    /**
+     * Prefix of the keys of baggage entries in the Reactor {@code Context}; followed by the key of the baggage entry.
+     */
+    public static final String BAGGAGE_CONTEXT_KEY_PREFIX = "cnj.observability.mdc.baggage.";
+
+    /**
+     * Key of the user ID in the Reactor {@code Context}.
+     */
+    public static final String USER_ID_CONTEXT_KEY = "cnj.observability.mdc.userId";
+
+    private static final AtomicBoolean installed = new AtomicBoolean();
+
+    private LoggingMdcContextPropagation() {
+    }
+
+    /**
+     * Registers the MDC accessors with the global {@code ContextRegistry} and switches on Reactor's automatic
+     * context propagation; subsequent invocations have no effect.
+     */
+    public static void install() {
+        install(List.of());
+    }
+
+    /**
+     * Same as {@link #install()}, but registers MDC accessors for the given baggage entries as well;
+     * accessors of baggage entries are replaced by subsequent invocations.
+     */
+    public static void install(Collection<String> baggageKeys) {
+        ContextRegistry registry = ContextRegistry.getInstance();
+        if (installed.compareAndSet(false, true)) {
+            registry.registerThreadLocalAccessor(new MdcAccessor(TRACE_ID_CONTEXT_KEY, LoggingMdcContextInfo.MDC_PROPERTY_NAME_TRACE_ID));
+            registry.registerThreadLocalAccessor(new MdcAccessor(SPAN_ID_CONTEXT_KEY, LoggingMdcContextInfo.MDC_PROPERTY_NAME_SPAN_ID));
+            registry.registerThreadLocalAccessor(new MdcAccessor(SAMPLED_CONTEXT_KEY, LoggingMdcContextInfo.MDC_PROPERTY_NAME_SAMPLED));
+            registry.registerThreadLocalAccessor(new MdcAccessor(USER_ID_CONTEXT_KEY, LoggingMdcContextInfo.MDC_PROPERTY_NAME_USER_ID));
+            Hooks.enableAutomaticContextPropagation();
+        }
+        for (String current : baggageKeys) {
+            registry.registerThreadLocalAccessor(new MdcAccessor(BAGGAGE_CONTEXT_KEY_PREFIX + current, current));
+        }
+    }
+
+    /**
+     * Returns the key in the Reactor {@code Context} of the given MDC property.
+     */
+    static String contextKeyOf(String mdcPropertyName) {
+        return switch (mdcPropertyName) {
+            case LoggingMdcContextInfo.MDC_PROPERTY_NAME_TRACE_ID -> TRACE_ID_CONTEXT_KEY;
+            case LoggingMdcContextInfo.MDC_PROPERTY_NAME_SPAN_ID -> SPAN_ID_CONTEXT_KEY;
+            case LoggingMdcContextInfo.MDC_PROPERTY_NAME_SAMPLED -> SAMPLED_CONTEXT_KEY;
+            case LoggingMdcContextInfo.MDC_PROPERTY_NAME_USER_ID -> USER_ID_CONTEXT_KEY;
+            default -> BAGGAGE_CONTEXT_KEY_PREFIX + mdcPropertyName;
+        };
+    }
+
+    /**
+     * {@code ThreadLocalAccessor} which maps a single key of the Reactor {@code Context} to a single MDC property.
+     */
+    static final class MdcAccessor implements ThreadLocalAccessor<String> {
+
+        private final String contextKey;
+
+        private final String mdcPropertyName;
+
+        MdcAccessor(String contextKey, String mdcPropertyName) {
+            this.contextKey = contextKey;
+            this.mdcPropertyName = mdcPropertyName;
+        }
+
+        @Override
+        public Object key() {
+            return this.contextKey;
+        }
+
+        @Override
+        public String getValue() {
+            return MDC.get(this.mdcPropertyName);
+        }
+
+        @Override
+        public void setValue(String value) {
+            MDC.put(this.mdcPropertyName, value);
+        }
+
+        @Override
+        public void setValue() {
+            MDC.remove(this.mdcPropertyName);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * {@code ExchangeFilterFunction} which carries the MDC of the thread subscribing to a {@code WebClient} exchange
+ * over to the threads processing the exchange.
+ * <p>
+ * The captured MDC properties are written to the Reactor {@code Context} of the exchange, from where
+ * {@link LoggingMdcContextPropagation} restores them; properties already present in the {@code Context},
+ * e.g. within a WebFlux exchange, are left untouched.
+ * </p>
+ */
+public final class LoggingMdcExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private final LoggingMdcPropagator propagator;
+
+    public LoggingMdcExchangeFilterFunction(LoggingMdcPropagator propagator) {
+        this.propagator = propagator;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        // invoked on subscription, so the MDC is the one of the subscribing thread
+        LoggingMdcSnapshot snapshot = this.propagator.capture();
+        if (snapshot.isEmpty()) {
+            return next.exchange(request);
+        }
+        return next.exchange(request).contextWrite(context -> addContextInfo(context, snapshot));
+    }
+
+    private static Context addContextInfo(Context context, LoggingMdcSnapshot snapshot) {
+        Context result = context;
+        for (int i = 0; i < snapshot.size(); i++) {
+            String value = snapshot.value(i);
+            if (value != null) {
+                String contextKey = LoggingMdcContextPropagation.contextKeyOf(snapshot.propertyName(i));
+                if (!result.hasKey(contextKey)) {
+                    result = result.put(contextKey, value);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -1,5 +1,9 @@
 package group.msg.at.cloud.common.observability.logging.mdc;
 
+import group.msg.at.cloud.common.observability.context.TraceContext;
+import group.msg.at.cloud.common.observability.context.TraceContextGenerator;
+import group.msg.at.cloud.common.observability.context.TraceContextParser;
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,24 +14,43 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+
+import static group.msg.at.cloud.common.observability.logging.mdc.LoggingMdcContextInfo.*;
 
 /**
  * {@code Servlet Filter} which adds context information to the underlying logging framework.
  * <p>
  * Adds the following context information to the logging context of the current thread (if available):
  * <ul>
- * <li>Trace-ID of the current {@code OpenTracing} or {@code OpenTelemetry} trace</li>
+ * <li>Trace-ID, span ID and sampling decision of the caller's {@code W3C}, {@code B3} or {@code Jaeger} trace
+ * as extracted by {@link TraceContextParser}</li>
+ * <li>Values of the configured {@code baggage} entries, each with its key as MDC property name</li>
  * <li>Principal name of the currently authenticated user</li>
  * </ul>
  * </p>
+ * <p>
+ * In lazy mode, the context information is not added to the MDC for each request, but bound to the current thread
+ * as {@link LoggingMdcLazyContext} and resolved by the logging framework only when a log event is actually logged.
+ * In both modes, only the MDC properties added by this filter are removed when the request completes.
+ * </p>
+ * <p>
+ * With trace context propagation, a new trace context is generated for requests without trace headers and the trace
+ * context of each request is returned to the caller as W3C {@code traceparent} response header.
+ * </p>
  */
 public final class LoggingMdcFilter extends OncePerRequestFilter {
 
-    private static final String MDC_PROPERTY_NAME_TRACE_ID = "traceId";
-    private static final String MDC_PROPERTY_NAME_USER_ID = "userId";
-
     private boolean enabled;
 
+    private List<String> baggageKeys = List.of();
+
+    private boolean lazy;
+
+    private boolean traceContextPropagation;
+
+    private RequestPathSelector pathSelector = DEFAULT_PATH_SELECTOR;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -36,45 +59,143 @@ public final class LoggingMdcFilter extends OncePerRequestFilter {
         this.enabled = enabled;
     }
 
+    public List<String> getBaggageKeys() {
+        return baggageKeys;
+    }
+
+    /**
+     * Sets the keys of the W3C {@code baggage} entries which are added to the MDC.
+     */
+    public void setBaggageKeys(List<String> baggageKeys) {
+        this.baggageKeys = baggageKeys;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Switches between adding the context information to the MDC for each request and resolving it only when
+     * a log event is logged; lazy mode requires Log4j2 or a registered {@link LoggingMdcTurboFilter} with Logback.
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public boolean isTraceContextPropagation() {
+        return traceContextPropagation;
+    }
+
+    /**
+     * Generates a trace context for requests without trace headers and writes the {@code traceparent} response header.
+     */
+    public void setTraceContextPropagation(boolean traceContextPropagation) {
+        this.traceContextPropagation = traceContextPropagation;
+    }
+
+    public RequestPathSelector getPathSelector() {
+        return pathSelector;
+    }
+
+    /**
+     * Sets the selector of the requests this filter applies to, matching the request URI without the context path.
+     */
+    public void setPathSelector(RequestPathSelector pathSelector) {
+        this.pathSelector = pathSelector;
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
-        return !isEnabled() || request.getRequestURI().startsWith("/actuator");
+        return !isEnabled() || !this.pathSelector.selects(request.getRequestURI(), request.getContextPath().length());
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        addContextInfo(request);
+        if (this.lazy) {
+            LoggingMdcLazyContext.bind(request, HttpServletRequest::getHeader, this.baggageKeys, this.traceContextPropagation);
+            try {
+                if (this.traceContextPropagation) {
+                    // the response header must be set before the response is committed, so the trace headers are resolved now
+                    setTraceparentHeader(response);
+                }
+                filterChain.doFilter(request, response);
+            } finally {
+                LoggingMdcLazyContext.unbind();
+            }
+            return;
+        }
+        boolean traceContextAdded = addContextInfo(request);
         try {
+            if (this.traceContextPropagation) {
+                setTraceparentHeader(response);
+            }
             filterChain.doFilter(request, response);
         } finally {
-            clearContext(request, response);
+            clearContext(traceContextAdded);
         }
     }
 
-    private void addContextInfo(HttpServletRequest request) {
+    /**
+     * Adds the context information to the MDC and returns {@code true}, if the trace context has been added.
+     */
+    private boolean addContextInfo(HttpServletRequest request) {
+        boolean result = false;
         if (MDC.get(MDC_PROPERTY_NAME_TRACE_ID) == null) {
-            String jaegerTraceHeader = request.getHeader("uber-trace-id");
-            if (jaegerTraceHeader != null) {
-                String[] traceIdComponents = jaegerTraceHeader.split(":");
-                if (traceIdComponents.length == 1) {
-                    // OpenTracing header exists but is URL encoded
-                    traceIdComponents = jaegerTraceHeader.split("%3A");
+            TraceContext traceContext = TRACE_CONTEXTS.get();
+            if (TraceContextParser.extract(request, HttpServletRequest::getHeader, traceContext)) {
+                MDC.put(MDC_PROPERTY_NAME_TRACE_ID, traceContext.getTraceId());
+                MDC.put(MDC_PROPERTY_NAME_SPAN_ID, traceContext.getSpanId());
+                if (traceContext.getSampled() != null) {
+                    MDC.put(MDC_PROPERTY_NAME_SAMPLED, traceContext.getSampled().toString());
                 }
-                MDC.put("traceId", traceIdComponents[0]);
-            }
-            String w3cTraceHeader = request.getHeader("traceparent");
-            if (w3cTraceHeader != null) {
-                String traceId = w3cTraceHeader.split("-")[1];
-                MDC.put(MDC_PROPERTY_NAME_TRACE_ID, traceId);
+                result = true;
+            } else if (this.traceContextPropagation) {
+                TraceContextGenerator.generate(traceContext);
+                MDC.put(MDC_PROPERTY_NAME_TRACE_ID, traceContext.getTraceId());
+                MDC.put(MDC_PROPERTY_NAME_SPAN_ID, traceContext.getSpanId());
+                result = true;
             }
+            traceContext.clear();
+        }
+        if (!this.baggageKeys.isEmpty()) {
+            addBaggage(request.getHeader(TraceContextParser.W3C_BAGGAGE_HEADER));
         }
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.getName() != null) {
             MDC.put(MDC_PROPERTY_NAME_USER_ID, auth.getName());
         }
+        return result;
     }
 
-    private void clearContext(HttpServletRequest request, HttpServletResponse response) {
-        MDC.clear();
+    private static void setTraceparentHeader(HttpServletResponse response) {
+        String traceparent = LoggingMdcTraceparentInterceptor.currentTraceparent();
+        if (traceparent != null) {
+            response.setHeader(TraceContextParser.W3C_TRACEPARENT_HEADER, traceparent);
+        }
+    }
+
+    private void addBaggage(String baggage) {
+        if (baggage != null) {
+            for (int i = 0; i < this.baggageKeys.size(); i++) {
+                String key = this.baggageKeys.get(i);
+                String value = TraceContextParser.baggageValue(baggage, key);
+                if (value != null) {
+                    MDC.put(key, value);
+                }
+            }
+        }
+    }
+
+    private void clearContext(boolean traceContextAdded) {
+        // MDC properties added by other components are left untouched
+        if (traceContextAdded) {
+            MDC.remove(MDC_PROPERTY_NAME_TRACE_ID);
+            MDC.remove(MDC_PROPERTY_NAME_SPAN_ID);
+            MDC.remove(MDC_PROPERTY_NAME_SAMPLED);
+        }
+        for (int i = 0; i < this.baggageKeys.size(); i++) {
+            MDC.remove(this.baggageKeys.get(i));
+        }
+        MDC.remove(MDC_PROPERTY_NAME_USER_ID);
     }
 }
@@ -0,0 +1,214 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import group.msg.at.cloud.common.observability.context.TraceContext;
+import group.msg.at.cloud.common.observability.context.TraceContextGenerator;
+import group.msg.at.cloud.common.observability.context.TraceContextParser;
+import org.slf4j.MDC;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import static group.msg.at.cloud.common.observability.logging.mdc.LoggingMdcContextInfo.*;
+
+/**
+ * Context information of the request processed by the current thread, which is resolved only when a log event
+ * is actually logged instead of being added to the MDC eagerly for every request.
+ * <p>
+ * Bound to the current thread by {@link LoggingMdcFilter} in lazy mode and read by the logging framework:
+ * by {@link LoggingMdcContextDataProvider} for Log4j2, by {@link LoggingMdcTurboFilter} for Logback.
+ * The trace headers are parsed on the first read and cached for the rest of the request; the user ID is
+ * read from the security context on every read. MDC properties which are already set are never overridden.
+ * </p>
+ */
+public final class LoggingMdcLazyContext {
+
+    /**
+     * Context of the current thread, created by the first {@link #bind} only, so threads which merely log don't get one.
+     */
+    private static final ThreadLocal<LoggingMdcLazyContext> CONTEXTS = new ThreadLocal<>();
+
+    private final TraceContext traceContext = new TraceContext();
+
+    private final List<String> materializedProperties = new ArrayList<>();
+
+    private Object carrier;
+
+    private BiFunction<Object, String, String> headers;
+
+    private List<String> baggageKeys = List.of();
+
+    private boolean generate;
+
+    private boolean resolved;
+
+    private String traceparent;
+
+    private String traceId;
+
+    private String spanId;
+
+    private String sampled;
+
+    private String[] baggageValues;
+
+    private boolean materialized;
+
+    private LoggingMdcLazyContext() {
+    }
+
+    /**
+     * Binds the headers of the given carrier to the current thread until {@link #unbind()} is called.
+     *
+     * @param carrier     carrier of the headers, e.g. a request
+     * @param headers     returns the first value of the header with the given name or {@code null}, if there is none
+     * @param baggageKeys keys of the W3C {@code baggage} entries to resolve
+     */
+    public static <C> void bind(C carrier, BiFunction<C, String, String> headers, List<String> baggageKeys) {
+        bind(carrier, headers, baggageKeys, false);
+    }
+
+    /**
+     * Binds the headers of the given carrier to the current thread until {@link #unbind()} is called.
+     *
+     * @param carrier     carrier of the headers, e.g. a request
+     * @param headers     returns the first value of the header with the given name or {@code null}, if there is none
+     * @param baggageKeys keys of the W3C {@code baggage} entries to resolve
+     * @param generate    generate a new trace context, if the headers don't carry any
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> void bind(C carrier, BiFunction<C, String, String> headers, List<String> baggageKeys, boolean generate) {
+        LoggingMdcLazyContext context = CONTEXTS.get();
+        if (context == null) {
+            context = new LoggingMdcLazyContext();
+            CONTEXTS.set(context);
+        }
+        context.carrier = carrier;
+        context.headers = (BiFunction<Object, String, String>) headers;
+        context.baggageKeys = baggageKeys;
+        context.generate = generate;
+    }
+
+    /**
+     * Unbinds the context information from the current thread and removes the MDC properties added by
+     * {@link #materialize()}.
+     */
+    public static void unbind() {
+        LoggingMdcLazyContext context = CONTEXTS.get();
+        if (context == null) {
+            return;
+        }
+        for (int i = 0; i < context.materializedProperties.size(); i++) {
+            MDC.remove(context.materializedProperties.get(i));
+        }
+        context.materializedProperties.clear();
+        context.carrier = null;
+        context.headers = null;
+        context.baggageKeys = List.of();
+        context.generate = false;
+        context.resolved = false;
+        context.traceparent = null;
+        context.traceId = null;
+        context.spanId = null;
+        context.sampled = null;
+        context.baggageValues = null;
+        context.materialized = false;
+    }
+
+    /**
+     * Returns {@code true}, if context information is bound to the current thread.
+     */
+    public static boolean isBound() {
+        LoggingMdcLazyContext context = CONTEXTS.get();
+        return context != null && context.carrier != null;
+    }
+
+    /**
+     * Returns the trace context bound to the current thread as W3C {@code traceparent} header or {@code null},
+     * if there is none; resolves the trace headers, but nothing else.
+     */
+    public static String traceparent() {
+        LoggingMdcLazyContext context = CONTEXTS.get();
+        if (context == null || context.carrier == null) {
+            return null;
+        }
+        context.resolve();
+        if (context.traceparent == null && context.traceId != null) {
+            context.traceparent = TraceContextGenerator.traceparent(context.traceId, context.spanId, context.sampled);
+        }
+        return context.traceparent;
+    }
+
+    /**
+     * Passes each available property of the context information bound to the current thread, which is not
+     * in the MDC yet, to the given action without adding anything to the MDC.
+     */
+    public static void forEach(BiConsumer<String, String> action) {
+        LoggingMdcLazyContext context = CONTEXTS.get();
+        if (context != null && context.carrier != null) {
+            context.resolve();
+            if (context.traceId != null && MDC.get(MDC_PROPERTY_NAME_TRACE_ID) == null) {
+                action.accept(MDC_PROPERTY_NAME_TRACE_ID, context.traceId);
+                action.accept(MDC_PROPERTY_NAME_SPAN_ID, context.spanId);
+                if (context.sampled != null) {
+                    action.accept(MDC_PROPERTY_NAME_SAMPLED, context.sampled);
+                }
+            }
+            for (int i = 0; i < context.baggageValues.length; i++) {
+                if (context.baggageValues[i] != null && MDC.get(context.baggageKeys.get(i)) == null) {
+                    action.accept(context.baggageKeys.get(i), context.baggageValues[i]);
+                }
+            }
+            String userId = MDC.get(MDC_PROPERTY_NAME_USER_ID) == null ? currentUserId() : null;
+            if (userId != null) {
+                action.accept(MDC_PROPERTY_NAME_USER_ID, userId);
+            }
+        }
+    }
+
+    /**
+     * Adds the context information bound to the current thread to the MDC once, e.g. before the MDC is copied
+     * to another thread; the added MDC properties are removed by {@link #unbind()}.
+     */
+    public static void materialize() {
+        LoggingMdcLazyContext context = CONTEXTS.get();
+        if (context != null && context.carrier != null && !context.materialized) {
+            context.materialized = true;
+            forEach((propertyName, value) -> {
+                if (MDC.get(propertyName) == null) {
+                    MDC.put(propertyName, value);
+                    context.materializedProperties.add(propertyName);
+                }
+            });
+        }
+    }
+
+    private void resolve() {
+        if (!this.resolved) {
+            this.resolved = true;
+            if (TraceContextParser.extract(this.carrier, this.headers, this.traceContext)) {
+                this.traceId = this.traceContext.getTraceId();
+                this.spanId = this.traceContext.getSpanId();
+                this.sampled = this.traceContext.getSampled() != null ? this.traceContext.getSampled().toString() : null;
+            } else if (this.generate) {
+                this.traceparent = TraceContextGenerator.generate(this.traceContext);
+                this.traceId = this.traceContext.getTraceId();
+                this.spanId = this.traceContext.getSpanId();
+            }
+            this.traceContext.clear();
+            this.baggageValues = new String[this.baggageKeys.size()];
+            String baggage = this.baggageKeys.isEmpty() ? null : this.headers.apply(this.carrier, TraceContextParser.W3C_BAGGAGE_HEADER);
+            for (int i = 0; i < this.baggageValues.length; i++) {
+                this.baggageValues[i] = TraceContextParser.baggageValue(baggage, this.baggageKeys.get(i));
+            }
+        }
+    }
+
+    private static String currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null ? auth.getName() : null;
+    }
+}
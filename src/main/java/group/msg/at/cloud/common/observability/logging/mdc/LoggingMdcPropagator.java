@@ -0,0 +1,182 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Propagates the MDC properties added by the logging MDC filters from the submitting thread to the threads
+ * running asynchronous tasks, e.g. {@code @Async} methods, {@code CompletableFuture} stages or virtual threads.
+ * <p>
+ * As {@code TaskDecorator}, it is applied by Spring Boot to the auto-configured {@code applicationTaskExecutor},
+ * whether based on platform threads or on virtual threads; other executors are covered by wrapping them with
+ * {@link #wrap(Executor)} or {@link #wrap(ExecutorService)}.
+ * </p>
+ * <p>
+ * Only the selected MDC properties are captured into an immutable {@link LoggingMdcSnapshot}, which is reused
+ * as long as the MDC of the submitting thread doesn't change, instead of copying the whole MDC for every task.
+ * </p>
+ */
+public final class LoggingMdcPropagator implements TaskDecorator {
+
+    private final String[] propertyNames;
+
+    private final ThreadLocal<LoggingMdcSnapshot> lastSnapshot = new ThreadLocal<>();
+
+    /**
+     * Creates a propagator of the trace context and user ID.
+     */
+    public LoggingMdcPropagator() {
+        this(List.of());
+    }
+
+    /**
+     * Creates a propagator of the trace context, the user ID and the MDC properties of the given baggage entries.
+     */
+    public LoggingMdcPropagator(Collection<String> baggageKeys) {
+        String[] fixed = {LoggingMdcContextInfo.MDC_PROPERTY_NAME_TRACE_ID, LoggingMdcContextInfo.MDC_PROPERTY_NAME_SPAN_ID,
+                LoggingMdcContextInfo.MDC_PROPERTY_NAME_SAMPLED, LoggingMdcContextInfo.MDC_PROPERTY_NAME_USER_ID};
+        this.propertyNames = new String[fixed.length + baggageKeys.size()];
+        System.arraycopy(fixed, 0, this.propertyNames, 0, fixed.length);
+        int index = fixed.length;
+        for (String current : baggageKeys) {
+            this.propertyNames[index++] = current;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the selected MDC properties of the current thread.
+     */
+    public LoggingMdcSnapshot capture() {
+        // context information of lazy mode must be resolved before it leaves the request thread
+        LoggingMdcLazyContext.materialize();
+        LoggingMdcSnapshot last = this.lastSnapshot.get();
+        if (last != null && last.matchesCurrentThread()) {
+            return last;
+        }
+        String[] values = new String[this.propertyNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = MDC.get(this.propertyNames[i]);
+        }
+        LoggingMdcSnapshot result = new LoggingMdcSnapshot(this.propertyNames, values);
+        this.lastSnapshot.set(result);
+        return result;
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return capture().wrap(runnable);
+    }
+
+    /**
+     * Returns an executor which runs each task with the MDC of the thread submitting it.
+     */
+    public Executor wrap(Executor executor) {
+        if (executor instanceof ExecutorService executorService) {
+            return wrap(executorService);
+        }
+        return command -> executor.execute(decorate(command));
+    }
+
+    /**
+     * Returns an executor service which runs each task with the MDC of the thread submitting it,
+     * e.g. wrapping {@code Executors.newVirtualThreadPerTaskExecutor()}.
+     */
+    public ExecutorService wrap(ExecutorService executorService) {
+        if (executorService instanceof PropagatingExecutorService) {
+            return executorService;
+        }
+        return new PropagatingExecutorService(executorService);
+    }
+
+    private <V> List<Callable<V>> wrapAll(Collection<? extends Callable<V>> tasks) {
+        LoggingMdcSnapshot snapshot = capture();
+        return tasks.stream().map(snapshot::wrap).toList();
+    }
+
+    /**
+     * Decorates all tasks submitted to the wrapped executor service.
+     */
+    private final class PropagatingExecutorService implements ExecutorService {
+
+        private final ExecutorService delegate;
+
+        PropagatingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            this.delegate.execute(decorate(command));
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return this.delegate.submit(decorate(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return this.delegate.submit(decorate(task), result);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return this.delegate.submit(capture().wrap(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return this.delegate.invokeAll(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+            return this.delegate.invokeAll(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return this.delegate.invokeAny(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return this.delegate.invokeAny(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            this.delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return this.delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return this.delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return this.delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
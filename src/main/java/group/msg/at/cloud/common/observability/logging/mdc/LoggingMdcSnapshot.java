@@ -0,0 +1,142 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import org.slf4j.MDC;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Immutable snapshot of selected MDC properties of a thread, which is restored on the thread running a task.
+ * <p>
+ * Snapshots are created by {@link LoggingMdcPropagator#capture()}. Since they are immutable, a single snapshot is
+ * shared by all tasks submitted while the MDC of the submitting thread doesn't change.
+ * </p>
+ */
+public final class LoggingMdcSnapshot {
+
+    private final String[] propertyNames;
+
+    private final String[] values;
+
+    private final boolean empty;
+
+    LoggingMdcSnapshot(String[] propertyNames, String[] values) {
+        this.propertyNames = propertyNames;
+        this.values = values;
+        boolean noValues = true;
+        for (String current : values) {
+            noValues &= current == null;
+        }
+        this.empty = noValues;
+    }
+
+    /**
+     * Returns {@code true}, if none of the selected MDC properties had a value.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Returns the value of the given MDC property or {@code null}, if the property had no value or is not selected.
+     */
+    public String get(String propertyName) {
+        for (int i = 0; i < this.propertyNames.length; i++) {
+            if (this.propertyNames[i].equals(propertyName)) {
+                return this.values[i];
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return this.propertyNames.length;
+    }
+
+    String propertyName(int index) {
+        return this.propertyNames[index];
+    }
+
+    String value(int index) {
+        return this.values[index];
+    }
+
+    /**
+     * Returns {@code true}, if the selected MDC properties of the current thread still have the captured values.
+     */
+    boolean matchesCurrentThread() {
+        for (int i = 0; i < this.propertyNames.length; i++) {
+            String current = MDC.get(this.propertyNames[i]);
+            if (current != this.values[i] && (current == null || !current.equals(this.values[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a task which runs the given task with this snapshot restored in the MDC of the executing thread.
+     */
+    public Runnable wrap(Runnable task) {
+        if (this.empty) {
+            return task;
+        }
+        return () -> {
+            String[] previous = restore();
+            try {
+                task.run();
+            } finally {
+                reset(previous);
+            }
+        };
+    }
+
+    /**
+     * Returns a task which runs the given task with this snapshot restored in the MDC of the executing thread.
+     */
+    public <V> Callable<V> wrap(Callable<V> task) {
+        if (this.empty) {
+            return task;
+        }
+        return () -> {
+            String[] previous = restore();
+            try {
+                return task.call();
+            } finally {
+                reset(previous);
+            }
+        };
+    }
+
+    /**
+     * Puts the captured values into the MDC of the current thread and returns the values they replaced;
+     * returns {@code null} if none of them had a value, which is the common case on worker threads.
+     */
+    private String[] restore() {
+        String[] result = null;
+        for (int i = 0; i < this.propertyNames.length; i++) {
+            String current = MDC.get(this.propertyNames[i]);
+            if (current != null) {
+                if (result == null) {
+                    result = new String[this.propertyNames.length];
+                }
+                result[i] = current;
+            }
+            put(this.propertyNames[i], this.values[i]);
+        }
+        return result;
+    }
+
+    private void reset(String[] previous) {
+        for (int i = 0; i < this.propertyNames.length; i++) {
+            put(this.propertyNames[i], previous != null ? previous[i] : null);
+        }
+    }
+
+    private static void put(String propertyName, String value) {
+        if (value != null) {
+            MDC.put(propertyName, value);
+        } else {
+            MDC.remove(propertyName);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import group.msg.at.cloud.common.observability.context.TraceContextGenerator;
+import group.msg.at.cloud.common.observability.context.TraceContextParser;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import static group.msg.at.cloud.common.observability.logging.mdc.LoggingMdcContextPropagation.*;
+
+/**
+ * {@code ExchangeFilterFunction} which propagates the trace context to downstream services as W3C {@code traceparent}
+ * header, unless the request carries one already.
+ * <p>
+ * The trace context is taken from the MDC of the thread subscribing to the exchange or, within a WebFlux exchange,
+ * from the Reactor {@code Context} populated by {@link LoggingMdcWebFilter}.
+ * </p>
+ */
+public final class LoggingMdcTraceparentExchangeFilterFunction implements ExchangeFilterFunction {
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (request.headers().containsKey(TraceContextParser.W3C_TRACEPARENT_HEADER)) {
+            return next.exchange(request);
+        }
+        // invoked on subscription, so the MDC is the one of the subscribing thread
+        String traceparent = LoggingMdcTraceparentInterceptor.currentTraceparent();
+        if (traceparent != null) {
+            return next.exchange(withTraceparent(request, traceparent));
+        }
+        return Mono.deferContextual(context -> {
+            String contextTraceparent = TraceContextGenerator.traceparent(context.getOrDefault(TRACE_ID_CONTEXT_KEY, null),
+                    context.getOrDefault(SPAN_ID_CONTEXT_KEY, null), context.getOrDefault(SAMPLED_CONTEXT_KEY, null));
+            return next.exchange(contextTraceparent != null ? withTraceparent(request, contextTraceparent) : request);
+        });
+    }
+
+    private static ClientRequest withTraceparent(ClientRequest request, String traceparent) {
+        return ClientRequest.from(request).header(TraceContextParser.W3C_TRACEPARENT_HEADER, traceparent).build();
+    }
+}
@@ -0,0 +1,43 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import group.msg.at.cloud.common.observability.context.TraceContextGenerator;
+import group.msg.at.cloud.common.observability.context.TraceContextParser;
+import org.slf4j.MDC;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+import static group.msg.at.cloud.common.observability.logging.mdc.LoggingMdcContextInfo.*;
+
+/**
+ * {@code ClientHttpRequestInterceptor} which propagates the trace context of the current thread to downstream
+ * services as W3C {@code traceparent} header, unless the request carries one already.
+ */
+public final class LoggingMdcTraceparentInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (!request.getHeaders().containsKey(TraceContextParser.W3C_TRACEPARENT_HEADER)) {
+            String traceparent = currentTraceparent();
+            if (traceparent != null) {
+                request.getHeaders().set(TraceContextParser.W3C_TRACEPARENT_HEADER, traceparent);
+            }
+        }
+        return execution.execute(request, body);
+    }
+
+    /**
+     * Returns the trace context of the current thread as {@code traceparent} header or {@code null}, if there is none;
+     * a trace ID in the MDC takes precedence over the context bound in lazy mode, just like it does for logging.
+     */
+    static String currentTraceparent() {
+        String traceId = MDC.get(MDC_PROPERTY_NAME_TRACE_ID);
+        if (traceId != null) {
+            return TraceContextGenerator.traceparent(traceId, MDC.get(MDC_PROPERTY_NAME_SPAN_ID), MDC.get(MDC_PROPERTY_NAME_SAMPLED));
+        }
+        return LoggingMdcLazyContext.traceparent();
+    }
+}
@@ -0,0 +1,27 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+/**
+ * Logback {@code TurboFilter} which adds the {@link LoggingMdcLazyContext lazy context information} to the MDC
+ * right before the first log event of a request is created, i.e. the first event passing the level of its logger.
+ * <p>
+ * Logback has no hook supplying context data per event, so the context information is materialized once per request
+ * and removed from the MDC when the request completes. Never influences whether an event is logged.
+ * </p>
+ */
+public final class LoggingMdcTurboFilter extends TurboFilter {
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // a missing format indicates a level check like isDebugEnabled() instead of an actual log event
+        if (isStarted() && format != null && logger.isEnabledFor(level)) {
+            LoggingMdcLazyContext.materialize();
+        }
+        return FilterReply.NEUTRAL;
+    }
+}
@@ -0,0 +1,34 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.core.Ordered;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * {@code WebClientCustomizer} that adds the {@link LoggingMdcExchangeFilterFunction} as outermost exchange filter
+ * function of a given {@code WebClient.Builder}, so all other exchange filter functions log with the MDC
+ * of the thread the exchange has been started on.
+ */
+public final class LoggingMdcWebClientCustomizer implements WebClientCustomizer, Ordered {
+
+    private final LoggingMdcExchangeFilterFunction filterFunction;
+
+    public LoggingMdcWebClientCustomizer(LoggingMdcExchangeFilterFunction filterFunction) {
+        this.filterFunction = filterFunction;
+    }
+
+    @Override
+    public void customize(WebClient.Builder webClientBuilder) {
+        // applied first, so filter functions appended by other customizers are nested within this one
+        webClientBuilder.filter(this.filterFunction);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    public LoggingMdcExchangeFilterFunction getFilterFunction() {
+        return filterFunction;
+    }
+}
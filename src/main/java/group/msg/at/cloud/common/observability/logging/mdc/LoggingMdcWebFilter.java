@@ -0,0 +1,149 @@
+package group.msg.at.cloud.common.observability.logging.mdc;
+
+import group.msg.at.cloud.common.observability.context.TraceContext;
+import group.msg.at.cloud.common.observability.context.TraceContextGenerator;
+import group.msg.at.cloud.common.observability.context.TraceContextParser;
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.List;
+
+import static group.msg.at.cloud.common.observability.logging.mdc.LoggingMdcContextPropagation.*;
+
+/**
+ * {@code WebFilter} which adds context information to the underlying logging framework of reactive web applications.
+ * <p>
+ * Reactive counterpart of {@link LoggingMdcFilter}: the context information is written to the Reactor {@code Context}
+ * of the exchange instead of the MDC of the current thread, since the exchange may hop between threads.
+ * {@link LoggingMdcContextPropagation} makes it visible in the MDC of any thread processing the exchange.
+ * </p>
+ * <p>
+ * With trace context propagation, a new trace context is generated for requests without trace headers and the trace
+ * context of each request is returned to the caller as W3C {@code traceparent} response header.
+ * </p>
+ */
+public final class LoggingMdcWebFilter implements WebFilter, Ordered {
+
+    private static final String NO_USER_ID = "";
+
+    private boolean enabled;
+
+    private List<String> baggageKeys = List.of();
+
+    private boolean traceContextPropagation;
+
+    private RequestPathSelector pathSelector = LoggingMdcContextInfo.DEFAULT_PATH_SELECTOR;
+
+    private int order = Ordered.LOWEST_PRECEDENCE;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getBaggageKeys() {
+        return baggageKeys;
+    }
+
+    /**
+     * Sets the keys of the W3C {@code baggage} entries which are added to the MDC;
+     * requires {@link LoggingMdcContextPropagation#install(java.util.Collection)} to be invoked with the same keys.
+     */
+    public void setBaggageKeys(List<String> baggageKeys) {
+        this.baggageKeys = baggageKeys;
+    }
+
+    public boolean isTraceContextPropagation() {
+        return traceContextPropagation;
+    }
+
+    /**
+     * Generates a trace context for requests without trace headers and writes the {@code traceparent} response header.
+     */
+    public void setTraceContextPropagation(boolean traceContextPropagation) {
+        this.traceContextPropagation = traceContextPropagation;
+    }
+
+    public RequestPathSelector getPathSelector() {
+        return pathSelector;
+    }
+
+    /**
+     * Sets the selector of the requests this filter applies to, matching the path within the application.
+     */
+    public void setPathSelector(RequestPathSelector pathSelector) {
+        this.pathSelector = pathSelector;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Sets the order of this filter, which must be greater than the order of the Spring Security web filter chain
+     * in order to have the authenticated user available.
+     */
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!isEnabled() || !this.pathSelector.selects(exchange.getRequest().getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        TraceContext traceContext = new TraceContext();
+        if (!TraceContextParser.extract(headers, HttpHeaders::getFirst, traceContext) && this.traceContextPropagation) {
+            TraceContextGenerator.generate(traceContext);
+        }
+        if (this.traceContextPropagation && traceContext.isValid()) {
+            String traceparent = TraceContextGenerator.traceparent(traceContext.getTraceId(), traceContext.getSpanId(), String.valueOf(traceContext.getSampled()));
+            if (traceparent != null) {
+                exchange.getResponse().getHeaders().set(TraceContextParser.W3C_TRACEPARENT_HEADER, traceparent);
+            }
+        }
+        String baggage = this.baggageKeys.isEmpty() ? null : headers.getFirst(TraceContextParser.W3C_BAGGAGE_HEADER);
+        return ReactiveSecurityContextHolder.getContext()
+                .mapNotNull(SecurityContext::getAuthentication)
+                .mapNotNull(Authentication::getName)
+                .defaultIfEmpty(NO_USER_ID)
+                .flatMap(userId -> chain.filter(exchange).contextWrite(context -> addContextInfo(context, traceContext, baggage, userId)));
+    }
+
+    private Context addContextInfo(Context context, TraceContext traceContext, String baggage, String userId) {
+        Context result = context;
+        if (traceContext.isValid() && !result.hasKey(TRACE_ID_CONTEXT_KEY)) {
+            result = result.put(TRACE_ID_CONTEXT_KEY, traceContext.getTraceId())
+                    .put(SPAN_ID_CONTEXT_KEY, traceContext.getSpanId());
+            if (traceContext.getSampled() != null) {
+                result = result.put(SAMPLED_CONTEXT_KEY, traceContext.getSampled().toString());
+            }
+        }
+        if (baggage != null) {
+            for (String current : this.baggageKeys) {
+                String value = TraceContextParser.baggageValue(baggage, current);
+                if (value != null) {
+                    result = result.put(BAGGAGE_CONTEXT_KEY_PREFIX + current, value);
+                }
+            }
+        }
+        if (!NO_USER_ID.equals(userId)) {
+            result = result.put(USER_ID_CONTEXT_KEY, userId);
+        }
+        return result;
+    }
+}
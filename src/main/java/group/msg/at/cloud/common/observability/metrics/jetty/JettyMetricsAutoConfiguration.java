@@ -0,0 +1,21 @@
+package group.msg.at.cloud.common.observability.metrics.jetty;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.eclipse.jetty.server.Server;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * {@code AutoConfiguration} which adds a {@code MeterBinder} bean exporting the metrics of the Jetty thread pool
+ * to the application context.
+ */
+@AutoConfiguration
+@ConditionalOnClass({Server.class, MeterBinder.class})
+public class JettyMetricsAutoConfiguration {
+
+    @Bean
+    JettyThreadPoolMetrics jettyThreadPoolMetrics() {
+        return new JettyThreadPoolMetrics();
+    }
+}
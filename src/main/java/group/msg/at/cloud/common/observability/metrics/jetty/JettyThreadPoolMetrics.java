@@ -0,0 +1,114 @@
+package group.msg.at.cloud.common.observability.metrics.jetty;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.boot.web.embedded.jetty.JettyWebServer;
+import org.springframework.context.ApplicationListener;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * {@code MeterBinder} which exports metrics of the {@code QueuedThreadPool} and the connections of the Jetty server
+ * using metrics name prefixes {@code jetty.threads.*} and {@code jetty.connector.*}.
+ * <p>
+ * Thread pool meters have the same names and {@code name} tag as the {@code undertow.threads.*} meters,
+ * so dashboards work the same for all servers: the core pool size is the minimum number of threads and the active
+ * count the number of busy threads. Jetty doesn't track peak sizes or task totals. The meters read the thread pool
+ * of the server directly, once the web server is initialized.
+ * </p>
+ * <p>
+ * The {@code name} tag is the name of the thread pool, if the application set one explicitly; otherwise, it is
+ * {@value #DEFAULT_THREAD_POOL_NAME}, since Jetty's default name {@code qtp<hashCode>} changes with every start.
+ * </p>
+ */
+public final class JettyThreadPoolMetrics implements MeterBinder, ApplicationListener<WebServerInitializedEvent> {
+
+    private static final String METRIC_NAME_PREFIX = "jetty.threads.";
+
+    private static final String CONNECTOR_METRIC_NAME_PREFIX = "jetty.connector.";
+
+    static final String DEFAULT_THREAD_POOL_NAME = "jetty";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.registry.add(meterRegistry);
+    }
+
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event) {
+        if (event.getWebServer() instanceof JettyWebServer webServer) {
+            bindTo(webServer.getServer());
+        }
+    }
+
+    /**
+     * Registers the meters of the given started server.
+     */
+    public void bindTo(Server server) {
+        ThreadPool threadPool = server.getThreadPool();
+        if (threadPool instanceof QueuedThreadPool queuedThreadPool) {
+            String name = nameOf(queuedThreadPool);
+            logger.info("*** METRICS *** Binding Jetty thread pool [{}] metrics to Micrometer meter registry", name);
+            bindThreadPool(queuedThreadPool, Tags.of("name", name));
+        } else {
+            logger.info("*** METRICS *** Jetty thread pool [{}] not supported; thread pool metrics are not exported", threadPool);
+        }
+        for (Connector connector : server.getConnectors()) {
+            if (connector instanceof NetworkConnector networkConnector) {
+                String protocol = networkConnector.getConnectionFactory(SslConnectionFactory.class) != null ? "https" : "http";
+                bindGauge(CONNECTOR_METRIC_NAME_PREFIX + "connections.active", "Number of open connections of the connector",
+                        networkConnector, c -> c.getConnectedEndPoints().size(),
+                        Tags.of("protocol", protocol, "port", Integer.toString(networkConnector.getLocalPort())), BaseUnits.CONNECTIONS);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the given thread pool or {@value #DEFAULT_THREAD_POOL_NAME}, if it still has the name
+     * Jetty derives from its hash code.
+     */
+    static String nameOf(QueuedThreadPool threadPool) {
+        String name = threadPool.getName();
+        return name == null || name.equals("qtp" + threadPool.hashCode()) ? DEFAULT_THREAD_POOL_NAME : name;
+    }
+
+    private void bindThreadPool(QueuedThreadPool threadPool, Tags tags) {
+        bindGauge(METRIC_NAME_PREFIX + "core.pool.size", "The size below which new threads will always be created if no idle threads are available",
+                threadPool, QueuedThreadPool::getMinThreads, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "max.pool.size", "The maximum pool size",
+                threadPool, QueuedThreadPool::getMaxThreads, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "current.pool.size", "An estimate of the current number of active threads in the pool",
+                threadPool, QueuedThreadPool::getThreads, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "active.count", "An estimate of the current number of active (busy) threads",
+                threadPool, QueuedThreadPool::getBusyThreads, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "keep.alive.time.seconds", "The thread keep-alive time in seconds",
+                threadPool, t -> t.getIdleTimeout() / 1000.0, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "current.queue.size", "An estimate of the current queue size",
+                threadPool, QueuedThreadPool::getQueueSize, tags, null);
+    }
+
+    private <T> void bindGauge(String name, String description, T object, ToDoubleFunction<T> function, Tags tags, String baseUnit) {
+        Gauge.builder(name, object, function)
+                .description(description)
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .register(this.registry);
+    }
+}
@@ -0,0 +1,172 @@
+package group.msg.at.cloud.common.observability.metrics.jmx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples a fixed set of numeric attributes of a single MBean with one {@code getAttributes} call
+ * and shares the resulting snapshot among all meters reading these attributes.
+ * <p>
+ * A snapshot is reused until the configured sampling window has elapsed, so a scrape evaluating all meters
+ * of an MBean costs one MBean server round-trip instead of one per meter. Attribute values are read as
+ * {@code Number}s without any string conversion; missing or non-numeric attributes read as {@code NaN}.
+ * </p>
+ * <p>
+ * Once the MBean has been unregistered, the unregistration listener is notified, e.g. to remove the meters.
+ * </p>
+ */
+public final class JmxSnapshotSampler {
+
+    private static final Logger logger = LoggerFactory.getLogger(JmxSnapshotSampler.class);
+
+    private final MBeanServer mBeanServer;
+
+    private final ObjectName objectName;
+
+    private final String[] attributeNames;
+
+    private final long windowNanos;
+
+    private final LongSupplier nanoClock;
+
+    private volatile Snapshot snapshot;
+
+    private Runnable unregistrationListener;
+
+    private boolean failing;
+
+    /**
+     * Creates a new sampler.
+     *
+     * @param mBeanServer    MBean server the MBean is registered with
+     * @param objectName     name of the MBean
+     * @param attributeNames names of the attributes to sample; meters refer to them by index
+     * @param window         sampling window during which a snapshot is reused; zero samples on every read
+     */
+    public JmxSnapshotSampler(MBeanServer mBeanServer, ObjectName objectName, List<String> attributeNames, Duration window) {
+        this(mBeanServer, objectName, attributeNames, window, System::nanoTime);
+    }
+
+    /**
+     * Creates a new sampler reading the time from the given clock in nanoseconds.
+     */
+    public JmxSnapshotSampler(MBeanServer mBeanServer, ObjectName objectName, List<String> attributeNames, Duration window, LongSupplier nanoClock) {
+        this.mBeanServer = mBeanServer;
+        this.objectName = objectName;
+        this.attributeNames = attributeNames.toArray(new String[0]);
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Sets the listener notified once the MBean turns out to be unregistered.
+     */
+    public void setUnregistrationListener(Runnable unregistrationListener) {
+        this.unregistrationListener = unregistrationListener;
+    }
+
+    /**
+     * Returns the value of the attribute with the given index from the current snapshot, sampling a new one
+     * if the sampling window has elapsed.
+     */
+    public double value(int attributeIndex) {
+        Snapshot current = this.snapshot;
+        long now = this.nanoClock.getAsLong();
+        if (current == null || now - current.sampledAt >= this.windowNanos) {
+            current = sample(now);
+        }
+        return current.values[attributeIndex];
+    }
+
+    private synchronized Snapshot sample(long now) {
+        Snapshot current = this.snapshot;
+        if (current != null && now - current.sampledAt < this.windowNanos) {
+            // sampled by a concurrent reader in the meantime
+            return current;
+        }
+        double[] values = new double[this.attributeNames.length];
+        Arrays.fill(values, Double.NaN);
+        boolean unregistered = false;
+        try {
+            AttributeList attributes = this.mBeanServer.getAttributes(this.objectName, this.attributeNames);
+            int hint = 0;
+            for (Object attribute : attributes) {
+                hint = indexOf(((Attribute) attribute).getName(), hint);
+                if (hint >= 0) {
+                    values[hint] = toDouble(((Attribute) attribute).getValue());
+                    hint++;
+                } else {
+                    hint = 0;
+                }
+            }
+            this.failing = false;
+        } catch (InstanceNotFoundException ex) {
+            unregistered = true;
+        } catch (Exception ex) {
+            // logged once per failure period instead of once per meter and scrape
+            if (!this.failing) {
+                this.failing = true;
+                logger.warn("*** METRICS *** Failed to sample attributes of MBean [{}]: {}", this.objectName, ex.toString());
+            }
+        }
+        Snapshot result = new Snapshot(now, values);
+        this.snapshot = result;
+        if (unregistered && this.unregistrationListener != null) {
+            this.unregistrationListener.run();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the given attribute name, starting the search at the given index, since
+     * MBean servers return the attributes in the requested order.
+     */
+    private int indexOf(String attributeName, int hint) {
+        for (int i = 0; i < this.attributeNames.length; i++) {
+            int index = (hint + i) % this.attributeNames.length;
+            if (this.attributeNames[index].equals(attributeName)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? 1.0 : 0.0;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Immutable attribute values sampled at a point in time.
+     */
+    private static final class Snapshot {
+
+        private final long sampledAt;
+
+        private final double[] values;
+
+        Snapshot(long sampledAt, double[] values) {
+            this.sampledAt = sampledAt;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package group.msg.at.cloud.common.observability.metrics.tomcat;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.catalina.startup.Tomcat;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * {@code AutoConfiguration} which adds a {@code MeterBinder} bean exporting the metrics of the Tomcat thread pools
+ * to the application context.
+ */
+@AutoConfiguration
+@ConditionalOnClass({Tomcat.class, MeterBinder.class})
+public class TomcatMetricsAutoConfiguration {
+
+    @Bean
+    TomcatThreadPoolMetrics tomcatThreadPoolMetrics() {
+        return new TomcatThreadPoolMetrics();
+    }
+}
@@ -0,0 +1,106 @@
+package group.msg.at.cloud.common.observability.metrics.tomcat;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.context.ApplicationListener;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * {@code MeterBinder} which exports metrics of the thread pools and connections of the Tomcat connectors
+ * using metrics name prefixes {@code tomcat.threads.*} and {@code tomcat.connector.*}.
+ * <p>
+ * Thread pool meters have the same names and {@code name} tag as the {@code undertow.threads.*} meters,
+ * so dashboards work the same for both servers; Tomcat doesn't count rejected tasks. The meters read the
+ * executors of the connectors directly, once the web server is initialized.
+ * </p>
+ */
+public final class TomcatThreadPoolMetrics implements MeterBinder, ApplicationListener<WebServerInitializedEvent> {
+
+    private static final String METRIC_NAME_PREFIX = "tomcat.threads.";
+
+    private static final String CONNECTOR_METRIC_NAME_PREFIX = "tomcat.connector.";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.registry.add(meterRegistry);
+    }
+
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event) {
+        if (event.getWebServer() instanceof TomcatWebServer webServer) {
+            for (Connector connector : webServer.getTomcat().getService().findConnectors()) {
+                bindTo(connector);
+            }
+        }
+    }
+
+    /**
+     * Registers the meters of the given started connector.
+     */
+    public void bindTo(Connector connector) {
+        ProtocolHandler protocolHandler = connector.getProtocolHandler();
+        if (protocolHandler instanceof AbstractProtocol<?> protocol) {
+            bindGauge(CONNECTOR_METRIC_NAME_PREFIX + "connections.active", "Number of open connections of the connector",
+                    protocol, AbstractProtocol::getConnectionCount,
+                    Tags.of("protocol", connector.getScheme(), "port", Integer.toString(connector.getLocalPort())), BaseUnits.CONNECTIONS);
+        }
+        Executor executor = protocolHandler.getExecutor();
+        if (executor instanceof ThreadPoolExecutor threadPool) {
+            String name = protocolHandler instanceof AbstractProtocol<?> protocol ? protocol.getName().replace("\"", "") : connector.toString();
+            logger.info("*** METRICS *** Binding Tomcat thread pool [{}] metrics to Micrometer meter registry", name);
+            bindThreadPool(threadPool, Tags.of("name", name));
+        } else {
+            logger.info("*** METRICS *** Executor [{}] of Tomcat connector [{}] not supported; thread pool metrics are not exported", executor, connector);
+        }
+    }
+
+    private void bindThreadPool(ThreadPoolExecutor threadPool, Tags tags) {
+        bindGauge(METRIC_NAME_PREFIX + "core.pool.size", "The size below which new threads will always be created if no idle threads are available",
+                threadPool, ThreadPoolExecutor::getCorePoolSize, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "max.pool.size", "The maximum pool size",
+                threadPool, ThreadPoolExecutor::getMaximumPoolSize, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "current.pool.size", "An estimate of the current number of active threads in the pool",
+                threadPool, ThreadPoolExecutor::getPoolSize, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "largest.pool.size", "An estimate of the peak number of threads that the pool has ever held",
+                threadPool, ThreadPoolExecutor::getLargestPoolSize, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "active.count", "An estimate of the current number of active (busy) threads",
+                threadPool, ThreadPoolExecutor::getActiveCount, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "keep.alive.time.seconds", "The thread keep-alive time in seconds",
+                threadPool, t -> t.getKeepAliveTime(TimeUnit.SECONDS), tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "max.queue.size", "The maximum queue size for this thread pool",
+                threadPool, t -> (double) t.getQueue().size() + t.getQueue().remainingCapacity(), tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "current.queue.size", "An estimate of the current queue size",
+                threadPool, t -> t.getQueue().size(), tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "submitted.tasks.total", "An estimate of the total number of tasks ever submitted to this thread pool",
+                threadPool, ThreadPoolExecutor::getTaskCount, tags, null);
+        bindGauge(METRIC_NAME_PREFIX + "completed.tasks.total", "An estimate of the total number of tasks completed by this thread pool",
+                threadPool, ThreadPoolExecutor::getCompletedTaskCount, tags, null);
+    }
+
+    private <T> void bindGauge(String name, String description, T object, ToDoubleFunction<T> function, Tags tags, String baseUnit) {
+        Gauge.builder(name, object, function)
+                .description(description)
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .register(this.registry);
+    }
+}
@@ -0,0 +1,121 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit adapted by additive increase and multiplicative decrease (AIMD) of the measured latency.
+ * <p>
+ * Each completed request released with its start time is a latency sample: a sample above the latency threshold multiplies the limit by the backoff
+ * ratio, any other sample increases it by one, if at least half of the limit is in use. Like TCP congestion control,
+ * the limit is decreased at most once per round trip: slow requests which started before the last decrease don't
+ * decrease it again. Both the limit and the number of requests in flight are plain atomics, so acquiring and releasing
+ * costs a few CAS operations without locks.
+ * </p>
+ */
+public final class AimdConcurrencyLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final double backoffRatio;
+
+    private final AtomicInteger limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a new concurrency limit.
+     *
+     * @param initialLimit     limit until the first latency samples adapt it
+     * @param minLimit         lower bound of the limit
+     * @param maxLimit         upper bound of the limit
+     * @param latencyThreshold latency above which a request decreases the limit
+     * @param backoffRatio     factor between 0 and 1 (exclusive) to multiply the limit with on decrease
+     */
+    public AimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, double backoffRatio) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(String.format("Unsupported concurrency limits [initial=%d, min=%d, max=%d]; expected 1 <= min <= initial <= max",
+                    initialLimit, minLimit, maxLimit));
+        }
+        if (!(backoffRatio > 0.0 && backoffRatio < 1.0)) {
+            throw new IllegalArgumentException(String.format("Unsupported backoff ratio [%s]; expected a value between 0 and 1", backoffRatio));
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = new AtomicInteger(initialLimit);
+    }
+
+    public int getLimit() {
+        return this.limit.get();
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Acquires a slot, if less than the given number of requests are in flight.
+     *
+     * @param maxInFlight maximum number of requests in flight, e.g. a share of {@link #getLimit()}
+     * @return {@code true}, if the slot was acquired and must be released
+     */
+    public boolean tryAcquire(int maxInFlight) {
+        for (int current = this.inFlight.get(); current < maxInFlight; current = this.inFlight.get()) {
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Acquires a slot regardless of the limit, e.g. for requests which must not be rejected.
+     */
+    public void acquire() {
+        this.inFlight.incrementAndGet();
+    }
+
+    /**
+     * Releases a slot without a latency sample, e.g. for requests whose latency doesn't tell anything about the load,
+     * like health checks, downloads or long polling.
+     */
+    public void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    /**
+     * Releases a slot and adapts the limit to the latency of the request.
+     *
+     * @param startNanos {@code System.nanoTime()} when the request started or {@code 0}, if unknown
+     * @param nowNanos   current value of {@code System.nanoTime()}
+     */
+    public void release(long startNanos, long nowNanos) {
+        int current = this.inFlight.getAndDecrement();
+        if (startNanos <= 0L) {
+            return;
+        }
+        if (nowNanos - startNanos > this.latencyThresholdNanos) {
+            long lastDecrease = this.lastDecreaseNanos.get();
+            if (startNanos - lastDecrease > 0L && this.lastDecreaseNanos.compareAndSet(lastDecrease, nowNanos)) {
+                this.limit.updateAndGet(l -> Math.max(this.minLimit, (int) (l * this.backoffRatio)));
+            }
+        } else if (current * 2 >= this.limit.get()) {
+            this.limit.updateAndGet(l -> Math.min(this.maxLimit, l + 1));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AimdConcurrencyLimit{limit=" + limit + ", minLimit=" + minLimit + ", maxLimit=" + maxLimit
+                + ", latencyThreshold=" + Duration.ofNanos(latencyThresholdNanos) + ", backoffRatio=" + backoffRatio + '}';
+    }
+}
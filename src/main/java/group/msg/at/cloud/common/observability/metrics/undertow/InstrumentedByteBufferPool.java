@@ -0,0 +1,141 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.DefaultByteBufferPool;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code ByteBufferPool} which counts the buffers acquired from and released to a {@code DefaultByteBufferPool}.
+ * <p>
+ * Buffers which are acquired but not released yet are outstanding: either in use or leaked, if their number keeps
+ * growing. The number of buffers idle in the shared queue of the delegate is read reflectively, since
+ * {@code DefaultByteBufferPool} doesn't expose it; its per-thread caches aren't observable at all.
+ * </p>
+ */
+public final class InstrumentedByteBufferPool implements ByteBufferPool {
+
+    private static final Field QUEUE_LENGTH_FIELD = ReflectionUtils.findField(DefaultByteBufferPool.class, "currentQueueLength", int.class);
+
+    static {
+        if (QUEUE_LENGTH_FIELD != null) {
+            ReflectionUtils.makeAccessible(QUEUE_LENGTH_FIELD);
+        }
+    }
+
+    private final DefaultByteBufferPool delegate;
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder released = new LongAdder();
+
+    /**
+     * Creates a pool with the same settings as the pool created by Undertow itself.
+     *
+     * @param direct     allocate direct buffers
+     * @param bufferSize size of each buffer in bytes
+     */
+    public InstrumentedByteBufferPool(boolean direct, int bufferSize) {
+        this(new DefaultByteBufferPool(direct, bufferSize, -1, 4));
+    }
+
+    InstrumentedByteBufferPool(DefaultByteBufferPool delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public PooledByteBuffer allocate() {
+        PooledByteBuffer result = this.delegate.allocate();
+        this.acquired.increment();
+        return new TrackedByteBuffer(result, this.released);
+    }
+
+    @Override
+    public ByteBufferPool getArrayBackedPool() {
+        return this.delegate.getArrayBackedPool();
+    }
+
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+
+    @Override
+    public int getBufferSize() {
+        return this.delegate.getBufferSize();
+    }
+
+    @Override
+    public boolean isDirect() {
+        return this.delegate.isDirect();
+    }
+
+    public long getAcquiredCount() {
+        return this.acquired.sum();
+    }
+
+    public long getReleasedCount() {
+        return this.released.sum();
+    }
+
+    /**
+     * Returns the number of buffers acquired but not released yet.
+     */
+    public long getOutstandingCount() {
+        // read released first, so concurrent releases never make the result negative
+        long releasedCount = this.released.sum();
+        return Math.max(0L, this.acquired.sum() - releasedCount);
+    }
+
+    /**
+     * Returns the number of buffers idle in the shared queue of the pool or {@code -1}, if it can't be read.
+     */
+    public int getPooledCount() {
+        return QUEUE_LENGTH_FIELD != null ? (int) ReflectionUtils.getField(QUEUE_LENGTH_FIELD, this.delegate) : -1;
+    }
+
+    /**
+     * Pooled buffer counting its first release.
+     */
+    private static final class TrackedByteBuffer implements PooledByteBuffer {
+
+        private final PooledByteBuffer delegate;
+
+        private final LongAdder released;
+
+        private boolean closed;
+
+        TrackedByteBuffer(PooledByteBuffer delegate, LongAdder released) {
+            this.delegate = delegate;
+            this.released = released;
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return this.delegate.getBuffer();
+        }
+
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                this.released.increment();
+            }
+            this.delegate.close();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.delegate.isOpen();
+        }
+
+        @Override
+        public String toString() {
+            return this.delegate.toString();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package group.msg.at.cloud.common.observability.metrics.undertow;
 
+import group.msg.at.cloud.common.observability.metrics.jmx.JmxSnapshotSampler;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.binder.MeterBinder;
 import io.micrometer.core.lang.NonNullApi;
@@ -8,25 +9,35 @@ import io.micrometer.core.lang.Nullable;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.management.InstanceNotFoundException;
+import javax.management.ListenerNotFoundException;
 import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
 import javax.management.MBeanServerFactory;
+import javax.management.MBeanServerNotification;
 import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationListener;
 import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
 import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.BiConsumer;
-import java.util.function.ToDoubleFunction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
 
 /**
  * Custom {@code MeterBinder} which exports metrics of Undertow threadpool resources
  * using metrics name prefix {@code undertow.threads.*}.
+ * <p>
+ * Thread pools are discovered by a notification listener on the {@code MBeanServerDelegate}: meters are registered
+ * for thread pool MBeans present when binding and whenever a thread pool MBean is registered later on,
+ * and removed again when it is unregistered. {@link #close()} removes the notification listener.
+ * </p>
  */
 public class JbossThreadPoolMetrics implements MeterBinder, AutoCloseable {
 
@@ -34,18 +45,61 @@ public class JbossThreadPoolMetrics implements MeterBinder, AutoCloseable {
     private static final String JMX_DOMAIN_STANDALONE = "jboss.threads";
     private static final String METRIC_NAME_PREFIX = "undertow.threads.";
 
+    /**
+     * Default window during which all gauges of a thread pool share one snapshot of its attributes.
+     */
+    public static final Duration DEFAULT_SNAPSHOT_WINDOW = Duration.ofSeconds(1);
+
+    /**
+     * Attributes of the thread pool MBean sampled together; the indexes below refer to this list.
+     */
+    private static final List<String> THREAD_POOL_ATTRIBUTE_NAMES = List.of(
+            "CorePoolSize", "MaximumPoolSize", "PoolSize", "LargestPoolSize", "ActiveCount", "KeepAliveTimeSeconds",
+            "MaximumQueueSize", "QueueSize", "LargestQueueSize", "SubmittedTaskCount", "RejectedTaskCount", "CompletedTaskCount");
+    private static final int CORE_POOL_SIZE = 0;
+    private static final int MAXIMUM_POOL_SIZE = 1;
+    private static final int POOL_SIZE = 2;
+    private static final int LARGEST_POOL_SIZE = 3;
+    private static final int ACTIVE_COUNT = 4;
+    private static final int KEEP_ALIVE_TIME_SECONDS = 5;
+    private static final int MAXIMUM_QUEUE_SIZE = 6;
+    private static final int QUEUE_SIZE = 7;
+    private static final int LARGEST_QUEUE_SIZE = 8;
+    private static final int SUBMITTED_TASK_COUNT = 9;
+    private static final int REJECTED_TASK_COUNT = 10;
+    private static final int COMPLETED_TASK_COUNT = 11;
+
     private final MBeanServer mBeanServer;
     private final Iterable<Tag> tags;
+    private final Duration snapshotWindow;
+    private final LongSupplier nanoClock;
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ObjectName namePattern = getNamePattern(":type=thread-pool,name=*");
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+    private final Map<ObjectName, List<Meter>> threadPoolMeters = new ConcurrentHashMap<>();
+    private final NotificationListener notificationListener = this::handleNotification;
+    private boolean listening;
 
     public JbossThreadPoolMetrics(Iterable<Tag> tags) {
         this(getMBeanServer(), tags);
     }
 
     public JbossThreadPoolMetrics(MBeanServer mBeanServer, Iterable<Tag> tags) {
+        this(mBeanServer, tags, DEFAULT_SNAPSHOT_WINDOW);
+    }
+
+    /**
+     * Creates thread pool metrics whose gauges share one snapshot of the attributes of a pool during the given window.
+     */
+    public JbossThreadPoolMetrics(MBeanServer mBeanServer, Iterable<Tag> tags, Duration snapshotWindow) {
+        this(mBeanServer, tags, snapshotWindow, System::nanoTime);
+    }
+
+    JbossThreadPoolMetrics(MBeanServer mBeanServer, Iterable<Tag> tags, Duration snapshotWindow, LongSupplier nanoClock) {
         this.tags = tags;
         this.mBeanServer = mBeanServer;
+        this.snapshotWindow = snapshotWindow;
+        this.nanoClock = nanoClock;
     }
 
     public static MBeanServer getMBeanServer() {
@@ -58,121 +112,96 @@ public class JbossThreadPoolMetrics implements MeterBinder, AutoCloseable {
 
     @Override
     public void bindTo(MeterRegistry registry) {
-        registerConnectionPoolMetrics(registry);
+        this.registries.add(registry);
+        // listen first, so thread pools registered while querying the present ones are not missed
+        startListening();
+        Set<ObjectName> objectNames = this.mBeanServer.queryNames(this.namePattern, null);
+        log.info("*** METRICS *** Found [{}] JMX object names: [{}]", objectNames.size(), objectNames);
+        objectNames.forEach(objectName -> registerThreadPoolMetrics(registry, objectName));
     }
 
     @Override
-    public void close() {
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(3000, TimeUnit.MILLISECONDS)) {
-                executor.shutdownNow();
+    public synchronized void close() {
+        if (this.listening) {
+            this.listening = false;
+            try {
+                this.mBeanServer.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this.notificationListener);
+            } catch (InstanceNotFoundException | ListenerNotFoundException e) {
+                log.debug("*** METRICS *** MBean registration listener already removed: {}", e.getMessage());
             }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
         }
     }
 
-    private void registerConnectionPoolMetrics(MeterRegistry registry) {
-        registerMetricsEventually(":type=thread-pool,name=*",
-                (name, allTags) -> {
-                    registerGaugeForObject(registry, name,
-                            "CorePoolSize", "core.pool.size", allTags,
-                            "The size below which new threads will always be created if no idle threads are available", null);
-                    registerGaugeForObject(registry, name,
-                            "MaximumPoolSize", "max.pool.size", allTags,
-                            "The maximum pool size", null);
-                    registerGaugeForObject(registry, name,
-                            "PoolSize", "current.pool.size", allTags,
-                            "An estimate of the current number of active threads in the pool", null);
-                    registerGaugeForObject(registry, name,
-                            "LargestPoolSize", "largest.pool.size", allTags,
-                            "An estimate of the peak number of threads that the pool has ever held", null);
-                    registerGaugeForObject(registry, name,
-                            "ActiveCount", "active.count", allTags,
-                            "An estimate of the current number of active (busy) threads", null);
-                    registerGaugeForObject(registry, name,
-                            "KeepAliveTimeSeconds", "keep.alive.time.seconds", allTags,
-                            "The thread keep-alive time in seconds", null);
-                    registerGaugeForObject(registry, name,
-                            "MaximumQueueSize", "max.queue.size", allTags,
-                            "The maximum queue size for this thread pool", null);
-                    registerGaugeForObject(registry, name,
-                            "QueueSize", "current.queue.size", allTags,
-                            "An estimate of the current queue size", null);
-                    registerGaugeForObject(registry, name,
-                            "LargestQueueSize", "largest.queue.size", allTags,
-                            "An estimate of the peak size of the queue", null);
-                    registerGaugeForObject(registry, name,
-                            "SubmittedTaskCount", "submitted.tasks.total", allTags,
-                            "An estimate of the total number of tasks ever submitted to this thread pool", null);
-                    registerGaugeForObject(registry, name,
-                            "RejectedTaskCount", "rejected.tasks.total", allTags,
-                            "An estimate of the total number of tasks ever rejected by this thread pool for any reason", null);
-                    registerGaugeForObject(registry, name,
-                            "CompletedTaskCount", "completed.tasks.total", allTags,
-                            "An estimate of the total number of tasks completed by this thread pool", null);
-                });
-    }
-
-    /**
-     * If the Undertow MBean already exists, register metrics immediately. Otherwise, register an MBean registration listener
-     * with the MBeanServer and register metrics when/if the MBeans becomes available.
-     */
-    private void registerMetricsEventually(String namePatternSuffix, BiConsumer<ObjectName, Tags> perObject) {
-        Set<ObjectName> objectNames = this.mBeanServer.queryNames(getNamePattern(namePatternSuffix), null);
-        log.info("*** METRICS *** Found [{}] JMX object names: [{}]", objectNames.size(), objectNames);
-        if (!objectNames.isEmpty()) {
-            // MBeans are present, so we can register metrics now.
-            objectNames.forEach(objectName -> perObject.accept(objectName, Tags.concat(tags, nameTag(objectName))));
-            return;
+    private synchronized void startListening() {
+        if (!this.listening) {
+            MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+            filter.enableAllObjectNames();
+            try {
+                this.mBeanServer.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this.notificationListener, filter, null);
+                this.listening = true;
+            } catch (InstanceNotFoundException e) {
+                log.warn("*** METRICS *** Unable to listen for JBoss thread pools registered later on: {}", e.getMessage());
+            }
         }
-
-        registerMetricsAsynchronously(this.mBeanServer, getNamePattern(namePatternSuffix), perObject);
     }
 
-    private void registerMetricsAsynchronously(MBeanServer server, ObjectName namePattern, BiConsumer<ObjectName, Tags> perObject) {
-        executor.submit(() -> {
-            int retries = 0;
-            Set<ObjectName> objectNames = server.queryNames(namePattern, null);
-            while (objectNames.isEmpty()) {
-                retries++;
-                try {
-                    Thread.sleep(5000);
-                    objectNames = server.queryNames(namePattern, null);
-                } catch (InterruptedException e) {
-                    log.info("*** METRICS *** Asynchronous registration of metrics interrupted after [{}] retries; will terminate", retries);
-                }
-            }
-            if (!objectNames.isEmpty()) {
-                log.info("*** METRICS *** Found [{}] JMX object names after [{}] retries: [{}]", objectNames.size(), retries, objectNames);
-                objectNames.forEach(objectName -> perObject.accept(objectName, Tags.concat(tags, nameTag(objectName))));
+    private void handleNotification(Notification notification, Object handback) {
+        if (notification instanceof MBeanServerNotification mBeanServerNotification && this.namePattern.apply(mBeanServerNotification.getMBeanName())) {
+            ObjectName objectName = mBeanServerNotification.getMBeanName();
+            if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                log.info("*** METRICS *** Found registered JMX object name: [{}]", objectName);
+                this.registries.forEach(registry -> registerThreadPoolMetrics(registry, objectName));
+            } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                log.info("*** METRICS *** Removing metrics of unregistered JMX object name: [{}]", objectName);
+                removeThreadPoolMetrics(objectName);
             }
-        });
-    }
-
-    private ObjectName getNamePattern(String namePatternSuffix) {
-        try {
-            return new ObjectName(JMX_DOMAIN_STANDALONE + namePatternSuffix);
-        } catch (MalformedObjectNameException e) {
-            // should never happen
-            throw new RuntimeException("Error registering Tomcat JMX based metrics", e);
         }
     }
 
-    private boolean hasObjectName(String name) {
-        try {
-            return this.mBeanServer.queryNames(new ObjectName(name), null).size() == 1;
-        } catch (MalformedObjectNameException ex) {
-            throw new RuntimeException(ex);
+    private void removeThreadPoolMetrics(ObjectName objectName) {
+        List<Meter> meters = this.threadPoolMeters.remove(objectName);
+        if (meters != null) {
+            this.registries.forEach(registry -> meters.forEach(registry::remove));
         }
     }
 
-    private long safeLong(Callable<Object> callable) {
+    private void registerThreadPoolMetrics(MeterRegistry registry, ObjectName name) {
+        Tags allTags = Tags.concat(tags, nameTag(name));
+        JmxSnapshotSampler sampler = new JmxSnapshotSampler(this.mBeanServer, name, THREAD_POOL_ATTRIBUTE_NAMES, this.snapshotWindow, this.nanoClock);
+        List<Meter> meters = this.threadPoolMeters.computeIfAbsent(name, key -> new CopyOnWriteArrayList<>());
+        sampler.setUnregistrationListener(() -> removeThreadPoolMetrics(name));
+        meters.add(registerGaugeForObject(registry, sampler, CORE_POOL_SIZE, "core.pool.size", allTags,
+                "The size below which new threads will always be created if no idle threads are available", null));
+        meters.add(registerGaugeForObject(registry, sampler, MAXIMUM_POOL_SIZE, "max.pool.size", allTags,
+                "The maximum pool size", null));
+        meters.add(registerGaugeForObject(registry, sampler, POOL_SIZE, "current.pool.size", allTags,
+                "An estimate of the current number of active threads in the pool", null));
+        meters.add(registerGaugeForObject(registry, sampler, LARGEST_POOL_SIZE, "largest.pool.size", allTags,
+                "An estimate of the peak number of threads that the pool has ever held", null));
+        meters.add(registerGaugeForObject(registry, sampler, ACTIVE_COUNT, "active.count", allTags,
+                "An estimate of the current number of active (busy) threads", null));
+        meters.add(registerGaugeForObject(registry, sampler, KEEP_ALIVE_TIME_SECONDS, "keep.alive.time.seconds", allTags,
+                "The thread keep-alive time in seconds", null));
+        meters.add(registerGaugeForObject(registry, sampler, MAXIMUM_QUEUE_SIZE, "max.queue.size", allTags,
+                "The maximum queue size for this thread pool", null));
+        meters.add(registerGaugeForObject(registry, sampler, QUEUE_SIZE, "current.queue.size", allTags,
+                "An estimate of the current queue size", null));
+        meters.add(registerGaugeForObject(registry, sampler, LARGEST_QUEUE_SIZE, "largest.queue.size", allTags,
+                "An estimate of the peak size of the queue", null));
+        meters.add(registerGaugeForObject(registry, sampler, SUBMITTED_TASK_COUNT, "submitted.tasks.total", allTags,
+                "An estimate of the total number of tasks ever submitted to this thread pool", null));
+        meters.add(registerGaugeForObject(registry, sampler, REJECTED_TASK_COUNT, "rejected.tasks.total", allTags,
+                "An estimate of the total number of tasks ever rejected by this thread pool for any reason", null));
+        meters.add(registerGaugeForObject(registry, sampler, COMPLETED_TASK_COUNT, "completed.tasks.total", allTags,
+                "An estimate of the total number of tasks completed by this thread pool", null));
+    }
+
+    private static ObjectName getNamePattern(String namePatternSuffix) {
         try {
-            return Long.parseLong(callable.call().toString());
-        } catch (Exception e) {
-            return 0;
+            return new ObjectName(JMX_DOMAIN_STANDALONE + namePatternSuffix);
+        } catch (MalformedObjectNameException e) {
+            // should never happen
+            throw new RuntimeException("Error registering JBoss thread pool JMX based metrics", e);
         }
     }
 
@@ -185,79 +214,24 @@ public class JbossThreadPoolMetrics implements MeterBinder, AutoCloseable {
         return result;
     }
 
-    private void registerGaugeForObject(
+    /**
+     * Registers a gauge reading the attribute with the given index from the snapshots of the given sampler;
+     * the gauge references the sampler strongly, since nothing else does.
+     */
+    private Gauge registerGaugeForObject(
             MeterRegistry registry,
-            ObjectName o,
-            String jmxMetricName,
+            JmxSnapshotSampler sampler,
+            int attributeIndex,
             String meterName,
             Tags allTags,
             String description,
             @Nullable String baseUnit) {
-        final AtomicReference<Gauge> gauge = new AtomicReference<>();
-        gauge.set(Gauge
-                .builder(
-                        METRIC_NAME_PREFIX + meterName,
-                        mBeanServer,
-                        getJmxAttribute(registry, gauge, o, jmxMetricName)
-                )
+        return Gauge
+                .builder(METRIC_NAME_PREFIX + meterName, sampler, s -> s.value(attributeIndex))
+                .strongReference(true)
                 .description(description)
                 .baseUnit(baseUnit)
                 .tags(allTags)
-                .register(registry)
-        );
-    }
-
-    private void registerFunctionCounterForObject(MeterRegistry registry, ObjectName o, String jmxMetricName, String meterName, Tags allTags, String description, @Nullable String baseUnit) {
-        final AtomicReference<FunctionCounter> counter = new AtomicReference<>();
-        counter.set(FunctionCounter
-                .builder(
-                        METRIC_NAME_PREFIX + meterName,
-                        mBeanServer,
-                        getJmxAttribute(registry, counter, o, jmxMetricName)
-                )
-                .description(description)
-                .baseUnit(baseUnit)
-                .tags(allTags)
-                .register(registry)
-        );
-    }
-
-    private void registerTimeGaugeForObject(MeterRegistry registry, ObjectName o, String jmxMetricName,
-                                            String meterName, Tags allTags, String description) {
-        final AtomicReference<TimeGauge> timeGauge = new AtomicReference<>();
-        timeGauge.set(TimeGauge
-                .builder(
-                        METRIC_NAME_PREFIX + meterName,
-                        mBeanServer,
-                        TimeUnit.MILLISECONDS,
-                        getJmxAttribute(registry, timeGauge, o, jmxMetricName)
-                )
-                .description(description)
-                .tags(allTags)
-                .register(registry)
-        );
-    }
-
-    private ToDoubleFunction<MBeanServer> getJmxAttribute(
-            MeterRegistry registry,
-            AtomicReference<? extends Meter> meter,
-            ObjectName o,
-            String jmxMetricName) {
-        return s -> safeDouble(
-                () -> {
-                    if (!s.isRegistered(o)) {
-                        registry.remove(meter.get());
-                    }
-                    return s.getAttribute(o, jmxMetricName);
-                });
-    }
-
-    private double safeDouble(Callable<Object> callable) {
-        try {
-            return Double.parseDouble(callable.call().toString());
-        } catch (Exception e) {
-            log.error("could not parse double value: {}", e.getMessage());
-            return Double.NaN;
-        }
+                .register(registry);
     }
 }
@@ -0,0 +1,204 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram, whose percentiles and maximum
+ * decay over a rotating ring of time windows.
+ * <p>
+ * Latencies are counted in microsecond buckets: every power of two is split into {@value #SUB_BUCKETS} linear
+ * sub-buckets, so percentiles are reported with a relative error below 1/{@value #SUB_BUCKETS}. Each window counts
+ * into stripes selected by the recording thread, so concurrent requests don't contend on the same cache lines.
+ * A window is cleared when recording reaches it again after a full turn of the ring; percentiles and maximum are
+ * computed over all windows of the last turn. Count and total time are cumulative.
+ * </p>
+ */
+final class RotatingLatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Latencies are counted up to {@code 2^32} microseconds, more than an hour; longer ones in the last bucket.
+     */
+    static final long MAX_TRACKABLE_MICROS = (1L << 32) - 1;
+
+    static final int BUCKETS = bucketIndex(MAX_TRACKABLE_MICROS) + 1;
+
+    static final int WINDOWS = 3;
+
+    private static final int STRIPES = Integer.highestOneBit(Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final Window[] windows = new Window[WINDOWS];
+
+    private final long windowNanos;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Creates a new histogram whose percentiles and maximum reflect the latencies recorded during the given expiry.
+     */
+    RotatingLatencyHistogram(long expiryNanos) {
+        this.windowNanos = Math.max(1L, expiryNanos / WINDOWS);
+        for (int i = 0; i < WINDOWS; i++) {
+            this.windows[i] = new Window();
+        }
+    }
+
+    /**
+     * Records the given latency.
+     *
+     * @param durationNanos latency in nanoseconds
+     * @param nowNanos      current value of {@code System.nanoTime()}, which selects the window
+     */
+    void record(long durationNanos, long nowNanos) {
+        long duration = Math.max(0L, durationNanos);
+        this.count.increment();
+        this.totalNanos.add(duration);
+        long epoch = nowNanos / this.windowNanos;
+        Window window = this.windows[Math.floorMod(epoch, WINDOWS)];
+        if (window.epoch != epoch) {
+            window.rotate(epoch);
+        }
+        window.stripe((int) Thread.currentThread().getId() & (STRIPES - 1)).getAndIncrement(bucketIndex(Math.min(duration / 1000L, MAX_TRACKABLE_MICROS)));
+        long max = window.maxNanos.get();
+        while (duration > max && !window.maxNanos.compareAndSet(max, duration)) {
+            max = window.maxNanos.get();
+        }
+    }
+
+    long count() {
+        return this.count.sum();
+    }
+
+    double totalTime(TimeUnit unit) {
+        return (double) this.totalNanos.sum() / unit.toNanos(1L);
+    }
+
+    /**
+     * Returns the maximum latency in nanoseconds recorded during the windows of the last turn of the ring.
+     */
+    long maxNanos(long nowNanos) {
+        long currentEpoch = nowNanos / this.windowNanos;
+        long result = 0L;
+        for (Window window : this.windows) {
+            if (isLive(window, currentEpoch)) {
+                result = Math.max(result, window.maxNanos.get());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the given percentile in nanoseconds of the latencies recorded during the windows of the last turn
+     * of the ring, or {@code 0}, if there are none; the percentile is the upper bound of its bucket, but never more
+     * than the maximum.
+     *
+     * @param percentile percentile between 0 and 1, e.g. 0.99
+     */
+    long percentileNanos(double percentile, long nowNanos) {
+        long currentEpoch = nowNanos / this.windowNanos;
+        long total = 0L;
+        for (Window window : this.windows) {
+            if (isLive(window, currentEpoch)) {
+                for (int s = 0; s < STRIPES; s++) {
+                    AtomicLongArray counts = window.stripes.get(s);
+                    for (int b = 0; counts != null && b < BUCKETS; b++) {
+                        total += counts.get(b);
+                    }
+                }
+            }
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile * total));
+        long seen = 0L;
+        for (int b = 0; b < BUCKETS; b++) {
+            for (Window window : this.windows) {
+                if (isLive(window, currentEpoch)) {
+                    for (int s = 0; s < STRIPES; s++) {
+                        AtomicLongArray counts = window.stripes.get(s);
+                        if (counts != null) {
+                            seen += counts.get(b);
+                        }
+                    }
+                }
+            }
+            if (seen >= rank) {
+                return Math.min(TimeUnit.MICROSECONDS.toNanos(highestEquivalentValue(b)), maxNanos(nowNanos));
+            }
+        }
+        return maxNanos(nowNanos);
+    }
+
+    private static boolean isLive(Window window, long currentEpoch) {
+        return window.epoch > currentEpoch - WINDOWS && window.epoch <= currentEpoch;
+    }
+
+    /**
+     * Returns the bucket counting the given value: values below {@code 2 * SUB_BUCKETS} have buckets of their own,
+     * every larger power of two is split into {@code SUB_BUCKETS} buckets of equal width.
+     */
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value counted by the given bucket.
+     */
+    static long highestEquivalentValue(int bucketIndex) {
+        if (bucketIndex < 2 * SUB_BUCKETS) {
+            return bucketIndex;
+        }
+        int shift = (bucketIndex >> SUB_BUCKET_BITS) - 1;
+        long subBucket = (bucketIndex & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private static final class Window {
+
+        private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private volatile long epoch = Long.MIN_VALUE;
+
+        AtomicLongArray stripe(int index) {
+            AtomicLongArray result = this.stripes.get(index);
+            if (result == null) {
+                this.stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS));
+                result = this.stripes.get(index);
+            }
+            return result;
+        }
+
+        /**
+         * Clears this window before it counts the given epoch; the epoch is published after clearing, so threads
+         * recording the same epoch wait for the counts to be cleared instead of losing theirs.
+         */
+        synchronized void rotate(long newEpoch) {
+            if (this.epoch < newEpoch) {
+                for (int s = 0; s < STRIPES; s++) {
+                    AtomicLongArray counts = this.stripes.get(s);
+                    for (int b = 0; counts != null && b < BUCKETS; b++) {
+                        counts.set(b, 0L);
+                    }
+                }
+                this.maxNanos.set(0L);
+                this.epoch = newEpoch;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.undertow.Undertow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.undertow.UndertowBuilderCustomizer;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+
+/**
+ * {@code MeterBinder} which replaces the buffer pool of the Undertow server by an {@link InstrumentedByteBufferPool}
+ * with the same buffer size and type, and exports its usage using metrics name prefix {@code undertow.buffers.*},
+ * tagged by {@code direct}.
+ * <p>
+ * Besides, the maximum direct memory of the JVM is exported as {@code jvm.buffer.direct.memory.max}, which complements
+ * the usage of the JVM buffer pools exported by Micrometer as {@code jvm.buffer.*}. The buffer pool is closed, when
+ * this binder is closed, since Undertow only closes buffer pools it created itself.
+ * </p>
+ */
+public final class UndertowBufferPoolMetrics implements MeterBinder, UndertowBuilderCustomizer, AutoCloseable {
+
+    private static final String METRIC_NAME_PREFIX = "undertow.buffers.";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    private volatile InstrumentedByteBufferPool bufferPool;
+
+    public UndertowBufferPoolMetrics() {
+        long maxDirectMemory = maxDirectMemory();
+        Gauge.builder("jvm.buffer.direct.memory.max", () -> maxDirectMemory)
+                .description("Maximum amount of memory the JVM may use for direct buffers")
+                .baseUnit(BaseUnits.BYTES)
+                .register(this.registry);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.registry.add(meterRegistry);
+    }
+
+    /**
+     * Replaces the buffer pool of the given builder, which Spring Boot already configured.
+     */
+    @Override
+    public void customize(Undertow.Builder builder) {
+        if (this.bufferPool != null) {
+            logger.info("*** METRICS *** Undertow buffer pool already instrumented; buffers of another server are not tracked");
+            return;
+        }
+        Integer bufferSize = builderField(builder, "bufferSize", int.class);
+        Boolean directBuffers = builderField(builder, "directBuffers", boolean.class);
+        if (bufferSize == null || directBuffers == null) {
+            logger.warn("*** METRICS *** Unable to read buffer settings of the Undertow builder; buffer pool metrics are not exported");
+            return;
+        }
+        InstrumentedByteBufferPool pool = new InstrumentedByteBufferPool(directBuffers, bufferSize);
+        builder.setByteBufferPool(pool);
+        this.bufferPool = pool;
+        logger.info("*** METRICS *** Binding Undertow buffer pool with buffer size [{}] and direct buffers [{}] to Micrometer meter registry", bufferSize, directBuffers);
+        Tags tags = Tags.of("direct", Boolean.toString(directBuffers));
+        FunctionCounter.builder(METRIC_NAME_PREFIX + "acquired", pool, InstrumentedByteBufferPool::getAcquiredCount)
+                .description("Number of buffers acquired from the pool")
+                .tags(tags)
+                .register(this.registry);
+        FunctionCounter.builder(METRIC_NAME_PREFIX + "released", pool, InstrumentedByteBufferPool::getReleasedCount)
+                .description("Number of buffers released to the pool")
+                .tags(tags)
+                .register(this.registry);
+        Gauge.builder(METRIC_NAME_PREFIX + "outstanding", pool, InstrumentedByteBufferPool::getOutstandingCount)
+                .description("Number of buffers acquired but not released yet, either in use or leaked")
+                .tags(tags)
+                .strongReference(true)
+                .register(this.registry);
+        Gauge.builder(METRIC_NAME_PREFIX + "pooled", pool, p -> p.getPooledCount() < 0 ? Double.NaN : p.getPooledCount())
+                .description("Number of buffers idle in the shared queue of the pool")
+                .tags(tags)
+                .strongReference(true)
+                .register(this.registry);
+        Gauge.builder(METRIC_NAME_PREFIX + "size", pool, InstrumentedByteBufferPool::getBufferSize)
+                .description("Size of each buffer of the pool")
+                .tags(tags)
+                .baseUnit(BaseUnits.BYTES)
+                .strongReference(true)
+                .register(this.registry);
+    }
+
+    @Override
+    public void close() {
+        InstrumentedByteBufferPool pool = this.bufferPool;
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T builderField(Undertow.Builder builder, String name, Class<?> type) {
+        Field field = ReflectionUtils.findField(Undertow.Builder.class, name, type);
+        if (field == null) {
+            return null;
+        }
+        ReflectionUtils.makeAccessible(field);
+        return (T) ReflectionUtils.getField(field, builder);
+    }
+
+    /**
+     * Returns the value of {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+     */
+    private static long maxDirectMemory() {
+        try {
+            HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long result = diagnostics != null ? Long.parseLong(diagnostics.getVMOption("MaxDirectMemorySize").getValue()) : 0L;
+            return result > 0L ? result : Runtime.getRuntime().maxMemory();
+        } catch (RuntimeException e) {
+            return Runtime.getRuntime().maxMemory();
+        }
+    }
+}
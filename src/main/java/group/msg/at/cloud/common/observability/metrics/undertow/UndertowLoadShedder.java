@@ -0,0 +1,209 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.xnio.XnioWorker;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which Undertow requests {@link UndertowLoadSheddingHandler} admits by an {@link AimdConcurrencyLimit} and,
+ * optionally, the size of the XNIO worker queue, and exports the decisions using metrics name prefix
+ * {@code undertow.shedding.*}.
+ * <p>
+ * Requests belong to a priority class by path: critical requests, e.g. health checks, are never shed; low priority
+ * requests are shed once a share of the limit or the maximum queue size is reached, normal requests once all of it is.
+ * The latency of critical requests and of requests excluded by path, e.g. downloads, streaming or long polling, is not
+ * sampled, so it neither decreases nor increases the limit.
+ * Shed requests are counted by function counters {@value #METRIC_NAME} tagged by {@code priority} and {@code reason};
+ * gauges export the current limit and the requests in flight.
+ * </p>
+ */
+public final class UndertowLoadShedder implements MeterBinder {
+
+    public static final String METRIC_NAME = "undertow.shedding.rejected";
+
+    /**
+     * Priority class of a request.
+     */
+    public enum Priority {
+        CRITICAL, NORMAL, LOW
+    }
+
+    private static final String[] REASONS = {"limit", "queue"};
+
+    private final AimdConcurrencyLimit limit;
+
+    private final double lowPriorityRatio;
+
+    private final int maxQueueSize;
+
+    private final String retryAfter;
+
+    private final RequestPathSelector criticalPaths;
+
+    private final RequestPathSelector lowPriorityPaths;
+
+    /**
+     * Selects critical requests and requests excluded from latency sampling.
+     */
+    private final RequestPathSelector unsampledPaths;
+
+    /**
+     * Shed requests indexed by priority and reason; critical requests are never shed.
+     */
+    private final LongAdder[] rejected = new LongAdder[Priority.values().length * REASONS.length];
+
+    /**
+     * Creates a new load shedder.
+     *
+     * @param limit            concurrency limit of all requests in flight
+     * @param lowPriorityRatio share between 0 and 1 of the limit and the maximum queue size low priority requests may use
+     * @param maxQueueSize     number of tasks in the XNIO worker queue from which on requests are shed; {@code 0} to ignore the queue
+     * @param retryAfter       delay to retry shed requests after, sent as header {@code Retry-After} in seconds
+     * @param criticalPaths    path patterns of requests which are never shed
+     * @param lowPriorityPaths path patterns of requests which are shed first
+     * @param latencyExcludedPaths path patterns of requests whose latency doesn't adapt the limit, besides critical requests
+     */
+    public UndertowLoadShedder(AimdConcurrencyLimit limit, double lowPriorityRatio, int maxQueueSize, Duration retryAfter,
+                               Collection<String> criticalPaths, Collection<String> lowPriorityPaths, Collection<String> latencyExcludedPaths) {
+        if (!(lowPriorityRatio > 0.0 && lowPriorityRatio <= 1.0)) {
+            throw new IllegalArgumentException(String.format("Unsupported low priority ratio [%s]; expected a value between 0 and 1", lowPriorityRatio));
+        }
+        this.limit = limit;
+        this.lowPriorityRatio = lowPriorityRatio;
+        this.maxQueueSize = Math.max(0, maxQueueSize);
+        this.retryAfter = Long.toString(Math.max(1L, (retryAfter.toMillis() + 999L) / 1000L));
+        this.criticalPaths = selector(criticalPaths);
+        this.lowPriorityPaths = selector(lowPriorityPaths);
+        List<String> unsampledPaths = new ArrayList<>(criticalPaths);
+        unsampledPaths.addAll(latencyExcludedPaths);
+        this.unsampledPaths = selector(unsampledPaths);
+        for (int i = 0; i < this.rejected.length; i++) {
+            this.rejected[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("undertow.shedding.limit", this.limit, AimdConcurrencyLimit::getLimit)
+                .description("Current concurrency limit of the Undertow load shedder")
+                .baseUnit("requests")
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder("undertow.shedding.inflight", this.limit, AimdConcurrencyLimit::getInFlight)
+                .description("Number of requests admitted by the Undertow load shedder and not completed yet")
+                .baseUnit("requests")
+                .strongReference(true)
+                .register(meterRegistry);
+        for (Priority priority : new Priority[]{Priority.NORMAL, Priority.LOW}) {
+            for (int reason = 0; reason < REASONS.length; reason++) {
+                FunctionCounter.builder(METRIC_NAME, this.rejected[priority.ordinal() * REASONS.length + reason], LongAdder::doubleValue)
+                        .description("Number of requests shed by the Undertow load shedder")
+                        .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                        .tag("reason", REASONS[reason])
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * Returns the priority class of requests with the given path within the application.
+     */
+    public Priority priorityOf(String path) {
+        if (this.criticalPaths != null && this.criticalPaths.selects(path)) {
+            return Priority.CRITICAL;
+        }
+        return this.lowPriorityPaths != null && this.lowPriorityPaths.selects(path) ? Priority.LOW : Priority.NORMAL;
+    }
+
+    /**
+     * Returns {@code true}, if the latency of requests with the given path within the application adapts the limit,
+     * i.e. they are neither critical nor excluded from latency sampling.
+     */
+    public boolean isLatencySampled(String path) {
+        return this.unsampledPaths == null || !this.unsampledPaths.selects(path);
+    }
+
+    /**
+     * Admits a request, if neither the concurrency limit nor the worker queue is exhausted for its priority class;
+     * an admitted request must be released by {@link #release(long, long)} or, if its latency is not sampled,
+     * by {@link #release()} when it completes. The priority class
+     * is only looked up, if the share of low priority requests is exhausted.
+     *
+     * @param path   path of the request within the application
+     * @param worker XNIO worker processing the request or {@code null}, if unknown
+     * @return {@code true}, if the request is admitted; {@code false}, if it has to be shed
+     */
+    public boolean tryAcquire(String path, XnioWorker worker) {
+        int queueSize = this.maxQueueSize > 0 && worker != null ? worker.getMXBean().getWorkerQueueSize() : 0;
+        if (queueSize < share(this.maxQueueSize, this.lowPriorityRatio) && this.limit.tryAcquire(share(this.limit.getLimit(), this.lowPriorityRatio))) {
+            return true;
+        }
+        Priority priority = priorityOf(path);
+        if (priority == Priority.CRITICAL) {
+            this.limit.acquire();
+            return true;
+        }
+        double ratio = priority == Priority.LOW ? this.lowPriorityRatio : 1.0;
+        if (queueSize >= share(this.maxQueueSize, ratio)) {
+            this.rejected[priority.ordinal() * REASONS.length + 1].increment();
+            return false;
+        }
+        if (!this.limit.tryAcquire(share(this.limit.getLimit(), ratio))) {
+            this.rejected[priority.ordinal() * REASONS.length].increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases an admitted request without sampling its latency.
+     */
+    public void release() {
+        this.limit.release();
+    }
+
+    /**
+     * Releases an admitted request and samples its latency.
+     *
+     * @param startNanos {@code System.nanoTime()} when the request started or {@code 0}, if unknown
+     * @param nowNanos   current value of {@code System.nanoTime()}
+     */
+    public void release(long startNanos, long nowNanos) {
+        this.limit.release(startNanos, nowNanos);
+    }
+
+    /**
+     * Returns the value of header {@code Retry-After} of shed requests.
+     */
+    public String getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "UndertowLoadShedder{limit=" + limit + ", lowPriorityRatio=" + lowPriorityRatio + ", maxQueueSize=" + maxQueueSize
+                + ", retryAfter=" + retryAfter + ", criticalPaths=" + criticalPaths + ", lowPriorityPaths=" + lowPriorityPaths + ", unsampledPaths=" + unsampledPaths + '}';
+    }
+
+    /**
+     * Returns the given share of a limit, at least {@code 1}; a limit of {@code 0} stays unlimited.
+     */
+    private static int share(int limit, double ratio) {
+        return limit > 0 ? Math.max(1, (int) (limit * ratio)) : Integer.MAX_VALUE;
+    }
+
+    private static RequestPathSelector selector(Collection<String> patterns) {
+        boolean empty = patterns.stream().allMatch(pattern -> pattern.trim().isEmpty());
+        return empty ? null : new RequestPathSelector(patterns, List.of());
+    }
+}
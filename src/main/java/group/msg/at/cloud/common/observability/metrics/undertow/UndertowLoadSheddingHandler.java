@@ -0,0 +1,80 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Undertow handler which sheds requests rejected by {@link UndertowLoadShedder} with status {@code 503} and header
+ * {@code Retry-After}, and releases admitted requests when the exchange completes.
+ * <p>
+ * This handler is meant to wrap the initial handler chain, which runs on the IO thread before the servlet initial
+ * handler dispatches the request to the worker pool, so shed requests neither queue for a worker thread nor reach
+ * the servlet container. The outer handler chain already runs on a worker thread. The latency of admitted requests
+ * is measured from {@code HttpServerExchange.getRequestStartTime()}, if server option {@code RECORD_REQUEST_START_TIME}
+ * is enabled, which includes the time spent in the worker queue; then a single completion listener is shared by all
+ * exchanges. Otherwise, the latency is measured from entering this handler. Requests whose latency is not sampled,
+ * e.g. critical ones, share a completion listener which only releases them.
+ * </p>
+ */
+public final class UndertowLoadSheddingHandler implements HttpHandler {
+
+    private final HttpHandler next;
+
+    private final UndertowLoadShedder shedder;
+
+    private final ExchangeCompletionListener completionListener = this::exchangeCompleted;
+
+    private final ExchangeCompletionListener unsampledCompletionListener = this::unsampledExchangeCompleted;
+
+    public UndertowLoadSheddingHandler(HttpHandler next, UndertowLoadShedder shedder) {
+        this.next = next;
+        this.shedder = shedder;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!exchange.isComplete()) {
+            String path = exchange.getRelativePath();
+            if (!this.shedder.tryAcquire(path, exchange.getConnection().getWorker())) {
+                exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+                exchange.getResponseHeaders().put(Headers.RETRY_AFTER, this.shedder.getRetryAfter());
+                exchange.endExchange();
+                return;
+            }
+            if (!this.shedder.isLatencySampled(path)) {
+                exchange.addExchangeCompleteListener(this.unsampledCompletionListener);
+            } else if (exchange.getRequestStartTime() > 0L) {
+                exchange.addExchangeCompleteListener(this.completionListener);
+            } else {
+                long start = System.nanoTime();
+                exchange.addExchangeCompleteListener((completed, nextListener) -> {
+                    try {
+                        this.shedder.release(start, System.nanoTime());
+                    } finally {
+                        nextListener.proceed();
+                    }
+                });
+            }
+        }
+        this.next.handleRequest(exchange);
+    }
+
+    private void exchangeCompleted(HttpServerExchange exchange, ExchangeCompletionListener.NextListener nextListener) {
+        try {
+            this.shedder.release(exchange.getRequestStartTime(), System.nanoTime());
+        } finally {
+            nextListener.proceed();
+        }
+    }
+
+    private void unsampledExchangeCompleted(HttpServerExchange exchange, ExchangeCompletionListener.NextListener nextListener) {
+        try {
+            this.shedder.release();
+        } finally {
+            nextListener.proceed();
+        }
+    }
+}
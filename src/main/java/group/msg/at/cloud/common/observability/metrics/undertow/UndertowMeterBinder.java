@@ -4,29 +4,24 @@ import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.FunctionTimer;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.TimeGauge;
-import io.undertow.Undertow;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import io.undertow.server.handlers.MetricsHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.ApplicationListener;
-import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.function.ToDoubleFunction;
 import java.util.function.ToLongFunction;
 
 /**
- * Binds all Undertow metrics to Micrometer's {@code MeterRegistry} during application startup.
+ * {@code MeterBinder} which exports the metrics of the {@code MetricsHandler} added to the Undertow handler chain
+ * by {@link UndertowMetricsHandlerWrapper}.
  * <p>
- * TODO: check if this approach can be replaced with proper integration into autoconfiguration
+ * The meters are bound as soon as the meter registry is created and read the metrics handler lazily, so they
+ * report zero until the handler is added to the server instead of failing.
  * </p>
  */
-@Component
-@ConditionalOnClass(Undertow.class)
-public class UndertowMeterBinder implements ApplicationListener<ApplicationReadyEvent> {
+public class UndertowMeterBinder implements MeterBinder {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final UndertowMetricsHandlerWrapper undertowMetricsHandlerWrapper;
@@ -36,44 +31,43 @@ public class UndertowMeterBinder implements ApplicationListener<ApplicationReady
     }
 
     @Override
-    public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
-        bindTo(applicationReadyEvent.getApplicationContext().getBean(MeterRegistry.class));
-    }
-
     public void bindTo(MeterRegistry meterRegistry) {
         logger.info("*** METRICS *** Binding Undertow metrics handler wrapper to Micrometer meter registry");
-        bind(meterRegistry, undertowMetricsHandlerWrapper.getMetricsHandler());
-        logger.info("*** METRICS *** Binding JBoss Thread Pool metrics to Micrometer meter registry");
-        new JbossThreadPoolMetrics(new ArrayList<>()).bindTo(meterRegistry);
+        bind(meterRegistry, undertowMetricsHandlerWrapper);
     }
 
-    public void bind(MeterRegistry registry, MetricsHandler metricsHandler) {
-        bindTimer(registry, "undertow.requests", "Number of requests", metricsHandler,
-                m -> m.getMetrics().getTotalRequests(), m2 -> m2.getMetrics().getMinRequestTime());
-        bindTimeGauge(registry, "undertow.request.time.max", "The longest request duration in time", metricsHandler,
-                m -> m.getMetrics().getMaxRequestTime());
-        bindTimeGauge(registry, "undertow.request.time.min", "The shortest request duration in time", metricsHandler,
-                m -> m.getMetrics().getMinRequestTime());
-        bindCounter(registry, "undertow.request.errors", "Total number of error requests ", metricsHandler,
-                m -> m.getMetrics().getTotalErrors());
+    public void bind(MeterRegistry registry, UndertowMetricsHandlerWrapper wrapper) {
+        bindTimer(registry, "undertow.requests", "Number of requests", wrapper,
+                w -> metrics(w) != null ? metrics(w).getTotalRequests() : 0L,
+                w -> metrics(w) != null ? metrics(w).getTotalRequestTime() : 0.0);
+        bindTimeGauge(registry, "undertow.request.time.max", "The longest request duration in time", wrapper,
+                w -> metrics(w) != null ? metrics(w).getMaxRequestTime() : 0.0);
+        bindTimeGauge(registry, "undertow.request.time.min", "The shortest request duration in time", wrapper,
+                w -> metrics(w) != null ? metrics(w).getMinRequestTime() : 0.0);
+        bindCounter(registry, "undertow.request.errors", "Total number of error requests ", wrapper,
+                w -> metrics(w) != null ? metrics(w).getTotalErrors() : 0.0);
+    }
 
+    private static MetricsHandler.MetricResult metrics(UndertowMetricsHandlerWrapper wrapper) {
+        MetricsHandler metricsHandler = wrapper.getMetricsHandlerIfAvailable();
+        return metricsHandler != null ? metricsHandler.getMetrics() : null;
     }
 
-    private void bindTimer(MeterRegistry registry, String name, String desc, MetricsHandler metricsHandler,
-                           ToLongFunction<MetricsHandler> countFunc, ToDoubleFunction<MetricsHandler> consumer) {
-        FunctionTimer.builder(name, metricsHandler, countFunc, consumer, TimeUnit.MILLISECONDS)
+    private void bindTimer(MeterRegistry registry, String name, String desc, UndertowMetricsHandlerWrapper wrapper,
+                           ToLongFunction<UndertowMetricsHandlerWrapper> countFunc, ToDoubleFunction<UndertowMetricsHandlerWrapper> consumer) {
+        FunctionTimer.builder(name, wrapper, countFunc, consumer, TimeUnit.MILLISECONDS)
                 .description(desc).register(registry);
     }
 
-    private void bindTimeGauge(MeterRegistry registry, String name, String desc, MetricsHandler metricResult,
-                               ToDoubleFunction<MetricsHandler> consumer) {
-        TimeGauge.builder(name, metricResult, TimeUnit.MILLISECONDS, consumer).description(desc)
+    private void bindTimeGauge(MeterRegistry registry, String name, String desc, UndertowMetricsHandlerWrapper wrapper,
+                               ToDoubleFunction<UndertowMetricsHandlerWrapper> consumer) {
+        TimeGauge.builder(name, wrapper, TimeUnit.MILLISECONDS, consumer).description(desc)
                 .register(registry);
     }
 
-    private void bindCounter(MeterRegistry registry, String name, String desc, MetricsHandler metricsHandler,
-                             ToDoubleFunction<MetricsHandler> consumer) {
-        FunctionCounter.builder(name, metricsHandler, consumer).description(desc)
+    private void bindCounter(MeterRegistry registry, String name, String desc, UndertowMetricsHandlerWrapper wrapper,
+                             ToDoubleFunction<UndertowMetricsHandlerWrapper> consumer) {
+        FunctionCounter.builder(name, wrapper, consumer).description(desc)
                 .register(registry);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,224 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.undertow.UndertowBuilderCustomizer;
+import org.springframework.boot.web.embedded.undertow.UndertowDeploymentInfoCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@code AutoConfiguration} which adds an {@code UndertowDeploymentInfoCustomizer} bean to the application context
+ * actually binding the metrics handler to the server configuration and {@code MeterBinder} beans exporting
+ * the metrics of the metrics handler and the JBoss thread pools.
+ * <p>
+ * Spring Boot binds all {@code MeterBinder} beans to the meter registry as soon as it's created, so the meters
+ * exist before the server accepts the first request; they read the metrics handler once it's added to the server.
+ * </p>
+ */
+@AutoConfiguration
+@ConditionalOnClass({Undertow.class, MeterBinder.class})
+public class UndertowMetricsAutoConfiguration {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Value("${cnj.observability.metrics.jmx.snapshotWindow:1s}")
+    private Duration jmxSnapshotWindow = JbossThreadPoolMetrics.DEFAULT_SNAPSHOT_WINDOW;
+
+    @Bean
+    UndertowMetricsHandlerWrapper undertowMetricsHandlerWrapper() {
+        return new UndertowMetricsHandlerWrapper();
+    }
+
+    @Bean
+    UndertowMeterBinder undertowMeterBinder(UndertowMetricsHandlerWrapper undertowMetricsHandlerWrapper) {
+        return new UndertowMeterBinder(undertowMetricsHandlerWrapper);
+    }
+
+    @Bean
+    UndertowDeploymentInfoCustomizer undertowDeploymentInfoCustomizer(UndertowMetricsHandlerWrapper undertowMetricsHandlerWrapper) {
+        logger.info("*** METRICS *** Customize Undertow server configuration with metrics handler wrapper");
+        return deploymentInfo ->
+                deploymentInfo.addOuterHandlerChainWrapper(undertowMetricsHandlerWrapper);
+    }
+
+    /**
+     * Thread pool metrics bound to every {@code MeterRegistry} by Spring Boot; closed when the application context is closed.
+     */
+    @Bean
+    JbossThreadPoolMetrics jbossThreadPoolMetrics() {
+        logger.info("*** METRICS *** Binding JBoss Thread Pool metrics to Micrometer meter registry with JMX snapshot window [{}]", jmxSnapshotWindow);
+        return new JbossThreadPoolMetrics(JbossThreadPoolMetrics.getMBeanServer(), Tags.empty(), this.jmxSnapshotWindow);
+    }
+
+    /**
+     * Records the latency of Undertow exchanges per route and status class, if enabled.
+     */
+    @Configuration
+    @ConditionalOnClass({Undertow.class, MeterBinder.class})
+    @ConditionalOnProperty(name = "cnj.observability.metrics.undertow.latency.enabled", havingValue = "true")
+    static class UndertowRouteLatencyConfiguration {
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Value("${cnj.observability.metrics.undertow.latency.expiry:2m}")
+        private Duration expiry = UndertowRouteLatencyMetrics.DEFAULT_EXPIRY;
+
+        @Value("${cnj.observability.metrics.undertow.latency.percentiles:0.5,0.9,0.99}")
+        private List<Double> percentiles = UndertowRouteLatencyMetrics.DEFAULT_PERCENTILES;
+
+        @Bean
+        UndertowRouteLatencyMetrics undertowRouteLatencyMetrics() {
+            logger.info("*** METRICS *** Recording Undertow route latencies with percentiles {} decaying within [{}]", percentiles, expiry);
+            return new UndertowRouteLatencyMetrics(expiry, percentiles);
+        }
+
+        /**
+         * Records the request start time when parsing the request, which the latency handler measures from.
+         */
+        @Bean
+        UndertowBuilderCustomizer undertowRequestStartTimeCustomizer() {
+            return builder -> builder.setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, true);
+        }
+
+        @Bean
+        UndertowDeploymentInfoCustomizer undertowRouteLatencyDeploymentInfoCustomizer(UndertowRouteLatencyMetrics undertowRouteLatencyMetrics) {
+            logger.info("*** METRICS *** Customize Undertow server configuration with route latency handler");
+            return deploymentInfo -> deploymentInfo.addOuterHandlerChainWrapper(
+                    handler -> new UndertowRouteLatencyHandler(handler, undertowRouteLatencyMetrics));
+        }
+    }
+
+    /**
+     * Counts Undertow responses by request method and status code, if enabled.
+     */
+    @Configuration
+    @ConditionalOnClass({Undertow.class, MeterBinder.class})
+    @ConditionalOnProperty(name = "cnj.observability.metrics.undertow.responses.enabled", havingValue = "true")
+    static class UndertowRequestCountersConfiguration {
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Bean
+        UndertowRequestCounters undertowRequestCounters() {
+            return new UndertowRequestCounters();
+        }
+
+        @Bean
+        UndertowDeploymentInfoCustomizer undertowRequestCountersDeploymentInfoCustomizer(UndertowRequestCounters undertowRequestCounters) {
+            logger.info("*** METRICS *** Customize Undertow server configuration with response counter handler");
+            return deploymentInfo -> deploymentInfo.addOuterHandlerChainWrapper(
+                    handler -> new UndertowRequestCounterHandler(handler, undertowRequestCounters));
+        }
+    }
+
+    /**
+     * Exports the statistics of the XNIO worker and the listeners of the Undertow server, if enabled.
+     */
+    @Configuration
+    @ConditionalOnClass({Undertow.class, MeterBinder.class})
+    @ConditionalOnProperty(name = "cnj.observability.metrics.undertow.server.enabled", havingValue = "true")
+    static class UndertowServerMetricsConfiguration {
+
+        @Bean
+        UndertowServerMetrics undertowServerMetrics() {
+            return new UndertowServerMetrics();
+        }
+
+        /**
+         * Enables the connector statistics of all listeners.
+         */
+        @Bean
+        UndertowBuilderCustomizer undertowStatisticsCustomizer() {
+            return builder -> builder.setServerOption(UndertowOptions.ENABLE_STATISTICS, true);
+        }
+    }
+
+    /**
+     * Tracks the buffer pool of the Undertow server, if enabled.
+     */
+    @Configuration
+    @ConditionalOnClass({Undertow.class, MeterBinder.class})
+    @ConditionalOnProperty(name = "cnj.observability.metrics.undertow.buffers.enabled", havingValue = "true")
+    static class UndertowBufferPoolMetricsConfiguration {
+
+        @Bean
+        UndertowBufferPoolMetrics undertowBufferPoolMetrics() {
+            return new UndertowBufferPoolMetrics();
+        }
+    }
+
+    /**
+     * Sheds Undertow requests exceeding an adaptive concurrency limit, if enabled.
+     */
+    @Configuration
+    @ConditionalOnClass({Undertow.class, MeterBinder.class})
+    @ConditionalOnProperty(name = "cnj.observability.metrics.undertow.shedding.enabled", havingValue = "true")
+    static class UndertowLoadSheddingConfiguration {
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        @Value("${cnj.observability.metrics.undertow.shedding.initialLimit:100}")
+        private int initialLimit;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.minLimit:10}")
+        private int minLimit;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.maxLimit:1000}")
+        private int maxLimit;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.latencyThreshold:1s}")
+        private Duration latencyThreshold;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.backoffRatio:0.9}")
+        private double backoffRatio;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.lowPriorityRatio:0.5}")
+        private double lowPriorityRatio;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.maxQueueSize:0}")
+        private int maxQueueSize;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.retryAfter:1s}")
+        private Duration retryAfter;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.criticalPaths:${management.endpoints.web.base-path:/actuator}/**}")
+        private List<String> criticalPaths;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.lowPriorityPaths:}")
+        private List<String> lowPriorityPaths;
+
+        @Value("${cnj.observability.metrics.undertow.shedding.latencyExcludedPaths:}")
+        private List<String> latencyExcludedPaths;
+
+        @Bean
+        UndertowLoadShedder undertowLoadShedder() {
+            AimdConcurrencyLimit limit = new AimdConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio);
+            UndertowLoadShedder result = new UndertowLoadShedder(limit, lowPriorityRatio, maxQueueSize, retryAfter, criticalPaths, lowPriorityPaths, latencyExcludedPaths);
+            logger.info("*** METRICS *** Shedding Undertow requests with {}", result);
+            return result;
+        }
+
+        /**
+         * Records the request start time when parsing the request, so the latency samples include the time spent in the worker queue.
+         */
+        @Bean
+        UndertowBuilderCustomizer undertowLoadSheddingStartTimeCustomizer() {
+            return builder -> builder.setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, true);
+        }
+
+        @Bean
+        UndertowDeploymentInfoCustomizer undertowLoadSheddingDeploymentInfoCustomizer(UndertowLoadShedder undertowLoadShedder) {
+            logger.info("*** METRICS *** Customize Undertow server configuration with load shedding handler");
+            return deploymentInfo -> deploymentInfo.addInitialHandlerChainWrapper(
+                    handler -> new UndertowLoadSheddingHandler(handler, undertowLoadShedder));
+        }
+    }
+}
@@ -1,24 +1,19 @@
 package group.msg.at.cloud.common.observability.metrics.undertow;
 
-import io.undertow.Undertow;
 import io.undertow.server.HandlerWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.handlers.MetricsHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
-import org.springframework.stereotype.Component;
 
 /**
  * {@code Undertow}-specific handler wrapper to add a {@code MetricsHandler} to the undertow handler chain
  * in order to bind Micrometer to Undertow's metrics system.
  */
-@Component
-@ConditionalOnClass(Undertow.class)
 public class UndertowMetricsHandlerWrapper implements HandlerWrapper {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private MetricsHandler metricsHandler;
+    private volatile MetricsHandler metricsHandler;
 
     @Override
     public HttpHandler wrap(HttpHandler handler) {
@@ -33,4 +28,11 @@ public class UndertowMetricsHandlerWrapper implements HandlerWrapper {
         }
         return metricsHandler;
     }
+
+    /**
+     * Returns the metrics handler or {@code null}, if this wrapper wasn't added to the handler chain yet.
+     */
+    public MetricsHandler getMetricsHandlerIfAvailable() {
+        return metricsHandler;
+    }
 }
@@ -0,0 +1,43 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Undertow handler which counts each response by request method and status code in {@link UndertowRequestCounters}
+ * when the exchange completes; a single completion listener is shared by all exchanges.
+ * <p>
+ * Wrapping the outer handler chain counts each exchange once, including requests rejected before they are
+ * dispatched to Spring MVC.
+ * </p>
+ */
+public final class UndertowRequestCounterHandler implements HttpHandler {
+
+    private final HttpHandler next;
+
+    private final UndertowRequestCounters counters;
+
+    private final ExchangeCompletionListener completionListener = this::exchangeCompleted;
+
+    public UndertowRequestCounterHandler(HttpHandler next, UndertowRequestCounters counters) {
+        this.next = next;
+        this.counters = counters;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!exchange.isComplete()) {
+            exchange.addExchangeCompleteListener(this.completionListener);
+        }
+        this.next.handleRequest(exchange);
+    }
+
+    private void exchangeCompleted(HttpServerExchange exchange, ExchangeCompletionListener.NextListener nextListener) {
+        try {
+            this.counters.record(exchange.getRequestMethod(), exchange.getStatusCode());
+        } finally {
+            nextListener.proceed();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code MeterBinder} which counts Undertow responses in a matrix of HTTP methods and status codes, exported as
+ * function counters {@value #METRIC_NAME} tagged by {@code method} and {@code status}.
+ * <p>
+ * All counters are preallocated in a fixed array indexed by method and status code, so counting a response costs
+ * an array index computation and a {@code LongAdder} increment without map lookups or tag allocations.
+ * A counter is registered the first time it's incremented, so only observed combinations are exported.
+ * Counting before this binder is bound to a registry is not lost.
+ * </p>
+ */
+public final class UndertowRequestCounters implements MeterBinder {
+
+    public static final String METRIC_NAME = "undertow.responses";
+
+    private static final HttpString[] METHODS = {Methods.GET, Methods.HEAD, Methods.POST, Methods.PUT, Methods.PATCH,
+            Methods.DELETE, Methods.OPTIONS, Methods.TRACE};
+
+    private static final String OTHER_METHOD = "OTHER";
+
+    private static final int METHOD_SLOTS = METHODS.length + 1;
+
+    /**
+     * Status codes from 100 to 599 have a slot of their own; all other status codes share slot {@code 0}.
+     */
+    private static final int STATUS_SLOTS = 600;
+
+    private static final String UNKNOWN_STATUS = "UNKNOWN";
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    private final LongAdder[] counters = new LongAdder[METHOD_SLOTS * STATUS_SLOTS];
+
+    private final AtomicIntegerArray registered = new AtomicIntegerArray(METHOD_SLOTS * STATUS_SLOTS);
+
+    public UndertowRequestCounters() {
+        for (int i = 0; i < this.counters.length; i++) {
+            this.counters[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.registry.add(meterRegistry);
+    }
+
+    /**
+     * Counts a response.
+     *
+     * @param method     request method
+     * @param statusCode HTTP status code of the response
+     */
+    public void record(HttpString method, int statusCode) {
+        int index = methodIndex(method) * STATUS_SLOTS + (statusCode >= 100 && statusCode < STATUS_SLOTS ? statusCode : 0);
+        this.counters[index].increment();
+        if (this.registered.get(index) == 0 && this.registered.compareAndSet(index, 0, 1)) {
+            registerCounter(index);
+        }
+    }
+
+    private void registerCounter(int index) {
+        int methodIndex = index / STATUS_SLOTS;
+        int statusIndex = index % STATUS_SLOTS;
+        FunctionCounter.builder(METRIC_NAME, this.counters[index], LongAdder::doubleValue)
+                .description("Number of Undertow responses")
+                .tag("method", methodIndex < METHODS.length ? METHODS[methodIndex].toString() : OTHER_METHOD)
+                .tag("status", statusIndex == 0 ? UNKNOWN_STATUS : Integer.toString(statusIndex))
+                .register(this.registry);
+    }
+
+    private static int methodIndex(HttpString method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return i;
+            }
+        }
+        return METHODS.length;
+    }
+}
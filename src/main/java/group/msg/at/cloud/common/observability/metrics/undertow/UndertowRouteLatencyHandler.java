@@ -0,0 +1,76 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Undertow handler which records the latency of each exchange per route and status class into
+ * {@link UndertowRouteLatencyMetrics} when the exchange completes.
+ * <p>
+ * The latency is measured from {@code HttpServerExchange.getRequestStartTime()}, if server option
+ * {@code RECORD_REQUEST_START_TIME} is enabled, which also covers the time spent before this handler; then a single
+ * completion listener is shared by all exchanges. Otherwise, the latency is measured from entering this handler.
+ * The route is the best matching pattern of Spring MVC read from the servlet request when the exchange completes,
+ * so this handler is meant to wrap the outer handler chain, which sees each exchange once regardless of error
+ * or async dispatches.
+ * </p>
+ */
+public final class UndertowRouteLatencyHandler implements HttpHandler {
+
+    private final HttpHandler next;
+
+    private final UndertowRouteLatencyMetrics metrics;
+
+    private final ExchangeCompletionListener completionListener = this::exchangeCompleted;
+
+    public UndertowRouteLatencyHandler(HttpHandler next, UndertowRouteLatencyMetrics metrics) {
+        this.next = next;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!exchange.isComplete()) {
+            if (exchange.getRequestStartTime() > 0L) {
+                exchange.addExchangeCompleteListener(this.completionListener);
+            } else {
+                long start = System.nanoTime();
+                exchange.addExchangeCompleteListener((completed, nextListener) -> {
+                    try {
+                        record(completed, start);
+                    } finally {
+                        nextListener.proceed();
+                    }
+                });
+            }
+        }
+        this.next.handleRequest(exchange);
+    }
+
+    private void exchangeCompleted(HttpServerExchange exchange, ExchangeCompletionListener.NextListener nextListener) {
+        try {
+            record(exchange, exchange.getRequestStartTime());
+        } finally {
+            nextListener.proceed();
+        }
+    }
+
+    private void record(HttpServerExchange exchange, long start) {
+        long now = System.nanoTime();
+        this.metrics.record(route(exchange), exchange.getStatusCode(), now - start, now);
+    }
+
+    private static String route(HttpServerExchange exchange) {
+        ServletRequestContext servletRequestContext = exchange.getAttachment(ServletRequestContext.ATTACHMENT_KEY);
+        if (servletRequestContext != null) {
+            Object pattern = servletRequestContext.getServletRequest().getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                return pattern.toString();
+            }
+        }
+        return null;
+    }
+}
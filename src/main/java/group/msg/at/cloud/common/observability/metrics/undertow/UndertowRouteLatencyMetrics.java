@@ -0,0 +1,139 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * {@code MeterBinder} which exports the latency of Undertow exchanges per {@code route} and {@code status} class
+ * recorded by {@link UndertowRouteLatencyHandler} into {@link RotatingLatencyHistogram}s.
+ * <p>
+ * Per route and status class, a function timer {@value #METRIC_NAME} exports count and total time, a time gauge
+ * {@code undertow.route.requests.max} the decaying maximum and time gauges {@code undertow.route.requests.percentile}
+ * tagged by {@code phi} the decaying percentiles. Histograms are cached in arrays indexed by status class below
+ * a map keyed by route, so recording an exchange costs a single map lookup once the histogram exists.
+ * Recording before this binder is bound to a registry only updates the histograms.
+ * </p>
+ */
+public final class UndertowRouteLatencyMetrics implements MeterBinder {
+
+    public static final String METRIC_NAME = "undertow.route.requests";
+
+    /**
+     * Route of exchanges which were not mapped to a route template, e.g. requests rejected before dispatch.
+     */
+    public static final String UNKNOWN_ROUTE = "UNKNOWN";
+
+    /**
+     * Maximum number of distinct routes; exchanges on any other route are recorded with route {@value #OVERFLOW_ROUTE}.
+     */
+    static final int MAX_ROUTES = 1024;
+
+    static final String OVERFLOW_ROUTE = "OTHER";
+
+    public static final Duration DEFAULT_EXPIRY = Duration.ofMinutes(2);
+
+    public static final List<Double> DEFAULT_PERCENTILES = List.of(0.5, 0.9, 0.99);
+
+    private static final String[] STATUS_CLASSES = {"UNKNOWN", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    private final Map<String, AtomicReferenceArray<RotatingLatencyHistogram>> routeHistograms = new ConcurrentHashMap<>();
+
+    private final long expiryNanos;
+
+    private final double[] percentiles;
+
+    private final LongSupplier nanoClock;
+
+    public UndertowRouteLatencyMetrics() {
+        this(DEFAULT_EXPIRY, DEFAULT_PERCENTILES);
+    }
+
+    /**
+     * Creates route latency metrics.
+     *
+     * @param expiry      duration after which recorded latencies no longer affect maximum and percentiles
+     * @param percentiles percentiles between 0 and 1 to export
+     */
+    public UndertowRouteLatencyMetrics(Duration expiry, List<Double> percentiles) {
+        this(expiry, percentiles, System::nanoTime);
+    }
+
+    UndertowRouteLatencyMetrics(Duration expiry, List<Double> percentiles, LongSupplier nanoClock) {
+        this.expiryNanos = expiry.toNanos();
+        this.percentiles = percentiles.stream().mapToDouble(Double::doubleValue).toArray();
+        for (double current : this.percentiles) {
+            if (!(current >= 0.0 && current <= 1.0)) {
+                throw new IllegalArgumentException(String.format("Unsupported percentile [%s]; expected a value between 0 and 1", current));
+            }
+        }
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.registry.add(meterRegistry);
+    }
+
+    /**
+     * Records the latency of an exchange.
+     *
+     * @param route         route template of the exchange or {@code null}, if unknown
+     * @param statusCode    HTTP status code of the response
+     * @param durationNanos latency in nanoseconds
+     * @param nowNanos      current value of {@code System.nanoTime()}
+     */
+    public void record(String route, int statusCode, long durationNanos, long nowNanos) {
+        String routeToUse = route != null ? route : UNKNOWN_ROUTE;
+        AtomicReferenceArray<RotatingLatencyHistogram> histogramsByStatus = this.routeHistograms.get(routeToUse);
+        if (histogramsByStatus == null) {
+            if (this.routeHistograms.size() >= MAX_ROUTES) {
+                routeToUse = OVERFLOW_ROUTE;
+            }
+            histogramsByStatus = this.routeHistograms.computeIfAbsent(routeToUse, k -> new AtomicReferenceArray<>(STATUS_CLASSES.length));
+        }
+        int statusClass = statusCode >= 100 && statusCode < 600 ? statusCode / 100 : 0;
+        RotatingLatencyHistogram histogram = histogramsByStatus.get(statusClass);
+        if (histogram == null) {
+            RotatingLatencyHistogram created = new RotatingLatencyHistogram(this.expiryNanos);
+            if (histogramsByStatus.compareAndSet(statusClass, null, created)) {
+                registerMeters(routeToUse, STATUS_CLASSES[statusClass], created);
+            }
+            histogram = histogramsByStatus.get(statusClass);
+        }
+        histogram.record(durationNanos, nowNanos);
+    }
+
+    private void registerMeters(String route, String statusClass, RotatingLatencyHistogram histogram) {
+        FunctionTimer.builder(METRIC_NAME, histogram, RotatingLatencyHistogram::count, h -> h.totalTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .description("Latency of Undertow exchanges")
+                .tag("route", route)
+                .tag("status", statusClass)
+                .register(this.registry);
+        TimeGauge.builder(METRIC_NAME + ".max", histogram, TimeUnit.NANOSECONDS, h -> h.maxNanos(this.nanoClock.getAsLong()))
+                .description("Maximum latency of Undertow exchanges within the expiry")
+                .tag("route", route)
+                .tag("status", statusClass)
+                .register(this.registry);
+        for (double percentile : this.percentiles) {
+            TimeGauge.builder(METRIC_NAME + ".percentile", histogram, TimeUnit.NANOSECONDS, h -> h.percentileNanos(percentile, this.nanoClock.getAsLong()))
+                    .description("Latency percentile of Undertow exchanges within the expiry")
+                    .tag("route", route)
+                    .tag("status", statusClass)
+                    .tag("phi", Double.toString(percentile))
+                    .register(this.registry);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package group.msg.at.cloud.common.observability.metrics.undertow;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.undertow.Undertow;
+import io.undertow.server.ConnectorStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.boot.web.embedded.undertow.UndertowWebServer;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.ReflectionUtils;
+import org.xnio.XnioWorker;
+import org.xnio.management.XnioWorkerMXBean;
+
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * {@code MeterBinder} which exports the statistics of the XNIO worker and of each listener of the Undertow server
+ * using metrics name prefixes {@code undertow.xnio.*} and {@code undertow.connector.*}.
+ * <p>
+ * The meters read the worker's {@code XnioWorkerMXBean} and the {@code ConnectorStatistics} of each listener through
+ * direct object references, so a scrape neither queries JMX nor parses attribute values. Connector statistics are only
+ * available, if server option {@code ENABLE_STATISTICS} is enabled. Since Spring Boot doesn't expose the Undertow
+ * server of an {@code UndertowWebServer}, it's read reflectively once the web server is initialized.
+ * </p>
+ */
+public final class UndertowServerMetrics implements MeterBinder, ApplicationListener<WebServerInitializedEvent> {
+
+    private static final String XNIO_METRIC_NAME_PREFIX = "undertow.xnio.";
+
+    private static final String CONNECTOR_METRIC_NAME_PREFIX = "undertow.connector.";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.registry.add(meterRegistry);
+    }
+
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event) {
+        if (event.getWebServer() instanceof UndertowWebServer webServer) {
+            Field field = ReflectionUtils.findField(UndertowWebServer.class, "undertow", Undertow.class);
+            if (field == null) {
+                logger.warn("*** METRICS *** Unable to access Undertow server of web server [{}]; server metrics are not exported", webServer);
+                return;
+            }
+            ReflectionUtils.makeAccessible(field);
+            Undertow undertow = (Undertow) ReflectionUtils.getField(field, webServer);
+            if (undertow != null) {
+                bindTo(undertow);
+            }
+        }
+    }
+
+    /**
+     * Registers the meters of the given started Undertow server.
+     */
+    public void bindTo(Undertow undertow) {
+        XnioWorker worker = undertow.getWorker();
+        if (worker != null) {
+            logger.info("*** METRICS *** Binding XNIO worker [{}] metrics to Micrometer meter registry", worker.getName());
+            bindWorker(worker.getMXBean(), Tags.of("name", worker.getName()));
+        }
+        for (Undertow.ListenerInfo listener : undertow.getListenerInfo()) {
+            ConnectorStatistics statistics = listener.getConnectorStatistics();
+            if (statistics == null) {
+                logger.info("*** METRICS *** Statistics of Undertow listener [{}] disabled; connector metrics are not exported", listener);
+                continue;
+            }
+            Tags tags = Tags.of("protocol", listener.getProtcol(), "port", listener.getAddress() instanceof InetSocketAddress address
+                    ? Integer.toString(address.getPort()) : String.valueOf(listener.getAddress()));
+            logger.info("*** METRICS *** Binding Undertow listener [{}] metrics to Micrometer meter registry", listener);
+            bindConnector(statistics, tags);
+        }
+    }
+
+    private void bindWorker(XnioWorkerMXBean worker, Tags tags) {
+        bindGauge(XNIO_METRIC_NAME_PREFIX + "io.threads", "Number of XNIO IO threads", worker, XnioWorkerMXBean::getIoThreadCount, tags, BaseUnits.THREADS);
+        bindGauge(XNIO_METRIC_NAME_PREFIX + "worker.threads.core", "Core size of the XNIO worker pool", worker, XnioWorkerMXBean::getCoreWorkerPoolSize, tags, BaseUnits.THREADS);
+        bindGauge(XNIO_METRIC_NAME_PREFIX + "worker.threads.max", "Maximum size of the XNIO worker pool", worker, XnioWorkerMXBean::getMaxWorkerPoolSize, tags, BaseUnits.THREADS);
+        bindGauge(XNIO_METRIC_NAME_PREFIX + "worker.threads.current", "Current size of the XNIO worker pool", worker, XnioWorkerMXBean::getWorkerPoolSize, tags, BaseUnits.THREADS);
+        bindGauge(XNIO_METRIC_NAME_PREFIX + "worker.threads.busy", "Number of busy XNIO worker threads", worker, w -> knownOrNaN(w.getBusyWorkerThreadCount()), tags, BaseUnits.THREADS);
+        bindGauge(XNIO_METRIC_NAME_PREFIX + "worker.queue.size", "Number of tasks waiting in the queue of the XNIO worker pool", worker, w -> knownOrNaN(w.getWorkerQueueSize()), tags, BaseUnits.TASKS);
+    }
+
+    private void bindConnector(ConnectorStatistics statistics, Tags tags) {
+        FunctionTimer.builder(CONNECTOR_METRIC_NAME_PREFIX + "requests", statistics, ConnectorStatistics::getRequestCount,
+                        ConnectorStatistics::getProcessingTime, TimeUnit.NANOSECONDS)
+                .description("Number and processing time of requests handled by the listener")
+                .tags(tags)
+                .register(this.registry);
+        bindCounter(CONNECTOR_METRIC_NAME_PREFIX + "errors", "Number of requests which resulted in an error response", statistics, ConnectorStatistics::getErrorCount, tags, null);
+        bindCounter(CONNECTOR_METRIC_NAME_PREFIX + "bytes.sent", "Number of bytes sent by the listener", statistics, ConnectorStatistics::getBytesSent, tags, BaseUnits.BYTES);
+        bindCounter(CONNECTOR_METRIC_NAME_PREFIX + "bytes.received", "Number of bytes received by the listener", statistics, ConnectorStatistics::getBytesReceived, tags, BaseUnits.BYTES);
+        bindGauge(CONNECTOR_METRIC_NAME_PREFIX + "connections.active", "Number of open connections of the listener", statistics, ConnectorStatistics::getActiveConnections, tags, BaseUnits.CONNECTIONS);
+        bindGauge(CONNECTOR_METRIC_NAME_PREFIX + "requests.active", "Number of requests currently processed by the listener", statistics, ConnectorStatistics::getActiveRequests, tags, "requests");
+    }
+
+    private <T> void bindGauge(String name, String description, T object, ToDoubleFunction<T> function, Tags tags, String baseUnit) {
+        Gauge.builder(name, object, function)
+                .description(description)
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .strongReference(true)
+                .register(this.registry);
+    }
+
+    /**
+     * Returns the given value or {@code NaN}, if the worker's executor doesn't support the statistic and reports {@code -1}.
+     */
+    private static double knownOrNaN(int value) {
+        return value < 0 ? Double.NaN : value;
+    }
+
+    private <T> void bindCounter(String name, String description, T object, ToDoubleFunction<T> function, Tags tags, String baseUnit) {
+        FunctionCounter.builder(name, object, function)
+                .description(description)
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .register(this.registry);
+    }
+}
@@ -0,0 +1,275 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.util.ClassUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code RestTraceWriter} which takes trace messages off the calling thread.
+ * <p>
+ * Trace messages are handed over to a dedicated writer thread through a bounded lock-free queue.
+ * The writer thread drains the queue in batches and passes each trace message to the given delegate writer.
+ * If the queue is full, the configured {@link OverflowPolicy} decides what happens to the trace message.
+ * The MDC of the calling thread is handed over together with each trace message and restored on the writer thread
+ * while the message is written, so trace messages carry the same contextual information as if written synchronously.
+ * </p>
+ */
+public final class AsyncRestTraceWriter implements RestTraceWriter, AutoCloseable {
+
+    /**
+     * Defines how trace messages are handled when the hand-off queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The new trace message is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * The oldest queued trace message is dropped in favour of the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * The calling thread waits until the writer thread freed a slot; on non-blocking threads like Reactor's
+         * event loops, the new trace message is dropped instead.
+         */
+        BLOCK
+    }
+
+    /**
+     * Reason why a trace message was dropped.
+     */
+    public enum DropReason {
+        /**
+         * The queue was full.
+         */
+        OVERFLOW,
+        /**
+         * The writer was closed.
+         */
+        SHUTDOWN
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    private static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.scheduler.Schedulers", AsyncRestTraceWriter.class.getClassLoader());
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final RestTraceWriter delegate;
+
+    private final BoundedHandOffQueue<QueuedMessage> queue;
+
+    private final int batchSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final LongAdder enqueuedCount = new LongAdder();
+
+    private final LongAdder overflowDroppedCount = new LongAdder();
+
+    private final LongAdder shutdownDroppedCount = new LongAdder();
+
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    private volatile boolean writerParked;
+
+    public AsyncRestTraceWriter(RestTraceWriter delegate) {
+        this(delegate, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, OverflowPolicy.DROP_NEWEST);
+    }
+
+    public AsyncRestTraceWriter(RestTraceWriter delegate, int queueCapacity, int batchSize, OverflowPolicy overflowPolicy) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than zero");
+        }
+        this.delegate = delegate;
+        this.queue = new BoundedHandOffQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.writerThread = new Thread(this::drainQueue, "rest-trace-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.delegate.isEnabled();
+    }
+
+    @Override
+    public void write(CharSequence traceMessage) {
+        if (!this.running) {
+            this.shutdownDroppedCount.increment();
+            return;
+        }
+        QueuedMessage message = new QueuedMessage(traceMessage.toString(), MDC.getCopyOfContextMap());
+        if (!this.queue.offer(message) && !handleOverflow(message)) {
+            (this.running ? this.overflowDroppedCount : this.shutdownDroppedCount).increment();
+            return;
+        }
+        this.enqueuedCount.increment();
+        if (this.writerParked) {
+            LockSupport.unpark(this.writerThread);
+        }
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getQueueCapacity() {
+        return this.queue.capacity();
+    }
+
+    /**
+     * Returns an estimate of the number of trace messages waiting to be written.
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * Returns the total number of trace messages accepted by this writer.
+     */
+    public long getEnqueuedCount() {
+        return this.enqueuedCount.sum();
+    }
+
+    /**
+     * Returns the total number of trace messages dropped due to overflow or shutdown.
+     */
+    public long getDroppedCount() {
+        return this.overflowDroppedCount.sum() + this.shutdownDroppedCount.sum();
+    }
+
+    /**
+     * Returns the total number of trace messages dropped for the given reason.
+     */
+    public long getDroppedCount(DropReason reason) {
+        return (reason == DropReason.OVERFLOW ? this.overflowDroppedCount : this.shutdownDroppedCount).sum();
+    }
+
+    /**
+     * Stops the writer thread after all queued trace messages have been written.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        LockSupport.unpark(this.writerThread);
+        try {
+            this.writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean handleOverflow(QueuedMessage message) {
+        switch (this.overflowPolicy) {
+            case DROP_OLDEST:
+                do {
+                    if (this.queue.poll() != null) {
+                        this.overflowDroppedCount.increment();
+                    }
+                } while (!this.queue.offer(message));
+                return true;
+            case BLOCK:
+                if (REACTOR_PRESENT && ReactorThreads.isNonBlocking()) {
+                    return false;
+                }
+                do {
+                    if (!this.running) {
+                        return false;
+                    }
+                    LockSupport.unpark(this.writerThread);
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                } while (!this.queue.offer(message));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void drainQueue() {
+        QueuedMessage[] batch = new QueuedMessage[this.batchSize];
+        while (this.running || !this.queue.isEmpty()) {
+            int batchLength = 0;
+            QueuedMessage message;
+            while (batchLength < batch.length && (message = this.queue.poll()) != null) {
+                batch[batchLength++] = message;
+            }
+            if (batchLength == 0) {
+                park();
+            } else {
+                writeBatch(batch, batchLength);
+            }
+        }
+    }
+
+    private void writeBatch(QueuedMessage[] batch, int batchLength) {
+        for (int i = 0; i < batchLength; i++) {
+            QueuedMessage message = batch[i];
+            try {
+                if (message.mdc != null) {
+                    MDC.setContextMap(message.mdc);
+                } else {
+                    MDC.clear();
+                }
+                this.delegate.write(message.text);
+            } catch (RuntimeException ex) {
+                logger.warn("*** TRACE *** Failed to write REST trace message", ex);
+            }
+            batch[i] = null;
+        }
+        MDC.clear();
+    }
+
+    private void park() {
+        this.writerParked = true;
+        // re-check after publishing the parked flag to avoid missing a concurrent hand-off
+        if (this.running && this.queue.isEmpty()) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        this.writerParked = false;
+    }
+
+    /**
+     * Trace message together with the MDC of the thread which wrote it.
+     */
+    private static final class QueuedMessage {
+
+        private final String text;
+
+        private final Map<String, String> mdc;
+
+        QueuedMessage(String text, Map<String, String> mdc) {
+            this.text = text;
+            this.mdc = mdc;
+        }
+    }
+
+    /**
+     * Isolates the access to Reactor, which is an optional dependency.
+     */
+    private static final class ReactorThreads {
+
+        static boolean isNonBlocking() {
+            return Schedulers.isInNonBlockingThread();
+        }
+    }
+}
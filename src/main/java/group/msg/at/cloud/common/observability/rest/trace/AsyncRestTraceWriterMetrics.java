@@ -0,0 +1,43 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Locale;
+
+/**
+ * Custom {@code MeterBinder} which exports metrics of an {@link AsyncRestTraceWriter}
+ * using metrics name prefix {@code rest.trace.queue.*}.
+ */
+public class AsyncRestTraceWriterMetrics implements MeterBinder {
+
+    private static final String METRIC_NAME_PREFIX = "rest.trace.queue.";
+
+    private final AsyncRestTraceWriter writer;
+
+    public AsyncRestTraceWriterMetrics(AsyncRestTraceWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(METRIC_NAME_PREFIX + "enqueued", writer, AsyncRestTraceWriter::getEnqueuedCount)
+                .description("Total number of REST trace messages handed over to the trace writer thread")
+                .register(registry);
+        for (AsyncRestTraceWriter.DropReason reason : AsyncRestTraceWriter.DropReason.values()) {
+            FunctionCounter.builder(METRIC_NAME_PREFIX + "dropped", writer, w -> w.getDroppedCount(reason))
+                    .description("Total number of REST trace messages dropped because the trace queue was full or the trace writer was closed")
+                    .tag("policy", writer.getOverflowPolicy().name())
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        Gauge.builder(METRIC_NAME_PREFIX + "depth", writer, AsyncRestTraceWriter::getQueueDepth)
+                .description("An estimate of the number of REST trace messages waiting to be written")
+                .register(registry);
+        Gauge.builder(METRIC_NAME_PREFIX + "capacity", writer, AsyncRestTraceWriter::getQueueCapacity)
+                .description("The maximum number of REST trace messages the trace queue can hold")
+                .register(registry);
+    }
+}
@@ -0,0 +1,32 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive {@code ClientHttpRequest} decorator which tees the leading bytes of each written {@code DataBuffer}
+ * into a {@link RestTraceBodyCapture} as the buffers flow by, without aggregating the body stream.
+ */
+final class BodyCapturingClientHttpRequest extends ClientHttpRequestDecorator {
+
+    private final RestTraceBodyCapture capture;
+
+    BodyCapturingClientHttpRequest(ClientHttpRequest delegate, RestTraceBodyCapture capture) {
+        super(delegate);
+        this.capture = capture;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        return super.writeWith(Flux.from(body).doOnNext(this.capture::capture));
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return super.writeAndFlushWith(Flux.from(body).map(chunk -> Flux.from(chunk).doOnNext(this.capture::capture)));
+    }
+}
@@ -0,0 +1,104 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@code ClientHttpResponse} decorator which tees the leading bytes of the response body into a {@link RestTraceBodyCapture}
+ * while the application reads the body, and completes the trace of the exchange when the response is closed.
+ */
+final class BodyCapturingClientHttpResponse implements ClientHttpResponse {
+
+    private final ClientHttpResponse delegate;
+
+    private final RestTraceBodyCapture capture;
+
+    private final Runnable onClose;
+
+    private InputStream body;
+
+    private boolean closed;
+
+    BodyCapturingClientHttpResponse(ClientHttpResponse delegate, RestTraceBodyCapture capture, Runnable onClose) {
+        this.delegate = delegate;
+        this.capture = capture;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() throws IOException {
+        return this.delegate.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return this.delegate.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return this.delegate.getHeaders();
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        if (this.body == null) {
+            this.body = new CapturingInputStream(this.delegate.getBody(), this.capture);
+        }
+        return this.body;
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.onClose.run();
+        }
+        this.delegate.close();
+    }
+
+    private static final class CapturingInputStream extends FilterInputStream {
+
+        private final RestTraceBodyCapture capture;
+
+        CapturingInputStream(InputStream delegate, RestTraceBodyCapture capture) {
+            super(delegate);
+            this.capture = capture;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) {
+                this.capture.capture(result);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int result = super.read(bytes, offset, length);
+            if (result > 0) {
+                this.capture.capture(bytes, offset, result);
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            this.capture.skip(result);
+            return result;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
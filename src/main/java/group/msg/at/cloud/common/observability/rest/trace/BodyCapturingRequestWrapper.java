@@ -0,0 +1,103 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code HttpServletRequestWrapper} which tees the leading bytes of the request body into a {@link RestTraceBodyCapture}
+ * while the application reads the body; the body itself is streamed through and never buffered as a whole.
+ */
+final class BodyCapturingRequestWrapper extends HttpServletRequestWrapper {
+
+    private final RestTraceBodyCapture capture;
+
+    private ServletInputStream inputStream;
+
+    private BufferedReader reader;
+
+    BodyCapturingRequestWrapper(HttpServletRequest request, RestTraceBodyCapture capture) {
+        super(request);
+        this.capture = capture;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (this.inputStream == null) {
+            this.inputStream = new CapturingInputStream(super.getInputStream(), this.capture);
+        }
+        return this.inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (this.reader == null) {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            this.reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+        return this.reader;
+    }
+
+    private static final class CapturingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        private final RestTraceBodyCapture capture;
+
+        CapturingInputStream(ServletInputStream delegate, RestTraceBodyCapture capture) {
+            this.delegate = delegate;
+            this.capture = capture;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = this.delegate.read();
+            if (result >= 0) {
+                this.capture.capture(result);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int result = this.delegate.read(bytes, offset, length);
+            if (result > 0) {
+                this.capture.capture(bytes, offset, result);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return this.delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            this.delegate.setReadListener(readListener);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.delegate.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.delegate.close();
+        }
+    }
+}
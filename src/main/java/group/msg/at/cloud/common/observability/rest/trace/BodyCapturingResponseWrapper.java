@@ -0,0 +1,187 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * {@code HttpServletResponseWrapper} which tees the leading bytes of the response body into a {@link RestTraceBodyCapture}
+ * while the application writes the body; the body itself is streamed through and never buffered as a whole.
+ * <p>
+ * Whether the body is captured at all is decided by the {@link RestTraceBodyPolicy} when the first byte is written,
+ * since the content type of the response is not known before. Characters written to the writer are buffered by it
+ * until {@link #flushWriter()} pushes them through; resetting the response discards them along with the capture.
+ * Like the servlet container, the wrapper hands out either the writer or the output stream, never both.
+ * </p>
+ */
+final class BodyCapturingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final RestTraceBodyPolicy bodyPolicy;
+
+    private final RestTraceContext context;
+
+    private CapturingOutputStream outputStream;
+
+    private boolean outputStreamUsed;
+
+    private PrintWriter writer;
+
+    BodyCapturingResponseWrapper(HttpServletResponse response, RestTraceBodyPolicy bodyPolicy, RestTraceContext context) {
+        super(response);
+        this.bodyPolicy = bodyPolicy;
+        this.context = context;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (this.writer != null) {
+            throw new IllegalStateException("Trying to get the output stream of a response after its writer has been obtained");
+        }
+        this.outputStreamUsed = true;
+        return capturingOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (this.writer == null) {
+            if (this.outputStreamUsed) {
+                throw new IllegalStateException("Trying to get the writer of a response after its output stream has been obtained");
+            }
+            this.writer = new PrintWriter(new OutputStreamWriter(capturingOutputStream(), getCharacterEncoding()));
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        flushWriter();
+        super.flushBuffer();
+    }
+
+    /**
+     * Discards the characters buffered by the writer by pushing them into the response buffer right before it is cleared,
+     * and restarts the capture. Like the servlet container, allows obtaining either the writer or the output stream again.
+     */
+    @Override
+    public void reset() {
+        flushWriter();
+        super.reset();
+        this.writer = null;
+        this.outputStreamUsed = false;
+        this.outputStream = null;
+        this.context.setResponseBody(null);
+    }
+
+    /**
+     * Discards the characters buffered by the writer by pushing them into the response buffer right before it is cleared,
+     * and restarts the capture.
+     */
+    @Override
+    public void resetBuffer() {
+        flushWriter();
+        super.resetBuffer();
+        if (this.outputStream != null) {
+            this.outputStream.restartCapture();
+        }
+    }
+
+    /**
+     * Pushes any characters buffered by the writer handed out by this wrapper into the buffer of the underlying response
+     * without flushing it, so the response is neither committed nor kept from being reset, e.g. for an error page.
+     */
+    void flushWriter() {
+        if (this.writer != null) {
+            this.outputStream.flushDelegate = false;
+            try {
+                this.writer.flush();
+            } finally {
+                this.outputStream.flushDelegate = true;
+            }
+        }
+    }
+
+    private CapturingOutputStream capturingOutputStream() throws IOException {
+        if (this.outputStream == null) {
+            this.outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return this.outputStream;
+    }
+
+    private final class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private RestTraceBodyCapture capture;
+
+        private boolean captureDecided;
+
+        private boolean flushDelegate = true;
+
+        CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.delegate.write(b);
+            RestTraceBodyCapture current = currentCapture();
+            if (current != null) {
+                current.capture(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            this.delegate.write(bytes, offset, length);
+            RestTraceBodyCapture current = currentCapture();
+            if (current != null) {
+                current.capture(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.flushDelegate) {
+                this.delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.delegate.setWriteListener(writeListener);
+        }
+
+        /**
+         * Discards the bytes captured so far; the capture of the bytes written from now on is decided anew.
+         */
+        void restartCapture() {
+            this.captureDecided = false;
+            this.capture = null;
+            context.setResponseBody(null);
+        }
+
+        private RestTraceBodyCapture currentCapture() {
+            if (!this.captureDecided) {
+                this.captureDecided = true;
+                this.capture = bodyPolicy.newCapture(getContentType());
+                context.setResponseBody(this.capture);
+            }
+            return this.capture;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reactive {@code ServerHttpRequest} decorator which tees the leading bytes of each read {@code DataBuffer}
+ * into a {@link RestTraceBodyCapture} as the buffers flow by, without aggregating the body stream.
+ */
+final class BodyCapturingServerHttpRequest extends ServerHttpRequestDecorator {
+
+    private final RestTraceBodyCapture capture;
+
+    BodyCapturingServerHttpRequest(ServerHttpRequest delegate, RestTraceBodyCapture capture) {
+        super(delegate);
+        this.capture = capture;
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return super.getBody().doOnNext(this.capture::capture);
+    }
+}
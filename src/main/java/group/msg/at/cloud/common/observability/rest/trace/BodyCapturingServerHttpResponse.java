@@ -0,0 +1,53 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive {@code ServerHttpResponse} decorator which tees the leading bytes of each written {@code DataBuffer}
+ * into a {@link RestTraceBodyCapture} as the buffers flow by, without aggregating the body stream.
+ * <p>
+ * Whether the body is captured at all is decided by the {@link RestTraceBodyPolicy} when the body is written,
+ * since the content type of the response is not known before.
+ * </p>
+ */
+final class BodyCapturingServerHttpResponse extends ServerHttpResponseDecorator {
+
+    private final RestTraceBodyPolicy bodyPolicy;
+
+    private final RestTraceContext context;
+
+    private boolean captureDecided;
+
+    BodyCapturingServerHttpResponse(ServerHttpResponse delegate, RestTraceBodyPolicy bodyPolicy, RestTraceContext context) {
+        super(delegate);
+        this.bodyPolicy = bodyPolicy;
+        this.context = context;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        RestTraceBodyCapture capture = startCapture();
+        return capture != null ? super.writeWith(Flux.from(body).doOnNext(capture::capture)) : super.writeWith(body);
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        RestTraceBodyCapture capture = startCapture();
+        return capture != null
+                ? super.writeAndFlushWith(Flux.from(body).map(chunk -> Flux.from(chunk).doOnNext(capture::capture)))
+                : super.writeAndFlushWith(body);
+    }
+
+    private RestTraceBodyCapture startCapture() {
+        if (!this.captureDecided) {
+            this.captureDecided = true;
+            this.context.setResponseBody(this.bodyPolicy.newCapture(getHeaders().getContentType()));
+        }
+        return this.context.getResponseBody();
+    }
+}
@@ -0,0 +1,115 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer / multi-consumer queue based on a sequenced ring buffer.
+ * <p>
+ * Each slot carries a sequence number telling producers and consumers whether the slot is ready to be written
+ * or read, so both {@link #offer(Object)} and {@link #poll()} are completed with a single CAS
+ * and never block or allocate.
+ * </p>
+ *
+ * @param <E> type of queued elements
+ */
+final class BoundedHandOffQueue<E> {
+
+    private final int mask;
+
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong enqueuePosition = new AtomicLong();
+
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    /**
+     * Creates a new queue with the given capacity rounded up to the next power of two.
+     */
+    BoundedHandOffQueue(int capacity) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 2 and 2^30");
+        }
+        int actualCapacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = actualCapacity - 1;
+        this.elements = new AtomicReferenceArray<>(actualCapacity);
+        this.sequences = new AtomicLongArray(actualCapacity);
+        for (int i = 0; i < actualCapacity; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Returns an estimate of the number of queued elements.
+     */
+    int size() {
+        long size = this.enqueuePosition.get() - this.dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Adds the given element to the tail of this queue.
+     *
+     * @return {@code false}, if this queue is full
+     */
+    boolean offer(E element) {
+        long position = this.enqueuePosition.get();
+        int index;
+        while (true) {
+            index = (int) (position & this.mask);
+            long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.enqueuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.enqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = this.enqueuePosition.get();
+            }
+        }
+        this.elements.lazySet(index, element);
+        this.sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Removes the element at the head of this queue.
+     *
+     * @return head element or {@code null}, if this queue is empty
+     */
+    E poll() {
+        long position = this.dequeuePosition.get();
+        int index;
+        while (true) {
+            index = (int) (position & this.mask);
+            long difference = this.sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (this.dequeuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.dequeuePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = this.dequeuePosition.get();
+            }
+        }
+        E result = this.elements.get(index);
+        this.elements.lazySet(index, null);
+        this.sequences.lazySet(index, position + this.mask + 1);
+        return result;
+    }
+}
@@ -4,7 +4,10 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 
@@ -13,60 +16,91 @@ import java.util.*;
 
 /**
  * Default implementation of a {@code RestTraceMessageBuilder}.
+ * <p>
+ * Headers are rendered according to a {@link RestTraceHeaderPolicy}.
+ * </p>
  */
 public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
 
-    private static final Set<String> CONFIDENTIAL_HEADER_NAMES = Set.of("Authorization", "authorization");
+    private final RestTraceHeaderPolicy headerPolicy;
+
+    public DefaultRestTraceMessageBuilder() {
+        this(RestTraceHeaderPolicy.defaults());
+    }
+
+    public DefaultRestTraceMessageBuilder(RestTraceHeaderPolicy headerPolicy) {
+        this.headerPolicy = headerPolicy;
+    }
+
+    public RestTraceHeaderPolicy getHeaderPolicy() {
+        return headerPolicy;
+    }
 
     @Override
-    public void build(StringBuilder traceMessage, HttpRequest request) {
+    public void build(StringBuilder traceMessage, HttpRequest request, RestTraceContext context) {
         traceMessage.append("*** REST REQUEST OUT *** { ");
-        appendRequest(traceMessage, request, true);
+        appendRequest(traceMessage, request, true, null);
         traceMessage.append(" }");
     }
 
     @Override
-    public void build(StringBuilder traceMessage, ClientRequest request) {
+    public void build(StringBuilder traceMessage, ClientRequest request, RestTraceContext context) {
         traceMessage.append("*** REST REQUEST OUT *** { ");
-        appendRequest(traceMessage, request, true);
+        appendRequest(traceMessage, request, true, null);
+        traceMessage.append(" }");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, HttpServletRequest request, RestTraceContext context) {
+        traceMessage.append("*** REST REQUEST IN *** { ");
+        appendRequest(traceMessage, request, true, null);
         traceMessage.append(" }");
     }
 
     @Override
-    public void build(StringBuilder traceMessage, HttpServletRequest request) {
+    public void build(StringBuilder traceMessage, ServerHttpRequest request, RestTraceContext context) {
         traceMessage.append("*** REST REQUEST IN *** { ");
-        appendRequest(traceMessage, request, true);
+        appendRequest(traceMessage, request, true, null);
         traceMessage.append(" }");
     }
 
     @Override
-    public void build(StringBuilder traceMessage, HttpRequest request, ClientHttpResponse response) {
+    public void build(StringBuilder traceMessage, HttpRequest request, ClientHttpResponse response, RestTraceContext context) {
         traceMessage.append("*** REST RESPONSE IN *** { ");
-        appendRequest(traceMessage, request, false);
+        appendRequest(traceMessage, request, false, context.getRequestBody());
         traceMessage.append(", ");
-        appendResponse(traceMessage, response);
+        appendResponse(traceMessage, response, context.getResponseBody());
         traceMessage.append(" }");
     }
 
     @Override
-    public void build(StringBuilder traceMessage, ClientRequest request, ClientResponse response) {
+    public void build(StringBuilder traceMessage, ClientRequest request, ClientResponse response, RestTraceContext context) {
         traceMessage.append("*** REST RESPONSE IN *** { ");
-        appendRequest(traceMessage, request, false);
+        appendRequest(traceMessage, request, false, context.getRequestBody());
         traceMessage.append(", ");
-        appendResponse(traceMessage, response);
+        appendResponse(traceMessage, response, context.getResponseBody());
         traceMessage.append(" }");
     }
 
     @Override
-    public void build(StringBuilder traceMessage, HttpServletRequest request, HttpServletResponse response) {
+    public void build(StringBuilder traceMessage, HttpServletRequest request, HttpServletResponse response, RestTraceContext context) {
         traceMessage.append("*** REST RESPONSE OUT *** { ");
-        appendRequest(traceMessage, request, false);
+        appendRequest(traceMessage, request, false, context.getRequestBody());
         traceMessage.append(", ");
-        appendResponse(traceMessage, response);
+        appendResponse(traceMessage, response, context.getResponseBody());
         traceMessage.append(" }");
     }
 
-    private void appendRequest(StringBuilder traceMessage, HttpRequest request, boolean withHeaders) {
+    @Override
+    public void build(StringBuilder traceMessage, ServerHttpRequest request, ServerHttpResponse response, RestTraceContext context) {
+        traceMessage.append("*** REST RESPONSE OUT *** { ");
+        appendRequest(traceMessage, request, false, context.getRequestBody());
+        traceMessage.append(", ");
+        appendResponse(traceMessage, response, context.getResponseBody());
+        traceMessage.append(" }");
+    }
+
+    private void appendRequest(StringBuilder traceMessage, HttpRequest request, boolean withHeaders, RestTraceBodyCapture body) {
         traceMessage.append("request : { ");
         traceMessage.append("uri : \"").append(request.getURI()).append("\"");
         traceMessage.append(", method : \"").append(request.getMethod()).append("\"");
@@ -74,10 +108,11 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
             traceMessage.append(", ");
             appendHeaders(traceMessage, request.getHeaders());
         }
+        appendBody(traceMessage, body);
         traceMessage.append(" }");
     }
 
-    private void appendRequest(StringBuilder traceMessage, ClientRequest request, boolean withHeaders) {
+    private void appendRequest(StringBuilder traceMessage, ClientRequest request, boolean withHeaders, RestTraceBodyCapture body) {
         traceMessage.append("request : { ");
         traceMessage.append("uri : \"").append(request.url()).append("\"");
         traceMessage.append(", method : \"").append(request.method()).append("\"");
@@ -85,10 +120,11 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
             traceMessage.append(", ");
             appendHeaders(traceMessage, request.headers());
         }
+        appendBody(traceMessage, body);
         traceMessage.append(" }");
     }
 
-    private void appendRequest(StringBuilder traceMessage, HttpServletRequest request, boolean withHeaders) {
+    private void appendRequest(StringBuilder traceMessage, HttpServletRequest request, boolean withHeaders, RestTraceBodyCapture body) {
         traceMessage.append("request : { ");
         traceMessage.append("uri : \"").append(request.getRequestURL()).append("\"");
         traceMessage.append(", method : \"").append(request.getMethod()).append("\"");
@@ -96,10 +132,11 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
             traceMessage.append(", ");
             appendHeaders(traceMessage, request);
         }
+        appendBody(traceMessage, body);
         traceMessage.append(" }");
     }
 
-    private void appendResponse(StringBuilder traceMessage, ClientHttpResponse response) {
+    private void appendResponse(StringBuilder traceMessage, ClientHttpResponse response, RestTraceBodyCapture body) {
         traceMessage.append("response { ");
         int statusCode = extractStatusCode(response);
         traceMessage.append("statusCode : ").append(statusCode);
@@ -109,44 +146,71 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
         }
         traceMessage.append(", ");
         appendHeaders(traceMessage, response.getHeaders());
+        appendBody(traceMessage, body);
         traceMessage.append(" }");
     }
 
-    private void appendResponse(StringBuilder traceMessage, HttpServletResponse response) {
+    private void appendResponse(StringBuilder traceMessage, HttpServletResponse response, RestTraceBodyCapture body) {
         traceMessage.append("response { ");
         traceMessage.append("statusCode : ").append(response.getStatus());
         traceMessage.append(", ");
         appendHeaders(traceMessage, response);
+        appendBody(traceMessage, body);
         traceMessage.append(" }");
     }
 
-    private void appendResponse(StringBuilder traceMessage, ClientResponse response) {
+    private void appendResponse(StringBuilder traceMessage, ClientResponse response, RestTraceBodyCapture body) {
         traceMessage.append("response { ");
         traceMessage.append("statusCode : ").append(response.statusCode().value());
         traceMessage.append(", ");
         appendHeaders(traceMessage, response.headers().asHttpHeaders());
+        appendBody(traceMessage, body);
+        traceMessage.append(" }");
+    }
+
+    private void appendResponse(StringBuilder traceMessage, ServerHttpResponse response, RestTraceBodyCapture body) {
+        traceMessage.append("response { ");
+        HttpStatusCode statusCode = response.getStatusCode();
+        traceMessage.append("statusCode : ").append(statusCode != null ? statusCode.value() : 200);
+        traceMessage.append(", ");
+        appendHeaders(traceMessage, response.getHeaders());
+        appendBody(traceMessage, body);
         traceMessage.append(" }");
     }
 
+    private void appendBody(StringBuilder traceMessage, RestTraceBodyCapture body) {
+        if (body != null) {
+            traceMessage.append(", body : \"");
+            body.appendTo(traceMessage);
+            traceMessage.append('"');
+            if (body.isTruncated()) {
+                traceMessage.append(", bodyTruncated : true");
+            }
+        }
+    }
+
     private void appendHeaders(StringBuilder traceEntry, HttpHeaders headers) {
         traceEntry.append("headers : { ");
         int headerIndex = 0;
         for (Map.Entry<String, List<String>> currentHeader : headers.entrySet()) {
+            RestTraceHeaderPolicy.Action action = this.headerPolicy.actionOf(currentHeader.getKey());
+            if (action == RestTraceHeaderPolicy.Action.DROP) {
+                continue;
+            }
             if (headerIndex > 0) {
                 traceEntry.append(", ");
             }
             traceEntry.append(currentHeader.getKey()).append(" : ");
-            if (currentHeader.getValue().size() == 1) {
-                traceEntry.append("\"").append(filterConfidentialHeaderValue(currentHeader.getKey(), currentHeader.getValue().get(0))).append("\"");
+            List<String> headerValues = currentHeader.getValue();
+            if (headerValues.size() == 1) {
+                appendHeaderValue(traceEntry, action, headerValues.get(0));
             } else {
                 traceEntry.append("[");
-                int valueIndex = 0;
-                for (String currentHeaderValue : currentHeader.getValue()) {
-                    if (valueIndex > 0) {
+                for (int i = 0; i < headerValues.size(); i++) {
+                    if (i > 0) {
                         traceEntry.append(", ");
                     }
-                    traceEntry.append("\"").append(filterConfidentialHeaderValue(currentHeader.getKey(), currentHeaderValue)).append("\"");
-                    valueIndex++;
+                    appendHeaderValue(traceEntry, action, headerValues.get(i));
                 }
                 traceEntry.append("]");
             }
@@ -162,6 +226,10 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
             int headerIndex = 0;
             while (headerNames.hasMoreElements()) {
                 String currentHeaderName = headerNames.nextElement();
+                RestTraceHeaderPolicy.Action action = this.headerPolicy.actionOf(currentHeaderName);
+                if (action == RestTraceHeaderPolicy.Action.DROP) {
+                    continue;
+                }
                 if (headerIndex > 0) {
                     traceEntry.append(", ");
                 }
@@ -174,7 +242,7 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
                         if (valueIndex > 0) {
                             traceEntry.append(", ");
                         }
-                        traceEntry.append("\"").append(filterConfidentialHeaderValue(currentHeaderName, headerValues.nextElement())).append("\"");
+                        appendHeaderValue(traceEntry, action, headerValues.nextElement());
                         valueIndex++;
                     }
                 }
@@ -189,13 +257,17 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
         traceEntry.append("headers : { ");
         int headerIndex = 0;
         for (String currentHeaderName : response.getHeaderNames()) {
+            RestTraceHeaderPolicy.Action action = this.headerPolicy.actionOf(currentHeaderName);
+            if (action == RestTraceHeaderPolicy.Action.DROP) {
+                continue;
+            }
             if (headerIndex > 0) {
                 traceEntry.append(", ");
             }
             traceEntry.append(currentHeaderName).append(" : ");
             Collection<String> headerValues = response.getHeaders(currentHeaderName);
             if (headerValues.size() == 1) {
-                traceEntry.append("\"").append(headerValues.iterator().next()).append("\"");
+                appendHeaderValue(traceEntry, action, headerValues.iterator().next());
             } else {
                 traceEntry.append("[");
                 int valueIndex = 0;
@@ -203,7 +275,7 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
                     if (valueIndex > 0) {
                         traceEntry.append(", ");
                     }
-                    traceEntry.append("\"").append(currentHeaderValue).append("\"");
+                    appendHeaderValue(traceEntry, action, currentHeaderValue);
                     valueIndex++;
                 }
                 traceEntry.append("]");
@@ -233,7 +305,21 @@ public class DefaultRestTraceMessageBuilder implements RestTraceMessageBuilder {
         return result;
     }
 
-    private String filterConfidentialHeaderValue(String headerName, String headerValue) {
-        return CONFIDENTIAL_HEADER_NAMES.contains(headerName) ? String.format("_redacted(%d)_", headerValue.length()) : headerValue;
+    /**
+     * Appends the given header value as quoted string; values of redacted headers are replaced with a redaction
+     * marker and values exceeding the maximum value length are cut off and followed by a truncation marker.
+     */
+    private void appendHeaderValue(StringBuilder traceEntry, RestTraceHeaderPolicy.Action action, String headerValue) {
+        traceEntry.append('"');
+        if (action == RestTraceHeaderPolicy.Action.REDACT) {
+            traceEntry.append("_redacted(").append(headerValue.length()).append(")_");
+        } else {
+            int renderedLength = this.headerPolicy.renderedLength(headerValue);
+            traceEntry.append(headerValue, 0, renderedLength);
+            if (renderedLength < headerValue.length()) {
+                traceEntry.append("_truncated(").append(headerValue.length()).append(")_");
+            }
+        }
+        traceEntry.append('"');
     }
 }
@@ -0,0 +1,359 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code RestTraceMessageBuilder} which writes each trace message as a single valid JSON object.
+ * <p>
+ * JSON is written straight into the trace message by a hand-rolled streaming encoder; no intermediate tree is built.
+ * Each trace message carries the type of the traced REST message, the correlation id of the exchange and,
+ * for response trace messages, the duration of the exchange in nanoseconds:
+ * </p>
+ * <pre>
+ * {"type":"REST_RESPONSE_OUT","correlationId":"5f0c6a2b9e1d4c3a","durationNanos":1234567,"request":{...},"response":{...}}
+ * </pre>
+ * <p>
+ * Headers are rendered according to a {@link RestTraceHeaderPolicy}.
+ * </p>
+ */
+public class JsonRestTraceMessageBuilder implements RestTraceMessageBuilder {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final RestTraceHeaderPolicy headerPolicy;
+
+    public JsonRestTraceMessageBuilder() {
+        this(RestTraceHeaderPolicy.defaults());
+    }
+
+    public JsonRestTraceMessageBuilder(RestTraceHeaderPolicy headerPolicy) {
+        this.headerPolicy = headerPolicy;
+    }
+
+    public RestTraceHeaderPolicy getHeaderPolicy() {
+        return headerPolicy;
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, HttpRequest request, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_REQUEST_OUT", context, false);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.getURI().toString());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.getMethod().name());
+        traceMessage.append(',');
+        appendHeaders(traceMessage, request.getHeaders());
+        traceMessage.append("}}");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, ClientRequest request, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_REQUEST_OUT", context, false);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.url().toString());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.method().name());
+        traceMessage.append(',');
+        appendHeaders(traceMessage, request.headers());
+        traceMessage.append("}}");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, HttpServletRequest request, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_REQUEST_IN", context, false);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.getRequestURL());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.getMethod());
+        traceMessage.append(',');
+        appendHeaders(traceMessage, request);
+        traceMessage.append("}}");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, ServerHttpRequest request, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_REQUEST_IN", context, false);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.getURI().toString());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.getMethod().name());
+        traceMessage.append(',');
+        appendHeaders(traceMessage, request.getHeaders());
+        traceMessage.append("}}");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, HttpRequest request, ClientHttpResponse response, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_RESPONSE_IN", context, true);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.getURI().toString());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.getMethod().name());
+        appendBody(traceMessage, context.getRequestBody());
+        traceMessage.append("},\"response\":{\"statusCode\":").append(extractStatusCode(response));
+        String statusText = extractStatusMessage(response);
+        if (statusText != null && !statusText.isEmpty()) {
+            traceMessage.append(",\"statusText\":");
+            appendString(traceMessage, statusText);
+        }
+        traceMessage.append(',');
+        appendHeaders(traceMessage, response.getHeaders());
+        appendBody(traceMessage, context.getResponseBody());
+        traceMessage.append("}}");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, ClientRequest request, ClientResponse response, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_RESPONSE_IN", context, true);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.url().toString());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.method().name());
+        appendBody(traceMessage, context.getRequestBody());
+        traceMessage.append("},\"response\":{\"statusCode\":").append(response.statusCode().value());
+        traceMessage.append(',');
+        appendHeaders(traceMessage, response.headers().asHttpHeaders());
+        appendBody(traceMessage, context.getResponseBody());
+        traceMessage.append("}}");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, HttpServletRequest request, HttpServletResponse response, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_RESPONSE_OUT", context, true);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.getRequestURL());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.getMethod());
+        appendBody(traceMessage, context.getRequestBody());
+        traceMessage.append("},\"response\":{\"statusCode\":").append(response.getStatus());
+        traceMessage.append(',');
+        appendHeaders(traceMessage, response);
+        appendBody(traceMessage, context.getResponseBody());
+        traceMessage.append("}}");
+    }
+
+    @Override
+    public void build(StringBuilder traceMessage, ServerHttpRequest request, ServerHttpResponse response, RestTraceContext context) {
+        appendPrologue(traceMessage, "REST_RESPONSE_OUT", context, true);
+        traceMessage.append(",\"request\":{\"uri\":");
+        appendString(traceMessage, request.getURI().toString());
+        traceMessage.append(",\"method\":");
+        appendString(traceMessage, request.getMethod().name());
+        appendBody(traceMessage, context.getRequestBody());
+        HttpStatusCode statusCode = response.getStatusCode();
+        traceMessage.append("},\"response\":{\"statusCode\":").append(statusCode != null ? statusCode.value() : 200);
+        traceMessage.append(',');
+        appendHeaders(traceMessage, response.getHeaders());
+        appendBody(traceMessage, context.getResponseBody());
+        traceMessage.append("}}");
+    }
+
+    private void appendPrologue(StringBuilder traceMessage, String type, RestTraceContext context, boolean withDuration) {
+        traceMessage.append("{\"type\":\"").append(type).append("\",\"correlationId\":\"");
+        appendHex(traceMessage, context.getCorrelationId());
+        traceMessage.append('"');
+        if (withDuration && context.getDurationNanos() >= 0) {
+            traceMessage.append(",\"durationNanos\":").append(context.getDurationNanos());
+        }
+    }
+
+    private void appendHeaders(StringBuilder traceMessage, HttpHeaders headers) {
+        traceMessage.append("\"headers\":{");
+        boolean first = true;
+        for (Map.Entry<String, List<String>> currentHeader : headers.entrySet()) {
+            RestTraceHeaderPolicy.Action action = this.headerPolicy.actionOf(currentHeader.getKey());
+            if (action == RestTraceHeaderPolicy.Action.DROP) {
+                continue;
+            }
+            if (!first) {
+                traceMessage.append(',');
+            }
+            first = false;
+            appendString(traceMessage, currentHeader.getKey());
+            traceMessage.append(":[");
+            List<String> headerValues = currentHeader.getValue();
+            for (int i = 0; i < headerValues.size(); i++) {
+                if (i > 0) {
+                    traceMessage.append(',');
+                }
+                appendHeaderValue(traceMessage, action, headerValues.get(i));
+            }
+            traceMessage.append(']');
+        }
+        traceMessage.append('}');
+    }
+
+    private void appendHeaders(StringBuilder traceMessage, HttpServletRequest request) {
+        traceMessage.append("\"headers\":{");
+        Enumeration<String> headerNames = request.getHeaderNames();
+        if (headerNames != null) {
+            boolean first = true;
+            while (headerNames.hasMoreElements()) {
+                String currentHeaderName = headerNames.nextElement();
+                RestTraceHeaderPolicy.Action action = this.headerPolicy.actionOf(currentHeaderName);
+                if (action == RestTraceHeaderPolicy.Action.DROP) {
+                    continue;
+                }
+                if (!first) {
+                    traceMessage.append(',');
+                }
+                first = false;
+                appendString(traceMessage, currentHeaderName);
+                traceMessage.append(":[");
+                Enumeration<String> headerValues = request.getHeaders(currentHeaderName);
+                if (headerValues != null) {
+                    boolean firstValue = true;
+                    while (headerValues.hasMoreElements()) {
+                        if (!firstValue) {
+                            traceMessage.append(',');
+                        }
+                        firstValue = false;
+                        appendHeaderValue(traceMessage, action, headerValues.nextElement());
+                    }
+                }
+                traceMessage.append(']');
+            }
+        }
+        traceMessage.append('}');
+    }
+
+    private void appendHeaders(StringBuilder traceMessage, HttpServletResponse response) {
+        traceMessage.append("\"headers\":{");
+        boolean first = true;
+        for (String currentHeaderName : response.getHeaderNames()) {
+            RestTraceHeaderPolicy.Action action = this.headerPolicy.actionOf(currentHeaderName);
+            if (action == RestTraceHeaderPolicy.Action.DROP) {
+                continue;
+            }
+            if (!first) {
+                traceMessage.append(',');
+            }
+            first = false;
+            appendString(traceMessage, currentHeaderName);
+            traceMessage.append(":[");
+            Collection<String> headerValues = response.getHeaders(currentHeaderName);
+            boolean firstValue = true;
+            for (String currentHeaderValue : headerValues) {
+                if (!firstValue) {
+                    traceMessage.append(',');
+                }
+                firstValue = false;
+                appendHeaderValue(traceMessage, action, currentHeaderValue);
+            }
+            traceMessage.append(']');
+        }
+        traceMessage.append('}');
+    }
+
+    private void appendHeaderValue(StringBuilder traceMessage, RestTraceHeaderPolicy.Action action, String headerValue) {
+        if (action == RestTraceHeaderPolicy.Action.REDACT) {
+            traceMessage.append("\"_redacted(").append(headerValue.length()).append(")_\"");
+            return;
+        }
+        int renderedLength = this.headerPolicy.renderedLength(headerValue);
+        traceMessage.append('"');
+        appendEscaped(traceMessage, headerValue, renderedLength);
+        if (renderedLength < headerValue.length()) {
+            traceMessage.append("_truncated(").append(headerValue.length()).append(")_");
+        }
+        traceMessage.append('"');
+    }
+
+    private void appendBody(StringBuilder traceMessage, RestTraceBodyCapture body) {
+        if (body != null) {
+            // body capture escapes its content according to JSON string rules
+            traceMessage.append(",\"body\":\"");
+            body.appendTo(traceMessage);
+            traceMessage.append('"');
+            if (body.isTruncated()) {
+                traceMessage.append(",\"bodyTruncated\":true");
+            }
+        }
+    }
+
+    /**
+     * Appends the given value as JSON string literal escaping all characters which must be escaped according to RFC 8259
+     * plus the line and paragraph separators which would break JavaScript-based log processors.
+     */
+    static void appendString(StringBuilder traceMessage, CharSequence value) {
+        if (value == null) {
+            traceMessage.append("null");
+            return;
+        }
+        traceMessage.append('"');
+        appendEscaped(traceMessage, value, value.length());
+        traceMessage.append('"');
+    }
+
+    /**
+     * Appends the given number of leading characters of the given value escaped according to JSON string rules.
+     */
+    private static void appendEscaped(StringBuilder traceMessage, CharSequence value, int length) {
+        int unescapedStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            traceMessage.append(value, unescapedStart, i);
+            unescapedStart = i + 1;
+            switch (c) {
+                case '"' -> traceMessage.append("\\\"");
+                case '\\' -> traceMessage.append("\\\\");
+                case '\n' -> traceMessage.append("\\n");
+                case '\r' -> traceMessage.append("\\r");
+                case '\t' -> traceMessage.append("\\t");
+                case '\b' -> traceMessage.append("\\b");
+                case '\f' -> traceMessage.append("\\f");
+                default -> traceMessage.append("\\u")
+                        .append(HEX_DIGITS[(c >> 12) & 0xF]).append(HEX_DIGITS[(c >> 8) & 0xF])
+                        .append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        traceMessage.append(value, unescapedStart, length);
+    }
+
+    /**
+     * Appends the given value as 16 lower-case hex digits.
+     */
+    static void appendHex(StringBuilder traceMessage, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            traceMessage.append(HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    private int extractStatusCode(ClientHttpResponse response) {
+        int result = -1;
+        try {
+            result = response.getStatusCode().value();
+        } catch (IOException ex) {
+            // we don't care !!!
+        }
+        return result;
+    }
+
+    private String extractStatusMessage(ClientHttpResponse response) {
+        String result = null;
+        try {
+            result = response.getStatusText();
+        } catch (IOException ex) {
+            // we don't care !!!
+        }
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@code RestTraceWriter} which synchronously logs each trace message on INFO level
+ * to the common REST trace logger {@value RestTraceConstants#REST_TRACE_LOGGER_NAME} via the Log4j2 API.
+ * <p>
+ * Trace messages are passed to Log4j2 as reusable {@code StringBuilderFormattable} messages instead of strings,
+ * so Log4j2 encodes them straight from the (recycled) trace message buffer in garbage-free mode.
+ * Only used, if Log4j2 Core is the logging backend; see {@link #isLog4jCoreActive()}.
+ * </p>
+ */
+public final class Log4j2RestTraceWriter implements RestTraceWriter {
+
+    private static final ThreadLocal<RestTraceLogMessage> MESSAGES = ThreadLocal.withInitial(RestTraceLogMessage::new);
+
+    private final Logger logger;
+
+    public Log4j2RestTraceWriter() {
+        this(LogManager.getLogger(RestTraceConstants.REST_TRACE_LOGGER_NAME));
+    }
+
+    public Log4j2RestTraceWriter(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Returns {@code true}, if the Log4j2 API is backed by Log4j2 Core instead of being bridged to another logging backend.
+     * <p>
+     * Must only be called if {@code log4j-core} is on the classpath.
+     * </p>
+     */
+    public static boolean isLog4jCoreActive() {
+        return LogManager.getContext(false) instanceof org.apache.logging.log4j.core.LoggerContext;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    @Override
+    public void write(CharSequence traceMessage) {
+        RestTraceLogMessage message = MESSAGES.get();
+        if (message.isInUse()) {
+            // reentrant call while an appender is busy with the trace message of the current thread
+            message = new RestTraceLogMessage();
+        }
+        message.set(traceMessage);
+        try {
+            logger.info(message);
+        } finally {
+            message.clear();
+        }
+    }
+}
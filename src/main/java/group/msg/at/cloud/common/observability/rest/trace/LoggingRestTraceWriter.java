@@ -0,0 +1,23 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code RestTraceWriter} which synchronously logs each trace message on INFO level
+ * to the common REST trace logger {@value RestTraceConstants#REST_TRACE_LOGGER_NAME}.
+ */
+public final class LoggingRestTraceWriter implements RestTraceWriter {
+
+    private final Logger logger = LoggerFactory.getLogger(RestTraceConstants.REST_TRACE_LOGGER_NAME);
+
+    @Override
+    public boolean isEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    @Override
+    public void write(CharSequence traceMessage) {
+        logger.info(traceMessage.toString());
+    }
+}
@@ -0,0 +1,122 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code RestLatencyRecorder} which records latencies into Micrometer timers with percentile histograms
+ * tagged by {@code route}, {@code method} and {@code status}.
+ * <p>
+ * Timers are cached in arrays indexed by HTTP method and status code below a map keyed by route template,
+ * so recording an exchange costs a single map lookup plus two array reads and never allocates tags once
+ * the timer exists. Recording before this binder is bound to a registry is a no-op.
+ * </p>
+ */
+public final class MicrometerRestLatencyRecorder implements RestLatencyRecorder, MeterBinder {
+
+    public static final String SERVER_METRIC_NAME = "rest.server.requests";
+
+    public static final String CLIENT_METRIC_NAME = "rest.client.requests";
+
+    /**
+     * Maximum number of distinct routes; exchanges on any other route are recorded with route {@value #OVERFLOW_ROUTE}.
+     */
+    static final int MAX_ROUTES = 1024;
+
+    static final String OVERFLOW_ROUTE = "OTHER";
+
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE", "OTHER"};
+
+    private static final int STATUS_SLOTS = 600;
+
+    private final String metricName;
+
+    private final String description;
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    private final Map<String, AtomicReferenceArray<AtomicReferenceArray<Timer>>> routeTimers = new ConcurrentHashMap<>();
+
+    public MicrometerRestLatencyRecorder(String metricName, String description) {
+        this.metricName = metricName;
+        this.description = description;
+    }
+
+    /**
+     * Returns a recorder for inbound exchanges using metric name {@value #SERVER_METRIC_NAME}.
+     */
+    public static MicrometerRestLatencyRecorder server() {
+        return new MicrometerRestLatencyRecorder(SERVER_METRIC_NAME, "Latency of inbound REST exchanges");
+    }
+
+    /**
+     * Returns a recorder for outbound exchanges using metric name {@value #CLIENT_METRIC_NAME}.
+     */
+    public static MicrometerRestLatencyRecorder client() {
+        return new MicrometerRestLatencyRecorder(CLIENT_METRIC_NAME, "Latency of outbound REST exchanges");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.registry.add(meterRegistry);
+    }
+
+    @Override
+    public void record(String route, String method, int statusCode, long durationNanos) {
+        String routeToUse = route != null ? route : UNKNOWN_ROUTE;
+        AtomicReferenceArray<AtomicReferenceArray<Timer>> timersByMethod = this.routeTimers.get(routeToUse);
+        if (timersByMethod == null) {
+            if (this.routeTimers.size() >= MAX_ROUTES) {
+                routeToUse = OVERFLOW_ROUTE;
+            }
+            timersByMethod = this.routeTimers.computeIfAbsent(routeToUse, k -> new AtomicReferenceArray<>(METHODS.length));
+        }
+        int methodIndex = methodIndex(method);
+        AtomicReferenceArray<Timer> timersByStatus = timersByMethod.get(methodIndex);
+        if (timersByStatus == null) {
+            timersByMethod.compareAndSet(methodIndex, null, new AtomicReferenceArray<>(STATUS_SLOTS));
+            timersByStatus = timersByMethod.get(methodIndex);
+        }
+        int statusIndex = statusCode > 0 && statusCode < STATUS_SLOTS ? statusCode : NO_RESPONSE;
+        Timer timer = timersByStatus.get(statusIndex);
+        if (timer == null) {
+            timer = registerTimer(routeToUse, METHODS[methodIndex], statusIndex);
+            timersByStatus.lazySet(statusIndex, timer);
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer registerTimer(String route, String method, int statusCode) {
+        return Timer.builder(this.metricName)
+                .description(this.description)
+                .tag("route", route)
+                .tag("method", method)
+                .tag("status", statusCode == NO_RESPONSE ? "NONE" : Integer.toString(statusCode))
+                .publishPercentileHistogram()
+                .register(this.registry);
+    }
+
+    private static int methodIndex(String method) {
+        if (method == null) {
+            return METHODS.length - 1;
+        }
+        return switch (method) {
+            case "GET" -> 0;
+            case "HEAD" -> 1;
+            case "POST" -> 2;
+            case "PUT" -> 3;
+            case "PATCH" -> 4;
+            case "DELETE" -> 5;
+            case "OPTIONS" -> 6;
+            case "TRACE" -> 7;
+            default -> 8;
+        };
+    }
+}
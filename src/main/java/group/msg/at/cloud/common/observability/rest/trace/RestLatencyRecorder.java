@@ -0,0 +1,31 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+/**
+ * {@code Recorder} for the latency of REST exchanges observed by REST tracing components.
+ * <p>
+ * Implementations must be lock-free and must not allocate on the recording path, since latencies are recorded for
+ * every exchange regardless of whether the exchange is traced.
+ * </p>
+ */
+public interface RestLatencyRecorder {
+
+    /**
+     * Route used if the route template of an exchange is unknown.
+     */
+    String UNKNOWN_ROUTE = "UNKNOWN";
+
+    /**
+     * Status code used if an exchange failed without a response.
+     */
+    int NO_RESPONSE = 0;
+
+    /**
+     * Records the latency of a single exchange.
+     *
+     * @param route         route template of the exchange, e.g. {@code /api/v1/tasks/{taskId}}
+     * @param method        HTTP method of the exchange
+     * @param statusCode    HTTP status code of the response or {@link #NO_RESPONSE}
+     * @param durationNanos duration of the exchange in nanoseconds
+     */
+    void record(String route, String method, int statusCode, long durationNanos);
+}
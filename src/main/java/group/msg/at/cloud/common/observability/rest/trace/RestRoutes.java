@@ -0,0 +1,87 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.springframework.web.util.pattern.PathPattern;
+
+/**
+ * Derives the route of inbound exchanges from the pattern of the handler mapping which matched the exchange
+ * or, if no pattern is known yet, from the request path.
+ * <p>
+ * Kept free of servlet and reactive types, so it can be shared by the servlet filter and the reactive web filter.
+ * </p>
+ */
+final class RestRoutes {
+
+    static final String IDENTIFIER_SEGMENT = "{id}";
+
+    private RestRoutes() {
+    }
+
+    /**
+     * Returns the route of an inbound exchange.
+     *
+     * @param bestMatchingPattern value of the best matching pattern attribute of the exchange; may be {@code null}
+     * @param statusCode          HTTP status code of the response
+     */
+    static String routeOf(Object bestMatchingPattern, int statusCode) {
+        if (bestMatchingPattern instanceof String patternString) {
+            return patternString;
+        }
+        if (bestMatchingPattern instanceof PathPattern pathPattern) {
+            return pathPattern.getPatternString();
+        }
+        if (statusCode == 404) {
+            return "NOT_FOUND";
+        }
+        if (statusCode >= 300 && statusCode < 400) {
+            return "REDIRECTION";
+        }
+        return RestLatencyRecorder.UNKNOWN_ROUTE;
+    }
+
+    /**
+     * Returns an approximation of the route of a request path, if its route template isn't known yet, e.g. before
+     * the handler mapping matched the request: path segments which look like identifiers are replaced by
+     * {@value #IDENTIFIER_SEGMENT}, so {@code /api/v1/orders/4711} becomes {@code /api/v1/orders/{id}}.
+     * A segment looks like an identifier, if it consists of digits only or contains a digit and has at least
+     * eight characters, like UUIDs, hashes or dates.
+     *
+     * @param path request path; may be {@code null}
+     * @return the given path, if it has no identifier segments
+     */
+    static String routeOfPath(String path) {
+        if (path == null) {
+            return null;
+        }
+        StringBuilder result = null;
+        int length = path.length();
+        int segmentStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (i > segmentStart && isIdentifier(path, segmentStart, i)) {
+                    if (result == null) {
+                        result = new StringBuilder(length).append(path, 0, segmentStart);
+                    }
+                    result.append(IDENTIFIER_SEGMENT);
+                } else if (result != null) {
+                    result.append(path, segmentStart, i);
+                }
+                if (result != null && i < length) {
+                    result.append('/');
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return result != null ? result.toString() : path;
+    }
+
+    private static boolean isIdentifier(String path, int start, int end) {
+        boolean digitsOnly = true;
+        boolean anyDigit = false;
+        for (int i = start; i < end; i++) {
+            boolean digit = Character.isDigit(path.charAt(i));
+            digitsOnly &= digit;
+            anyDigit |= digit;
+        }
+        return digitsOnly || (anyDigit && end - start >= 8);
+    }
+}
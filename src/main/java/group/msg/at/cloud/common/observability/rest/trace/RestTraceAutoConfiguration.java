@@ -1,24 +1,38 @@
 package group.msg.at.cloud.common.observability.rest.trace;
 
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.time.Duration;
+import java.util.List;
+
 /**
  * Configuration for REST traces logged to application logs.
  * <p>
  * In order to have trace entries written to the application logs,
  * application property {@code cnj.observability.rest.tracing.enabled} must be set to true.
  * </p>
+ * <p>
+ * In order to have the latency of REST exchanges recorded as Micrometer timers,
+ * application property {@code cnj.observability.rest.metrics.enabled} must be set to true.
+ * </p>
  */
 @Configuration
-@ConditionalOnProperty(name = "cnj.observability.rest.tracing.enabled", havingValue = "true")
+@Conditional(RestTraceAutoConfiguration.TracingOrMetricsEnabledCondition.class)
 public class RestTraceAutoConfiguration {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
@@ -29,37 +43,263 @@ public class RestTraceAutoConfiguration {
     @Value("${cnj.observability.rest.tracing.urlPatterns:/api/*}")
     private String urlPatterns;
 
+    @Value("${cnj.observability.rest.tracing.includes:}")
+    private List<String> includes;
+
+    @Value("${cnj.observability.rest.tracing.excludes:${management.endpoints.web.base-path:/actuator}/**}")
+    private List<String> excludes;
+
+    @Value("${cnj.observability.rest.tracing.buffers.recycled:false}")
+    private boolean buffersRecycled;
+
+    @Value("${cnj.observability.rest.tracing.buffers.initialCapacity:" + RestTraceMessageBuffers.DEFAULT_INITIAL_CAPACITY + "}")
+    private int buffersInitialCapacity;
+
+    @Value("${cnj.observability.rest.tracing.buffers.maxRetainedCapacity:" + RestTraceMessageBuffers.DEFAULT_MAX_RETAINED_CAPACITY + "}")
+    private int buffersMaxRetainedCapacity;
+
+    @Value("${cnj.observability.rest.tracing.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${cnj.observability.rest.tracing.async.queueCapacity:" + AsyncRestTraceWriter.DEFAULT_QUEUE_CAPACITY + "}")
+    private int asyncQueueCapacity;
+
+    @Value("${cnj.observability.rest.tracing.async.batchSize:" + AsyncRestTraceWriter.DEFAULT_BATCH_SIZE + "}")
+    private int asyncBatchSize;
+
+    @Value("${cnj.observability.rest.tracing.async.overflowPolicy:DROP_NEWEST}")
+    private AsyncRestTraceWriter.OverflowPolicy asyncOverflowPolicy;
+
+    @Value("${cnj.observability.rest.tracing.sampling.probability:1.0}")
+    private double samplingProbability;
+
+    @Value("${cnj.observability.rest.tracing.sampling.rateLimitPerRoute:0}")
+    private double samplingRateLimitPerRoute;
+
+    @Value("${cnj.observability.rest.tracing.sampling.tail.serverErrors:true}")
+    private boolean samplingTailServerErrors;
+
+    @Value("${cnj.observability.rest.tracing.sampling.tail.latencyThreshold:0ms}")
+    private Duration samplingTailLatencyThreshold;
+
+    @Bean
+    public RestTraceSampler restTraceSampler() {
+        log.info("*** CONFIG *** Adding rest trace sampler to application context with probability [{}], rate limit per route [{}], tail on server errors [{}] and tail latency threshold [{}]",
+                samplingProbability, samplingRateLimitPerRoute, samplingTailServerErrors, samplingTailLatencyThreshold);
+        return new RestTraceSampler(this.samplingProbability, this.samplingRateLimitPerRoute,
+                this.samplingTailServerErrors, this.samplingTailLatencyThreshold.toNanos());
+    }
+
+    @Value("${cnj.observability.rest.tracing.body.enabled:false}")
+    private boolean bodyEnabled;
+
+    @Value("${cnj.observability.rest.tracing.body.maxBytes:" + RestTraceBodyPolicy.DEFAULT_MAX_BYTES + "}")
+    private int bodyMaxBytes;
+
+    @Value("${cnj.observability.rest.tracing.body.contentTypes:application/json,application/*+json,application/xml,application/*+xml,application/x-www-form-urlencoded,text/*}")
+    private List<String> bodyContentTypes;
+
+    @Bean
+    public RestTraceBodyPolicy restTraceBodyPolicy() {
+        log.info("*** CONFIG *** Adding rest trace body policy to application context with enabled [{}], max bytes [{}] and content types {}",
+                bodyEnabled, bodyMaxBytes, bodyContentTypes);
+        return new RestTraceBodyPolicy(this.bodyEnabled, this.bodyMaxBytes, this.bodyContentTypes);
+    }
+
+    @Bean
+    public RestTraceWriter restTraceWriter() {
+        boolean garbageFree = isLog4jCoreActive();
+        log.info("*** CONFIG *** Adding rest trace writer to application context with logging backend [{}]", garbageFree ? "Log4j2" : "SLF4J");
+        RestTraceWriter result = garbageFree ? new Log4j2RestTraceWriter() : new LoggingRestTraceWriter();
+        if (this.asyncEnabled) {
+            log.info("*** CONFIG *** Adding asynchronous rest trace writer to application context with queue capacity [{}], batch size [{}] and overflow policy [{}]",
+                    asyncQueueCapacity, asyncBatchSize, asyncOverflowPolicy);
+            result = new AsyncRestTraceWriter(result, this.asyncQueueCapacity, this.asyncBatchSize, this.asyncOverflowPolicy);
+        } else {
+            log.info("*** CONFIG *** Adding synchronous rest trace writer to application context");
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true}, if Log4j2 Core is the logging backend, which allows to log trace messages without materializing strings.
+     */
+    private boolean isLog4jCoreActive() {
+        return ClassUtils.isPresent("org.apache.logging.log4j.core.LoggerContext", getClass().getClassLoader())
+                && Log4j2RestTraceWriter.isLog4jCoreActive();
+    }
+
+    @Value("${cnj.observability.rest.tracing.headers.redacted:Authorization,Proxy-Authorization,Cookie,Set-Cookie,X-API-Key,Api-Key}")
+    private List<String> headersRedacted;
+
+    @Value("${cnj.observability.rest.tracing.headers.dropped:}")
+    private List<String> headersDropped;
+
+    @Value("${cnj.observability.rest.tracing.headers.keepOnly:}")
+    private List<String> headersKeepOnly;
+
+    @Value("${cnj.observability.rest.tracing.headers.maxValueLength:0}")
+    private int headersMaxValueLength;
+
+    @Bean
+    public RestTraceHeaderPolicy restTraceHeaderPolicy() {
+        log.info("*** CONFIG *** Adding rest trace header policy to application context with redacted headers {}, dropped headers {}, keep only headers {} and max value length [{}]",
+                headersRedacted, headersDropped, headersKeepOnly, headersMaxValueLength);
+        return new RestTraceHeaderPolicy(this.headersRedacted, this.headersDropped, this.headersKeepOnly, this.headersMaxValueLength);
+    }
+
+    @Value("${cnj.observability.rest.tracing.format:default}")
+    private String format;
+
+    @Bean
+    public RestTraceMessageBuilder restTraceMessageBuilder() {
+        log.info("*** CONFIG *** Adding rest trace message builder to application context with format [{}]", format);
+        if ("json".equalsIgnoreCase(this.format)) {
+            return new JsonRestTraceMessageBuilder(restTraceHeaderPolicy());
+        }
+        if (!"default".equalsIgnoreCase(this.format)) {
+            throw new IllegalArgumentException(String.format("Unsupported REST trace format [%s]; expected one of [default, json]", this.format));
+        }
+        return new DefaultRestTraceMessageBuilder(restTraceHeaderPolicy());
+    }
+
     @Bean
-    public FilterRegistrationBean<RestTraceContainerFilter> containerRestTraceFilter() {
-        log.info("*** CONFIG *** Adding container rest trace filter to application context");
+    public RestTraceMessageBuffers restTraceMessageBuffers() {
+        log.info("*** CONFIG *** Adding rest trace message buffers to application context with recycled [{}]", buffersRecycled);
+        return this.buffersRecycled
+                ? RestTraceMessageBuffers.recycling(this.buffersInitialCapacity, this.buffersMaxRetainedCapacity)
+                : RestTraceMessageBuffers.allocating(this.buffersInitialCapacity);
+    }
+
+    /**
+     * Selects the inbound requests to trace by the include patterns or, if there are none, by the legacy servlet URL pattern.
+     */
+    private RequestPathSelector restTracePathSelector() {
+        List<String> pathIncludes = this.includes.isEmpty() ? List.of(RequestPathSelector.fromServletUrlPattern(this.urlPatterns)) : this.includes;
+        return new RequestPathSelector(pathIncludes, this.excludes);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RestTraceContainerFilter> containerRestTraceFilter(
+            @Qualifier("restServerLatencyRecorder") ObjectProvider<RestLatencyRecorder> latencyRecorder) {
+        RequestPathSelector pathSelector = restTracePathSelector();
+        log.info("*** CONFIG *** Adding container rest trace filter to application context with path selector {}", pathSelector);
         FilterRegistrationBean<RestTraceContainerFilter> result = new FilterRegistrationBean<>();
         RestTraceContainerFilter filter = new RestTraceContainerFilter();
         filter.setEnabled(this.enabled);
+        filter.setMessageBuilder(restTraceMessageBuilder());
+        filter.setMessageBuffers(restTraceMessageBuffers());
+        filter.setWriter(restTraceWriter());
+        filter.setSampler(restTraceSampler());
+        filter.setBodyPolicy(restTraceBodyPolicy());
+        filter.setLatencyRecorder(latencyRecorder.getIfAvailable());
+        filter.setPathSelector(pathSelector);
         result.setFilter(filter);
-        result.addUrlPatterns(this.urlPatterns);
+        // requests are selected by the filter itself, which matches paths within the application
+        result.addUrlPatterns("/*");
         return result;
     }
 
     @Bean
-    public RestTraceClientInterceptor clientRestTraceInterceptor() {
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public RestTraceWebFilter restTraceWebFilter(
+            @Qualifier("restServerLatencyRecorder") ObjectProvider<RestLatencyRecorder> latencyRecorder) {
+        RequestPathSelector pathSelector = restTracePathSelector();
+        log.info("*** CONFIG *** Adding reactive rest trace web filter to application context with path selector {}", pathSelector);
+        RestTraceWebFilter result = new RestTraceWebFilter();
+        result.setEnabled(this.enabled);
+        result.setMessageBuilder(restTraceMessageBuilder());
+        result.setMessageBuffers(restTraceMessageBuffers());
+        result.setWriter(restTraceWriter());
+        result.setSampler(restTraceSampler());
+        result.setBodyPolicy(restTraceBodyPolicy());
+        result.setLatencyRecorder(latencyRecorder.getIfAvailable());
+        result.setPathSelector(pathSelector);
+        return result;
+    }
+
+    @Bean
+    public RestTraceClientInterceptor clientRestTraceInterceptor(
+            @Qualifier("restClientLatencyRecorder") ObjectProvider<RestLatencyRecorder> latencyRecorder) {
         log.info("*** CONFIG *** Adding client rest trace interceptor to application context");
         RestTraceClientInterceptor result = new RestTraceClientInterceptor();
         result.setEnabled(this.enabled);
+        result.setMessageBuilder(restTraceMessageBuilder());
+        result.setMessageBuffers(restTraceMessageBuffers());
+        result.setWriter(restTraceWriter());
+        result.setSampler(restTraceSampler());
+        result.setBodyPolicy(restTraceBodyPolicy());
+        result.setLatencyRecorder(latencyRecorder.getIfAvailable());
         return result;
     }
 
     @Bean
-    public RestTraceRestTemplateCustomizer clientRestTraceInterceptorCustomizer() {
+    public RestTraceRestTemplateCustomizer clientRestTraceInterceptorCustomizer(RestTraceClientInterceptor clientRestTraceInterceptor) {
         log.info("*** CONFIG *** Adding client rest trace interceptor customizer to application context");
-        return new RestTraceRestTemplateCustomizer(clientRestTraceInterceptor());
+        return new RestTraceRestTemplateCustomizer(clientRestTraceInterceptor);
     }
 
     @Bean
     @ConditionalOnClass(WebClient.class)
-    public RestTraceWebClientCustomizer restTraceWebClientCustomizer() {
+    public RestTraceWebClientCustomizer restTraceWebClientCustomizer(
+            @Qualifier("restClientLatencyRecorder") ObjectProvider<RestLatencyRecorder> latencyRecorder) {
         log.info("*** CONFIG *** Adding web client rest trace customizer to application context");
-        RestTraceWebClientCustomizer result = new RestTraceWebClientCustomizer();
-        result.setEnabled(this.enabled);
-        return result;
+        RestTraceExchangeFilterFunction filterFunction = new RestTraceExchangeFilterFunction();
+        filterFunction.setEnabled(this.enabled);
+        filterFunction.setMessageBuilder(restTraceMessageBuilder());
+        filterFunction.setMessageBuffers(restTraceMessageBuffers());
+        filterFunction.setWriter(restTraceWriter());
+        filterFunction.setSampler(restTraceSampler());
+        filterFunction.setBodyPolicy(restTraceBodyPolicy());
+        filterFunction.setLatencyRecorder(latencyRecorder.getIfAvailable());
+        return new RestTraceWebClientCustomizer(filterFunction);
+    }
+
+    /**
+     * Exports metrics of the asynchronous trace writer, if Micrometer is present.
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    @ConditionalOnProperty(name = {"cnj.observability.rest.tracing.enabled", "cnj.observability.rest.tracing.async.enabled"}, havingValue = "true")
+    static class AsyncRestTraceWriterMetricsConfiguration {
+
+        @Bean
+        public AsyncRestTraceWriterMetrics asyncRestTraceWriterMetrics(RestTraceWriter restTraceWriter) {
+            return new AsyncRestTraceWriterMetrics((AsyncRestTraceWriter) restTraceWriter);
+        }
+    }
+
+    /**
+     * Records the latency of inbound and outbound REST exchanges, if Micrometer is present.
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    @ConditionalOnProperty(name = "cnj.observability.rest.metrics.enabled", havingValue = "true")
+    static class RestLatencyMetricsConfiguration {
+
+        @Bean
+        public MicrometerRestLatencyRecorder restServerLatencyRecorder() {
+            return MicrometerRestLatencyRecorder.server();
+        }
+
+        @Bean
+        public MicrometerRestLatencyRecorder restClientLatencyRecorder() {
+            return MicrometerRestLatencyRecorder.client();
+        }
+    }
+
+    static class TracingOrMetricsEnabledCondition extends AnyNestedCondition {
+
+        TracingOrMetricsEnabledCondition() {
+            super(ConfigurationPhase.PARSE_CONFIGURATION);
+        }
+
+        @ConditionalOnProperty(name = "cnj.observability.rest.tracing.enabled", havingValue = "true")
+        static class TracingEnabled {
+        }
+
+        @ConditionalOnProperty(name = "cnj.observability.rest.metrics.enabled", havingValue = "true")
+        static class MetricsEnabled {
+        }
     }
 }
@@ -0,0 +1,149 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.charset.Charset;
+
+/**
+ * Bounded sink for the leading bytes of a request or response body which is streamed through a tracing component.
+ * <p>
+ * Bytes beyond the maximum number of captured bytes are only counted, so the memory held by a capture never exceeds
+ * its maximum size regardless of the payload size. The capture buffer grows on demand, small bodies therefore
+ * don't pay for the maximum size.
+ * </p>
+ */
+public final class RestTraceBodyCapture {
+
+    private static final int MIN_BUFFER_SIZE = 256;
+
+    private final int maxBytes;
+
+    private final Charset charset;
+
+    private byte[] buffer;
+
+    private int capturedLength;
+
+    private long totalLength;
+
+    private boolean skipped;
+
+    RestTraceBodyCapture(int maxBytes, Charset charset) {
+        this.maxBytes = maxBytes;
+        this.charset = charset;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of bytes captured so far.
+     */
+    public int getCapturedLength() {
+        return capturedLength;
+    }
+
+    /**
+     * Returns the number of bytes which passed this capture so far.
+     */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Returns {@code true}, if more bytes passed this capture than it could hold.
+     */
+    public boolean isTruncated() {
+        return totalLength > capturedLength;
+    }
+
+    void capture(int b) {
+        this.totalLength++;
+        if (ensureCapacity(1) > 0) {
+            this.buffer[this.capturedLength++] = (byte) b;
+        }
+    }
+
+    void capture(byte[] bytes, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        this.totalLength += length;
+        int count = Math.min(length, ensureCapacity(length));
+        if (count > 0) {
+            System.arraycopy(bytes, offset, this.buffer, this.capturedLength, count);
+            this.capturedLength += count;
+        }
+    }
+
+    void capture(DataBuffer dataBuffer) {
+        int readableByteCount = dataBuffer.readableByteCount();
+        this.totalLength += readableByteCount;
+        int count = Math.min(readableByteCount, ensureCapacity(readableByteCount));
+        int readPosition = dataBuffer.readPosition();
+        for (int i = 0; i < count; i++) {
+            this.buffer[this.capturedLength++] = dataBuffer.getByte(readPosition + i);
+        }
+    }
+
+    /**
+     * Counts bytes which passed without being seen, e.g. skipped by the reader of a body; since the captured bytes
+     * would not be contiguous anymore, nothing is captured from here on and the capture is truncated.
+     */
+    void skip(long count) {
+        if (count > 0) {
+            this.totalLength += count;
+            this.skipped = true;
+        }
+    }
+
+    /**
+     * Appends the captured bytes decoded as text to the given trace message,
+     * escaping quotes, backslashes and control characters.
+     */
+    public void appendTo(StringBuilder traceMessage) {
+        if (this.capturedLength == 0) {
+            return;
+        }
+        String text = new String(this.buffer, 0, this.capturedLength, this.charset);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> traceMessage.append("\\\"");
+                case '\\' -> traceMessage.append("\\\\");
+                case '\n' -> traceMessage.append("\\n");
+                case '\r' -> traceMessage.append("\\r");
+                case '\t' -> traceMessage.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        traceMessage.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        traceMessage.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure the capture buffer can take up to the given number of additional bytes without exceeding
+     * the maximum size and returns the number of bytes which actually fit.
+     */
+    private int ensureCapacity(int additionalBytes) {
+        int remaining = this.skipped ? 0 : this.maxBytes - this.capturedLength;
+        if (remaining <= 0) {
+            return 0;
+        }
+        int required = this.capturedLength + Math.min(additionalBytes, remaining);
+        if (this.buffer == null || this.buffer.length < required) {
+            int newSize = Math.min(this.maxBytes, Math.max(required, Math.max(MIN_BUFFER_SIZE, this.buffer == null ? 0 : this.buffer.length * 2)));
+            byte[] newBuffer = new byte[newSize];
+            if (this.buffer != null) {
+                System.arraycopy(this.buffer, 0, newBuffer, 0, this.capturedLength);
+            }
+            this.buffer = newBuffer;
+        }
+        return Math.min(additionalBytes, remaining);
+    }
+}
@@ -0,0 +1,95 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decides which request and response bodies are captured by REST tracing components.
+ * <p>
+ * Only bodies whose content type matches one of the allowed content types are captured,
+ * and never more than the configured maximum number of bytes per body.
+ * </p>
+ */
+public final class RestTraceBodyPolicy {
+
+    public static final int DEFAULT_MAX_BYTES = 4096;
+
+    public static final List<String> DEFAULT_CONTENT_TYPES = List.of(
+            "application/json", "application/*+json", "application/xml", "application/*+xml",
+            "application/x-www-form-urlencoded", "text/*");
+
+    private static final RestTraceBodyPolicy DISABLED = new RestTraceBodyPolicy(false, DEFAULT_MAX_BYTES, List.of());
+
+    private final boolean enabled;
+
+    private final int maxBytes;
+
+    private final List<MediaType> contentTypes;
+
+    public RestTraceBodyPolicy(boolean enabled, int maxBytes, Collection<String> contentTypes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be greater than zero");
+        }
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.contentTypes = contentTypes.stream().map(MediaType::parseMediaType).toList();
+    }
+
+    /**
+     * Returns a policy which never captures any bodies.
+     */
+    public static RestTraceBodyPolicy disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public List<MediaType> getContentTypes() {
+        return contentTypes;
+    }
+
+    /**
+     * Returns a new capture for a body with the given content type or {@code null}, if the body must not be captured.
+     *
+     * @param contentType value of the {@code Content-Type} header; may be {@code null}
+     */
+    public RestTraceBodyCapture newCapture(String contentType) {
+        if (!this.enabled || contentType == null || contentType.isEmpty()) {
+            return null;
+        }
+        try {
+            return newCapture(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a new capture for a body with the given content type or {@code null}, if the body must not be captured.
+     *
+     * @param contentType content type of the body; may be {@code null}
+     */
+    public RestTraceBodyCapture newCapture(MediaType contentType) {
+        if (!this.enabled || contentType == null) {
+            return null;
+        }
+        for (MediaType current : this.contentTypes) {
+            if (current.includes(contentType)) {
+                Charset charset = contentType.getCharset();
+                return new RestTraceBodyCapture(this.maxBytes, charset != null ? charset : StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
@@ -1,9 +1,8 @@
 package group.msg.at.cloud.common.observability.rest.trace;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
@@ -13,13 +12,25 @@ import java.io.IOException;
 
 /**
  * {@code RestTemplate} interceptor which logs outbound REST requests and inbound REST responses.
+ * <p>
+ * If a {@link RestLatencyRecorder} is set, the latency of every outbound exchange is recorded as well
+ * using the URI template of the exchange as route.
+ * </p>
  */
 @Order(Ordered.LOWEST_PRECEDENCE)
 public final class RestTraceClientInterceptor implements ClientHttpRequestInterceptor {
 
-    private final Logger logger = LoggerFactory.getLogger(RestTraceConstants.REST_TRACE_LOGGER_NAME);
+    private RestTraceMessageBuilder messageBuilder = new DefaultRestTraceMessageBuilder();
 
-    private final RestTraceMessageBuilder messageBuilder = new DefaultRestTraceMessageBuilder();
+    private RestTraceMessageBuffers messageBuffers = RestTraceMessageBuffers.allocating();
+
+    private RestTraceWriter writer = new LoggingRestTraceWriter();
+
+    private RestTraceSampler sampler = RestTraceSampler.always();
+
+    private RestTraceBodyPolicy bodyPolicy = RestTraceBodyPolicy.disabled();
+
+    private RestLatencyRecorder latencyRecorder;
 
     private boolean enabled;
 
@@ -31,27 +42,142 @@ public final class RestTraceClientInterceptor implements ClientHttpRequestInterc
         this.enabled = enabled;
     }
 
+    public RestTraceMessageBuilder getMessageBuilder() {
+        return messageBuilder;
+    }
+
+    public void setMessageBuilder(RestTraceMessageBuilder messageBuilder) {
+        this.messageBuilder = messageBuilder;
+    }
+
+    public RestTraceMessageBuffers getMessageBuffers() {
+        return messageBuffers;
+    }
+
+    public void setMessageBuffers(RestTraceMessageBuffers messageBuffers) {
+        this.messageBuffers = messageBuffers;
+    }
+
+    public RestTraceWriter getWriter() {
+        return writer;
+    }
+
+    public void setWriter(RestTraceWriter writer) {
+        this.writer = writer;
+    }
+
+    public RestTraceSampler getSampler() {
+        return sampler;
+    }
+
+    public void setSampler(RestTraceSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    public RestTraceBodyPolicy getBodyPolicy() {
+        return bodyPolicy;
+    }
+
+    public void setBodyPolicy(RestTraceBodyPolicy bodyPolicy) {
+        this.bodyPolicy = bodyPolicy;
+    }
+
+    public RestLatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * Sets the recorder receiving the latency of every outbound exchange, regardless of whether the exchange is traced.
+     */
+    public void setLatencyRecorder(RestLatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
     @Override
     public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
-        traceRequest(request);
-        ClientHttpResponse response = execution.execute(request, body);
-        traceResponse(request, response);
+        String route = RestTraceUriTemplateHandler.takeCurrentTemplate(request.getURI());
+        RestTraceSampler.Decision decision = this.enabled && this.writer.isEnabled()
+                ? this.sampler.sample(route != null ? route : RestRoutes.routeOfPath(request.getURI().getPath())) : RestTraceSampler.Decision.SKIP;
+        if (decision == RestTraceSampler.Decision.SKIP) {
+            return this.latencyRecorder == null ? execution.execute(request, body) : executeMeasured(request, body, execution, route);
+        }
+        RestTraceContext context = new RestTraceContext(System.nanoTime());
+        if (this.bodyPolicy.isEnabled()) {
+            RestTraceBodyCapture requestBody = this.bodyPolicy.newCapture(request.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+            if (requestBody != null) {
+                requestBody.capture(body, 0, body.length);
+                context.setRequestBody(requestBody);
+            }
+        }
+        if (decision == RestTraceSampler.Decision.TRACE) {
+            traceRequest(request, context);
+        }
+        ClientHttpResponse response = executeMeasured(request, body, execution, route);
+        context.complete(System.nanoTime());
+        if (decision == RestTraceSampler.Decision.DEFER && !this.sampler.isTailSampled(extractStatusCode(response), context.getDurationNanos())) {
+            return response;
+        }
+        RestTraceBodyCapture responseBody = this.bodyPolicy.newCapture(response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        if (responseBody != null) {
+            // response body is read by the caller, so the trace is completed once the caller closes the response
+            context.setResponseBody(responseBody);
+            return new BodyCapturingClientHttpResponse(response, responseBody, () -> traceExchange(request, response, decision, context));
+        }
+        traceExchange(request, response, decision, context);
         return response;
     }
 
-    private void traceRequest(HttpRequest request) {
-        if (this.enabled) {
-            StringBuilder traceMessage = new StringBuilder();
-            this.messageBuilder.build(traceMessage, request);
-            logger.info(traceMessage.toString());
+    private ClientHttpResponse executeMeasured(HttpRequest request, byte[] body, ClientHttpRequestExecution execution, String route) throws IOException {
+        if (this.latencyRecorder == null) {
+            return execution.execute(request, body);
+        }
+        long startNanos = System.nanoTime();
+        int statusCode = RestLatencyRecorder.NO_RESPONSE;
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            statusCode = extractStatusCode(response);
+            return response;
+        } finally {
+            this.latencyRecorder.record(route != null ? route : RestLatencyRecorder.UNKNOWN_ROUTE,
+                    request.getMethod().name(), statusCode, System.nanoTime() - startNanos);
+        }
+    }
+
+    private void traceExchange(HttpRequest request, ClientHttpResponse response, RestTraceSampler.Decision decision, RestTraceContext context) {
+        if (decision == RestTraceSampler.Decision.DEFER) {
+            // request has been deferred until now, since only the outcome of the exchange tells if it is traced
+            traceRequest(request, context);
+        }
+        traceResponse(request, response, context);
+    }
+
+    private void traceRequest(HttpRequest request, RestTraceContext context) {
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
+        }
+    }
+
+    private void traceResponse(HttpRequest request, ClientHttpResponse response, RestTraceContext context) {
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, response, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
         }
     }
 
-    private void traceResponse(HttpRequest request, ClientHttpResponse response) {
-        if (this.enabled) {
-            StringBuilder traceMessage = new StringBuilder();
-            this.messageBuilder.build(traceMessage, request, response);
-            logger.info(traceMessage.toString());
+    private int extractStatusCode(ClientHttpResponse response) {
+        int result = -1;
+        try {
+            result = response.getStatusCode().value();
+        } catch (IOException ex) {
+            // we don't care !!!
         }
+        return result;
     }
 }
@@ -1,23 +1,43 @@
 package group.msg.at.cloud.common.observability.rest.trace;
 
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
 
 import java.io.IOException;
 
 /**
  * {@code Servlet Filter} which traces incoming REST requests and outgoing REST responses.
+ * <p>
+ * If a {@link RestLatencyRecorder} is set, the latency of every inbound exchange is recorded as well.
+ * </p>
+ * <p>
+ * Exchanges processed asynchronously are completed by an {@code AsyncListener} once the async cycle ended,
+ * so status, latency and response body reflect the actual response.
+ * </p>
  */
 public final class RestTraceContainerFilter extends OncePerRequestFilter {
 
-    private final Logger logger = LoggerFactory.getLogger(RestTraceConstants.REST_TRACE_LOGGER_NAME);
+    private RestTraceMessageBuilder messageBuilder = new DefaultRestTraceMessageBuilder();
 
-    private final RestTraceMessageBuilder messageBuilder = new DefaultRestTraceMessageBuilder();
+    private RestTraceMessageBuffers messageBuffers = RestTraceMessageBuffers.allocating();
+
+    private RestTraceWriter writer = new LoggingRestTraceWriter();
+
+    private RestTraceSampler sampler = RestTraceSampler.always();
+
+    private RestTraceBodyPolicy bodyPolicy = RestTraceBodyPolicy.disabled();
+
+    private RestLatencyRecorder latencyRecorder;
+
+    private RequestPathSelector pathSelector = RequestPathSelector.all();
 
     private boolean enabled;
 
@@ -29,27 +49,273 @@ public final class RestTraceContainerFilter extends OncePerRequestFilter {
         this.enabled = enabled;
     }
 
+    public RestTraceMessageBuilder getMessageBuilder() {
+        return messageBuilder;
+    }
+
+    public void setMessageBuilder(RestTraceMessageBuilder messageBuilder) {
+        this.messageBuilder = messageBuilder;
+    }
+
+    public RestTraceMessageBuffers getMessageBuffers() {
+        return messageBuffers;
+    }
+
+    public void setMessageBuffers(RestTraceMessageBuffers messageBuffers) {
+        this.messageBuffers = messageBuffers;
+    }
+
+    public RestTraceWriter getWriter() {
+        return writer;
+    }
+
+    public void setWriter(RestTraceWriter writer) {
+        this.writer = writer;
+    }
+
+    public RestTraceSampler getSampler() {
+        return sampler;
+    }
+
+    public void setSampler(RestTraceSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    public RestTraceBodyPolicy getBodyPolicy() {
+        return bodyPolicy;
+    }
+
+    public void setBodyPolicy(RestTraceBodyPolicy bodyPolicy) {
+        this.bodyPolicy = bodyPolicy;
+    }
+
+    public RestLatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * Sets the recorder receiving the latency of every inbound exchange, regardless of whether the exchange is traced.
+     */
+    public void setLatencyRecorder(RestLatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    public RequestPathSelector getPathSelector() {
+        return pathSelector;
+    }
+
+    /**
+     * Sets the selector of the requests this filter applies to, matching the request URI without the context path.
+     */
+    public void setPathSelector(RequestPathSelector pathSelector) {
+        this.pathSelector = pathSelector;
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
-        return !this.enabled || !this.logger.isInfoEnabled();
+        return (!isTracing() && this.latencyRecorder == null) || !this.pathSelector.selects(request.getRequestURI(), request.getContextPath().length());
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        traceRequest(request);
-        filterChain.doFilter(request, response);
-        traceResponse(request, response);
+        RestTraceSampler.Decision decision = isTracing() ? this.sampler.sample(routeOf(request)) : RestTraceSampler.Decision.SKIP;
+        if (decision == RestTraceSampler.Decision.SKIP) {
+            if (this.latencyRecorder == null) {
+                filterChain.doFilter(request, response);
+            } else {
+                doFilterMeasured(request, response, filterChain);
+            }
+            return;
+        }
+        RestTraceContext context = new RestTraceContext(System.nanoTime());
+        HttpServletRequest requestToUse = request;
+        HttpServletResponse responseToUse = response;
+        BodyCapturingResponseWrapper responseWrapper = null;
+        if (this.bodyPolicy.isEnabled()) {
+            RestTraceBodyCapture requestBody = this.bodyPolicy.newCapture(request.getContentType());
+            if (requestBody != null) {
+                context.setRequestBody(requestBody);
+                requestToUse = new BodyCapturingRequestWrapper(request, requestBody);
+            }
+            responseWrapper = new BodyCapturingResponseWrapper(response, this.bodyPolicy, context);
+            responseToUse = responseWrapper;
+        }
+        if (decision == RestTraceSampler.Decision.TRACE) {
+            traceRequest(request, context);
+        }
+        try {
+            filterChain.doFilter(requestToUse, responseToUse);
+        } catch (IOException | ServletException | RuntimeException | Error ex) {
+            completeExchange(request, response, decision, context, responseWrapper, true);
+            throw ex;
+        }
+        if (request.isAsyncStarted()) {
+            // response does not exist before the async cycle ends
+            request.getAsyncContext().addListener(new AsyncCompletionListener(request, response, decision, context, responseWrapper));
+        } else {
+            completeExchange(request, response, decision, context, responseWrapper, false);
+        }
     }
 
-    private void traceRequest(HttpServletRequest request) {
-        StringBuilder traceMessage = new StringBuilder();
-        this.messageBuilder.build(traceMessage, request);
-        logger.info(traceMessage.toString());
+    /**
+     * Async dispatches are not filtered, since the exchange is completed by the {@code AsyncListener} registered
+     * during the initial dispatch once the whole async cycle ended.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+    private boolean isTracing() {
+        return this.enabled && this.writer.isEnabled();
+    }
+
+    /**
+     * Returns the route of the request for head sampling, before the handler mapping matched the request.
+     */
+    private static String routeOf(HttpServletRequest request) {
+        Object bestMatchingPattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return bestMatchingPattern != null ? RestRoutes.routeOf(bestMatchingPattern, 0)
+                : RestRoutes.routeOfPath(request.getRequestURI());
+    }
+
+    private void doFilterMeasured(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long startNanos = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException | Error ex) {
+            recordLatency(request, response, System.nanoTime() - startNanos, true);
+            throw ex;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncCompletionListener(request, response, RestTraceSampler.Decision.SKIP, new RestTraceContext(startNanos), null));
+        } else {
+            recordLatency(request, response, System.nanoTime() - startNanos, false);
+        }
+    }
+
+    private void completeExchange(HttpServletRequest request, HttpServletResponse response, RestTraceSampler.Decision decision,
+                                  RestTraceContext context, BodyCapturingResponseWrapper responseWrapper, boolean failed) {
+        if (responseWrapper != null) {
+            responseWrapper.flushWriter();
+        }
+        context.complete(System.nanoTime());
+        recordLatency(request, response, context.getDurationNanos(), failed);
+        if (decision == RestTraceSampler.Decision.SKIP) {
+            return;
+        }
+        int statusCode = effectiveStatus(response, failed);
+        HttpServletResponse responseToTrace = statusCode != response.getStatus() ? new FailedResponse(response, statusCode) : response;
+        if (decision == RestTraceSampler.Decision.TRACE) {
+            traceResponse(request, responseToTrace, context);
+        } else if (this.sampler.isTailSampled(statusCode, context.getDurationNanos())) {
+            // request has been deferred until now, since only the outcome of the exchange tells if it is traced
+            traceRequest(request, context);
+            traceResponse(request, responseToTrace, context);
+        }
+    }
+
+    /**
+     * Returns the status of the response, or {@code 500}, if the exchange failed with an exception the container
+     * will turn into an error response.
+     */
+    private static int effectiveStatus(HttpServletResponse response, boolean failed) {
+        int statusCode = response.getStatus();
+        return failed && statusCode < 400 ? 500 : statusCode;
+    }
+
+    private void recordLatency(HttpServletRequest request, HttpServletResponse response, long durationNanos, boolean failed) {
+        if (this.latencyRecorder != null) {
+            int statusCode = effectiveStatus(response, failed);
+            this.latencyRecorder.record(RestRoutes.routeOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE), statusCode), request.getMethod(), statusCode, durationNanos);
+        }
+    }
+
+    private void traceRequest(HttpServletRequest request, RestTraceContext context) {
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
+        }
+    }
+
+    private void traceResponse(HttpServletRequest request, HttpServletResponse response, RestTraceContext context) {
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, response, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
+        }
     }
 
-    private void traceResponse(HttpServletRequest request, HttpServletResponse response) {
-        StringBuilder traceMessage = new StringBuilder();
-        this.messageBuilder.build(traceMessage, request, response);
-        logger.info(traceMessage.toString());
+    /**
+     * Response of an exchange which failed with an exception, reporting the status of the error response the container
+     * will send instead of the status set so far.
+     */
+    private static final class FailedResponse extends HttpServletResponseWrapper {
+
+        private final int statusCode;
+
+        FailedResponse(HttpServletResponse response, int statusCode) {
+            super(response);
+            this.statusCode = statusCode;
+        }
+
+        @Override
+        public int getStatus() {
+            return this.statusCode;
+        }
+    }
+
+    /**
+     * Completes an exchange whose processing continues asynchronously once its async cycle ended,
+     * i.e. after a {@code DeferredResult}, {@code Callable}, {@code StreamingResponseBody} or SSE emitter is done.
+     */
+    private final class AsyncCompletionListener implements AsyncListener {
+
+        private final HttpServletRequest request;
+
+        private final HttpServletResponse response;
+
+        private final RestTraceSampler.Decision decision;
+
+        private final RestTraceContext context;
+
+        private final BodyCapturingResponseWrapper responseWrapper;
+
+        private volatile boolean failed;
+
+        AsyncCompletionListener(HttpServletRequest request, HttpServletResponse response, RestTraceSampler.Decision decision,
+                                RestTraceContext context, BodyCapturingResponseWrapper responseWrapper) {
+            this.request = request;
+            this.response = response;
+            this.decision = decision;
+            this.context = context;
+            this.responseWrapper = responseWrapper;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            completeExchange(this.request, this.response, this.decision, this.context, this.responseWrapper, this.failed);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            this.failed = true;
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            this.failed = true;
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // listeners are dropped whenever the async cycle is restarted, so this listener registers itself again
+            event.getAsyncContext().addListener(this);
+        }
     }
 }
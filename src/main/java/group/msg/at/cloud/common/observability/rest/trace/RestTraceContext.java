@@ -0,0 +1,78 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holds the state of a single traced REST exchange which is not part of the request or response itself.
+ */
+public final class RestTraceContext {
+
+    private final long correlationId;
+
+    private final long startNanos;
+
+    private long durationNanos = -1;
+
+    private RestTraceBodyCapture requestBody;
+
+    private RestTraceBodyCapture responseBody;
+
+    public RestTraceContext(long startNanos) {
+        this(ThreadLocalRandom.current().nextLong(), startNanos);
+    }
+
+    public RestTraceContext(long correlationId, long startNanos) {
+        this.correlationId = correlationId;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Returns the random identifier which correlates the request and response trace messages of the exchange.
+     */
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when the exchange started.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Returns the duration of the exchange in nanoseconds or {@code -1}, if the exchange is not complete yet.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Marks the exchange as complete at the given value of {@link System#nanoTime()}.
+     */
+    public void complete(long endNanos) {
+        this.durationNanos = endNanos - this.startNanos;
+    }
+
+    /**
+     * Returns the captured request body or {@code null}, if the request body is not captured.
+     */
+    public RestTraceBodyCapture getRequestBody() {
+        return requestBody;
+    }
+
+    public void setRequestBody(RestTraceBodyCapture requestBody) {
+        this.requestBody = requestBody;
+    }
+
+    /**
+     * Returns the captured response body or {@code null}, if the response body is not captured.
+     */
+    public RestTraceBodyCapture getResponseBody() {
+        return responseBody;
+    }
+
+    public void setResponseBody(RestTraceBodyCapture responseBody) {
+        this.responseBody = responseBody;
+    }
+}
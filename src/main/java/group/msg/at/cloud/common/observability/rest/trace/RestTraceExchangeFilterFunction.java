@@ -1,70 +1,237 @@
 package group.msg.at.cloud.common.observability.rest.trace;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
-import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * {@code ExchangeFilterFunction} which log outbound requests and inbound responses.
+ * <p>
+ * If a {@link RestLatencyRecorder} is set, the latency of every outbound exchange is recorded as well
+ * using the URI template of the exchange as route.
+ * </p>
  */
 public class RestTraceExchangeFilterFunction implements ExchangeFilterFunction {
-    private final Logger logger = LoggerFactory.getLogger(RestTraceConstants.REST_TRACE_LOGGER_NAME);
 
-    private final RestTraceMessageBuilder messageBuilder = new DefaultRestTraceMessageBuilder();
+    /**
+     * Name of the request attribute {@code WebClient} stores the URI template of a request in.
+     */
+    private static final String URI_TEMPLATE_ATTRIBUTE = WebClient.class.getName() + ".uriTemplate";
 
-    private final boolean enabled;
+    private RestTraceMessageBuilder messageBuilder = new DefaultRestTraceMessageBuilder();
+
+    private RestTraceMessageBuffers messageBuffers = RestTraceMessageBuffers.allocating();
+
+    private RestTraceWriter writer = new LoggingRestTraceWriter();
+
+    private RestTraceSampler sampler = RestTraceSampler.always();
+
+    private RestTraceBodyPolicy bodyPolicy = RestTraceBodyPolicy.disabled();
+
+    private RestLatencyRecorder latencyRecorder;
+
+    private boolean enabled;
+
+    public RestTraceExchangeFilterFunction() {
+    }
 
     public RestTraceExchangeFilterFunction(boolean enabled) {
         this.enabled = enabled;
     }
 
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public RestTraceMessageBuilder getMessageBuilder() {
+        return messageBuilder;
+    }
+
+    public void setMessageBuilder(RestTraceMessageBuilder messageBuilder) {
+        this.messageBuilder = messageBuilder;
+    }
+
+    public RestTraceMessageBuffers getMessageBuffers() {
+        return messageBuffers;
+    }
+
+    public void setMessageBuffers(RestTraceMessageBuffers messageBuffers) {
+        this.messageBuffers = messageBuffers;
+    }
+
+    public RestTraceWriter getWriter() {
+        return writer;
+    }
+
+    public void setWriter(RestTraceWriter writer) {
+        this.writer = writer;
+    }
+
+    public RestTraceSampler getSampler() {
+        return sampler;
+    }
+
+    public void setSampler(RestTraceSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    public RestTraceBodyPolicy getBodyPolicy() {
+        return bodyPolicy;
+    }
+
+    public void setBodyPolicy(RestTraceBodyPolicy bodyPolicy) {
+        this.bodyPolicy = bodyPolicy;
+    }
+
+    public RestLatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * Sets the recorder receiving the latency of every outbound exchange, regardless of whether the exchange is traced.
+     */
+    public void setLatencyRecorder(RestLatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
     @Override
     public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
-        return shouldFilter(request) ? doFilter(request, next) : next.exchange(request);
+        if (isTracing()) {
+            return doFilter(request, next);
+        }
+        return this.latencyRecorder != null ? exchangeMeasured(request, next) : next.exchange(request);
     }
 
-    private boolean shouldFilter(ClientRequest request) {
-        return enabled && logger.isInfoEnabled();
+    private boolean isTracing() {
+        return enabled && writer.isEnabled();
     }
 
     private Mono<ClientResponse> doFilter(ClientRequest request, ExchangeFunction next) {
-        traceRequest(request);
-        Mono<ClientResponse> result = next.exchange(request);
-        result = traceResponse(request, result);
-        return result;
+        RestTraceSampler.Decision decision = this.sampler.sample(routeOf(request));
+        if (decision == RestTraceSampler.Decision.SKIP) {
+            return this.latencyRecorder != null ? exchangeMeasured(request, next) : next.exchange(request);
+        }
+        // exchange duration is measured from subscription, not from assembly of the exchange
+        return Mono.defer(() -> {
+            RestTraceContext context = new RestTraceContext(System.nanoTime());
+            ClientRequest requestToUse = captureRequestBody(request, context);
+            if (decision == RestTraceSampler.Decision.TRACE) {
+                traceRequest(request, context);
+            }
+            return next.exchange(requestToUse)
+                    .doOnError(ex -> recordLatency(request, RestLatencyRecorder.NO_RESPONSE, System.nanoTime() - context.getStartNanos()))
+                    .map(new ResponseTracer(request, decision, context));
+        });
     }
 
-    private void traceRequest(ClientRequest request) {
-        StringBuilder traceMessage = new StringBuilder();
-        this.messageBuilder.build(traceMessage, request);
-        logger.info(traceMessage.toString());
+    private Mono<ClientResponse> exchangeMeasured(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return next.exchange(request)
+                    .doOnSuccess(response -> recordLatency(request, response != null ? response.statusCode().value() : RestLatencyRecorder.NO_RESPONSE, System.nanoTime() - startNanos))
+                    .doOnError(ex -> recordLatency(request, RestLatencyRecorder.NO_RESPONSE, System.nanoTime() - startNanos));
+        });
     }
 
-    private Mono<ClientResponse> traceResponse(ClientRequest request, Mono<ClientResponse> response) {
-        return response.doOnSuccess(new SuccessResponseTracer(request, messageBuilder, logger));
+    /**
+     * Returns the URI template of the request or, if it wasn't built from a template, an approximation derived from its path.
+     */
+    private static String routeOf(ClientRequest request) {
+        Object uriTemplate = request.attributes().get(URI_TEMPLATE_ATTRIBUTE);
+        return uriTemplate instanceof String uriTemplateString ? uriTemplateString : RestRoutes.routeOfPath(request.url().getPath());
     }
 
-    private static final class SuccessResponseTracer implements Consumer<ClientResponse> {
-        final Logger logger;
+    private void recordLatency(ClientRequest request, int statusCode, long durationNanos) {
+        if (this.latencyRecorder != null) {
+            Object uriTemplate = request.attributes().get(URI_TEMPLATE_ATTRIBUTE);
+            String route = uriTemplate instanceof String uriTemplateString ? uriTemplateString : RestLatencyRecorder.UNKNOWN_ROUTE;
+            this.latencyRecorder.record(route, request.method().name(), statusCode, durationNanos);
+        }
+    }
+
+    private ClientRequest captureRequestBody(ClientRequest request, RestTraceContext context) {
+        if (!this.bodyPolicy.isEnabled()) {
+            return request;
+        }
+        RestTraceBodyCapture requestBody = this.bodyPolicy.newCapture(request.headers().getFirst(HttpHeaders.CONTENT_TYPE));
+        if (requestBody == null) {
+            return request;
+        }
+        context.setRequestBody(requestBody);
+        BodyInserter<?, ? super ClientHttpRequest> inserter = request.body();
+        return ClientRequest.from(request)
+                .body((outputMessage, insertContext) -> inserter.insert(new BodyCapturingClientHttpRequest(outputMessage, requestBody), insertContext))
+                .build();
+    }
+
+    private void traceRequest(ClientRequest request, RestTraceContext context) {
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
+        }
+    }
+
+    private void traceResponse(ClientRequest request, ClientResponse response, RestTraceContext context) {
+        // buffer is borrowed from the thread emitting the response signal and returned before this method exits
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, response, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
+        }
+    }
+
+    private final class ResponseTracer implements Function<ClientResponse, ClientResponse> {
         final ClientRequest request;
-        final RestTraceMessageBuilder messageBuilder;
-        SuccessResponseTracer(ClientRequest request, RestTraceMessageBuilder messageBuilder, Logger logger) {
+        final RestTraceSampler.Decision decision;
+        final RestTraceContext context;
+        ResponseTracer(ClientRequest request, RestTraceSampler.Decision decision, RestTraceContext context) {
             this.request = request;
-            this.messageBuilder = messageBuilder;
-            this.logger = logger;
+            this.decision = decision;
+            this.context = context;
         }
 
         @Override
-        public void accept(ClientResponse response) {
-            StringBuilder traceMessage = new StringBuilder();
-            this.messageBuilder.build(traceMessage, request, response);
-            logger.info(traceMessage.toString());
+        public ClientResponse apply(ClientResponse response) {
+            this.context.complete(System.nanoTime());
+            recordLatency(this.request, response.statusCode().value(), this.context.getDurationNanos());
+            if (this.decision == RestTraceSampler.Decision.DEFER && !sampler.isTailSampled(response.statusCode().value(), this.context.getDurationNanos())) {
+                return response;
+            }
+            RestTraceBodyCapture responseBody = bodyPolicy.newCapture(response.headers().asHttpHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+            if (responseBody == null) {
+                traceExchange(response);
+                return response;
+            }
+            // response body is consumed by the caller, so the trace is completed once the body stream terminates
+            this.context.setResponseBody(responseBody);
+            return response.mutate()
+                    .body(body -> body.doOnNext(responseBody::capture).doFinally(signal -> traceExchange(response)))
+                    .build();
+        }
+
+        private void traceExchange(ClientResponse response) {
+            if (this.decision == RestTraceSampler.Decision.DEFER) {
+                // request has been deferred until now, since only the outcome of the exchange tells if it is traced
+                traceRequest(this.request, this.context);
+            }
+            traceResponse(this.request, response, this.context);
         }
     }
 }
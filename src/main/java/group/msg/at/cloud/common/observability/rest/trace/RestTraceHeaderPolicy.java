@@ -0,0 +1,180 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides which headers are rendered into REST trace messages and how; shared by all REST trace message builders.
+ * <p>
+ * The configured header names are compiled once into an open-addressing hash table with case-insensitive hashing,
+ * so looking up the action of a header neither allocates nor depends on the casing of the header name.
+ * A header name ending with {@code *} matches all header names starting with the given prefix; exact names always
+ * take precedence over prefixes, longer prefixes take precedence over shorter ones.
+ * </p>
+ */
+public final class RestTraceHeaderPolicy {
+
+    /**
+     * What to do with a header when rendering a trace message.
+     */
+    public enum Action {
+        /**
+         * Header and its values are rendered.
+         */
+        KEEP,
+        /**
+         * Header is rendered, but each value is replaced with a redaction marker carrying the length of the value.
+         */
+        REDACT,
+        /**
+         * Header is not rendered at all.
+         */
+        DROP
+    }
+
+    public static final List<String> DEFAULT_REDACTED_HEADERS = List.of(
+            "Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie", "X-API-Key", "Api-Key");
+
+    private static final RestTraceHeaderPolicy DEFAULTS = new RestTraceHeaderPolicy(DEFAULT_REDACTED_HEADERS, List.of(), List.of(), 0);
+
+    private final String[] names;
+
+    private final Action[] actions;
+
+    private final int mask;
+
+    private final String[] prefixes;
+
+    private final Action[] prefixActions;
+
+    private final Action defaultAction;
+
+    private final int maxValueLength;
+
+    /**
+     * Creates a new header policy.
+     *
+     * @param redactedHeaders names of headers whose values are redacted
+     * @param droppedHeaders  names of headers which are never rendered
+     * @param keepOnlyHeaders names of the only headers which are rendered; an empty collection renders all headers
+     * @param maxValueLength  maximum number of characters rendered per header value; {@code 0} means unlimited
+     */
+    public RestTraceHeaderPolicy(Collection<String> redactedHeaders, Collection<String> droppedHeaders, Collection<String> keepOnlyHeaders, int maxValueLength) {
+        if (maxValueLength < 0) {
+            throw new IllegalArgumentException("maxValueLength must not be negative");
+        }
+        this.maxValueLength = maxValueLength;
+        this.defaultAction = keepOnlyHeaders.isEmpty() ? Action.KEEP : Action.DROP;
+        // later puts win: redaction applies to kept headers only, dropping beats everything
+        Map<String, Action> compiled = new LinkedHashMap<>();
+        if (keepOnlyHeaders.isEmpty()) {
+            redactedHeaders.forEach(name -> compiled.put(normalize(name), Action.REDACT));
+        } else {
+            keepOnlyHeaders.forEach(name -> compiled.put(normalize(name), Action.KEEP));
+            List<String> keptPrefixes = compiled.keySet().stream().filter(name -> name.endsWith("*")).map(name -> name.substring(0, name.length() - 1)).toList();
+            redactedHeaders.stream().map(RestTraceHeaderPolicy::normalize)
+                    .filter(name -> compiled.containsKey(name) || keptPrefixes.stream().anyMatch(name::startsWith))
+                    .forEach(name -> compiled.put(name, Action.REDACT));
+        }
+        droppedHeaders.forEach(name -> compiled.put(normalize(name), Action.DROP));
+        List<String> exactNames = new ArrayList<>();
+        List<String> prefixNames = new ArrayList<>();
+        for (String current : compiled.keySet()) {
+            if (current.endsWith("*")) {
+                prefixNames.add(current);
+            } else {
+                exactNames.add(current);
+            }
+        }
+        // longest prefix wins, since it is the most specific one
+        prefixNames.sort(Comparator.comparingInt(String::length).reversed());
+        int capacity = Integer.highestOneBit(Math.max(8, exactNames.size() * 4) - 1) << 1;
+        this.names = new String[capacity];
+        this.actions = new Action[capacity];
+        this.mask = capacity - 1;
+        for (String current : exactNames) {
+            int index = hash(current) & this.mask;
+            while (this.names[index] != null) {
+                index = (index + 1) & this.mask;
+            }
+            this.names[index] = current;
+            this.actions[index] = compiled.get(current);
+        }
+        this.prefixes = new String[prefixNames.size()];
+        this.prefixActions = new Action[prefixNames.size()];
+        for (int i = 0; i < prefixNames.size(); i++) {
+            String current = prefixNames.get(i);
+            this.prefixes[i] = current.substring(0, current.length() - 1);
+            this.prefixActions[i] = compiled.get(current);
+        }
+    }
+
+    /**
+     * Returns a policy which redacts the {@link #DEFAULT_REDACTED_HEADERS default confidential headers}
+     * and renders all other headers.
+     */
+    public static RestTraceHeaderPolicy defaults() {
+        return DEFAULTS;
+    }
+
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    /**
+     * Returns the action to apply to the header with the given name, regardless of its casing.
+     */
+    public Action actionOf(String headerName) {
+        int index = hash(headerName) & this.mask;
+        String current;
+        while ((current = this.names[index]) != null) {
+            if (current.equalsIgnoreCase(headerName)) {
+                return this.actions[index];
+            }
+            index = (index + 1) & this.mask;
+        }
+        for (int i = 0; i < this.prefixes.length; i++) {
+            if (headerName.regionMatches(true, 0, this.prefixes[i], 0, this.prefixes[i].length())) {
+                return this.prefixActions[i];
+            }
+        }
+        return this.defaultAction;
+    }
+
+    /**
+     * Returns the number of leading characters of the given header value which are rendered.
+     */
+    public int renderedLength(String headerValue) {
+        if (this.maxValueLength == 0 || headerValue.length() <= this.maxValueLength) {
+            return headerValue.length();
+        }
+        // never cut a surrogate pair in half
+        return Character.isHighSurrogate(headerValue.charAt(this.maxValueLength - 1)) ? this.maxValueLength - 1 : this.maxValueLength;
+    }
+
+    private static String normalize(String headerName) {
+        return headerName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Case-insensitive hash which is consistent with {@link String#equalsIgnoreCase(String)} and doesn't allocate.
+     */
+    private static int hash(String headerName) {
+        int result = 0;
+        for (int i = 0; i < headerName.length(); i++) {
+            char c = headerName.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (c >= 0x80) {
+                c = Character.toLowerCase(Character.toUpperCase(c));
+            }
+            result = 31 * result + c;
+        }
+        return result ^ (result >>> 16);
+    }
+}
@@ -0,0 +1,82 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ReusableMessage;
+import org.apache.logging.log4j.message.SimpleMessage;
+
+/**
+ * Reusable Log4j2 {@code Message} wrapping a trace message which may be held by a recycled buffer.
+ * <p>
+ * Log4j2 copies the text of reusable messages into its own (reusable) buffers by {@link #formatTo(StringBuilder)}
+ * and takes a {@link #memento()} whenever it has to retain the message, so the wrapped buffer is never retained
+ * beyond the logging call and no {@code String} is materialized on the garbage-free path.
+ * </p>
+ */
+final class RestTraceLogMessage implements ReusableMessage {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    private transient CharSequence text;
+
+    boolean isInUse() {
+        return this.text != null;
+    }
+
+    void set(CharSequence text) {
+        this.text = text;
+    }
+
+    void clear() {
+        this.text = null;
+    }
+
+    @Override
+    public void formatTo(StringBuilder buffer) {
+        buffer.append(this.text);
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        return String.valueOf(this.text);
+    }
+
+    /**
+     * Returns the text only if it is a {@code String} already, since Log4j2 retrieves the format of each event.
+     */
+    @Override
+    public String getFormat() {
+        return this.text instanceof String ? (String) this.text : null;
+    }
+
+    @Override
+    public Object[] getParameters() {
+        return NO_PARAMETERS;
+    }
+
+    @Override
+    public Throwable getThrowable() {
+        return null;
+    }
+
+    @Override
+    public Object[] swapParameters(Object[] emptyReplacement) {
+        return emptyReplacement;
+    }
+
+    @Override
+    public short getParameterCount() {
+        return 0;
+    }
+
+    @Override
+    public Message memento() {
+        return new SimpleMessage(String.valueOf(this.text));
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.text);
+    }
+}
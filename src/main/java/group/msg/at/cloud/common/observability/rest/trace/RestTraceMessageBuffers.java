@@ -0,0 +1,122 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+/**
+ * Provides the {@code StringBuilder}s REST trace messages are built into.
+ * <p>
+ * In recycling mode each thread owns a single buffer which is reused for every trace message built on this thread,
+ * so building a trace message does not produce any garbage once the buffer has grown to its working size.
+ * Buffers are only borrowed for the synchronous build-and-log sequence of a single trace message,
+ * which makes this safe on platform threads as well as on Reactor event loops.
+ * Buffers which grew beyond the maximum retained capacity are dropped on release to keep per-thread memory bounded.
+ * </p>
+ * <p>
+ * In allocating mode a new buffer with the configured initial capacity is created for each trace message.
+ * </p>
+ */
+public final class RestTraceMessageBuffers {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    public static final int DEFAULT_MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<Slot> SLOTS = new ThreadLocal<>();
+
+    private final boolean recycled;
+
+    private final int initialCapacity;
+
+    private final int maxRetainedCapacity;
+
+    private RestTraceMessageBuffers(boolean recycled, int initialCapacity, int maxRetainedCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("initialCapacity must be greater than zero");
+        }
+        if (maxRetainedCapacity < initialCapacity) {
+            throw new IllegalArgumentException("maxRetainedCapacity must not be less than initialCapacity");
+        }
+        this.recycled = recycled;
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    /**
+     * Returns buffers which are allocated for each trace message using the default initial capacity.
+     */
+    public static RestTraceMessageBuffers allocating() {
+        return allocating(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns buffers which are allocated for each trace message using the given initial capacity.
+     */
+    public static RestTraceMessageBuffers allocating(int initialCapacity) {
+        return new RestTraceMessageBuffers(false, initialCapacity, initialCapacity);
+    }
+
+    /**
+     * Returns buffers which are recycled per thread.
+     *
+     * @param initialCapacity     initial capacity of a newly created buffer
+     * @param maxRetainedCapacity maximum capacity of a buffer which is kept for reuse
+     */
+    public static RestTraceMessageBuffers recycling(int initialCapacity, int maxRetainedCapacity) {
+        return new RestTraceMessageBuffers(true, initialCapacity, maxRetainedCapacity);
+    }
+
+    public boolean isRecycled() {
+        return recycled;
+    }
+
+    public int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    public int getMaxRetainedCapacity() {
+        return maxRetainedCapacity;
+    }
+
+    /**
+     * Returns an empty buffer which must be passed to {@link #release(StringBuilder)} after use.
+     */
+    public StringBuilder acquire() {
+        if (!this.recycled) {
+            return new StringBuilder(this.initialCapacity);
+        }
+        Slot slot = SLOTS.get();
+        if (slot == null) {
+            slot = new Slot();
+            SLOTS.set(slot);
+        }
+        if (slot.inUse) {
+            // re-entrant trace on the same thread: fall back to a fresh buffer
+            return new StringBuilder(this.initialCapacity);
+        }
+        if (slot.buffer == null) {
+            slot.buffer = new StringBuilder(this.initialCapacity);
+        }
+        slot.inUse = true;
+        slot.buffer.setLength(0);
+        return slot.buffer;
+    }
+
+    /**
+     * Returns the given buffer obtained from {@link #acquire()}.
+     */
+    public void release(StringBuilder buffer) {
+        if (!this.recycled) {
+            return;
+        }
+        Slot slot = SLOTS.get();
+        if (slot != null && slot.buffer == buffer) {
+            if (buffer.capacity() > this.maxRetainedCapacity) {
+                slot.buffer = null;
+            }
+            slot.inUse = false;
+        }
+    }
+
+    private static final class Slot {
+        StringBuilder buffer;
+        boolean inUse;
+    }
+}
@@ -5,11 +5,16 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 
 /**
  * {@code Builder} for REST request and response trace messages.
+ * <p>
+ * Request bodies are only available once the exchange is complete, so captured bodies are part of response trace messages.
+ * </p>
  */
 public interface RestTraceMessageBuilder {
 
@@ -18,24 +23,36 @@ public interface RestTraceMessageBuilder {
      *
      * @param traceMessage string builder receiving the generated message
      * @param request      outgoing request
+     * @param context      state of the traced exchange
      */
-    void build(@NotNull StringBuilder traceMessage, @NotNull HttpRequest request);
+    void build(@NotNull StringBuilder traceMessage, @NotNull HttpRequest request, @NotNull RestTraceContext context);
 
     /**
      * Builds a trace message for the given outgoing request.
      *
      * @param traceMessage string builder receiving the generated message
      * @param request      outgoing request
+     * @param context      state of the traced exchange
      */
-    void build(@NotNull StringBuilder traceMessage, @NotNull ClientRequest request);
+    void build(@NotNull StringBuilder traceMessage, @NotNull ClientRequest request, @NotNull RestTraceContext context);
 
     /**
      * Builds a trace message for the given incoming request.
      *
      * @param traceMessage string builder receiving the generated message
      * @param request      incoming request
+     * @param context      state of the traced exchange
      */
-    void build(StringBuilder traceMessage, HttpServletRequest request);
+    void build(StringBuilder traceMessage, HttpServletRequest request, RestTraceContext context);
+
+    /**
+     * Builds a trace message for the given incoming request of a reactive web application.
+     *
+     * @param traceMessage string builder receiving the generated message
+     * @param request      incoming request
+     * @param context      state of the traced exchange
+     */
+    void build(StringBuilder traceMessage, ServerHttpRequest request, RestTraceContext context);
 
     /**
      * Builds a trace message for the given incoming response.
@@ -43,8 +60,9 @@ public interface RestTraceMessageBuilder {
      * @param traceMessage string builder receiving the generated message
      * @param request      outgoing request
      * @param response     incoming response
+     * @param context      state of the traced exchange
      */
-    void build(StringBuilder traceMessage, HttpRequest request, ClientHttpResponse response);
+    void build(StringBuilder traceMessage, HttpRequest request, ClientHttpResponse response, RestTraceContext context);
 
     /**
      * Builds a trace message for the given incoming response.
@@ -52,8 +70,9 @@ public interface RestTraceMessageBuilder {
      * @param traceMessage string builder receiving the generated message
      * @param request      outgoing request
      * @param response     incoming response
+     * @param context      state of the traced exchange
      */
-    void build(StringBuilder traceMessage, ClientRequest request, ClientResponse response);
+    void build(StringBuilder traceMessage, ClientRequest request, ClientResponse response, RestTraceContext context);
 
     /**
      * Builds a trace message for the given outgoing response.
@@ -61,6 +80,17 @@ public interface RestTraceMessageBuilder {
      * @param traceMessage string builder receiving the generated message
      * @param request      incoming request
      * @param response     outgoing response
+     * @param context      state of the traced exchange
+     */
+    void build(StringBuilder traceMessage, HttpServletRequest request, HttpServletResponse response, RestTraceContext context);
+
+    /**
+     * Builds a trace message for the given outgoing response of a reactive web application.
+     *
+     * @param traceMessage string builder receiving the generated message
+     * @param request      incoming request
+     * @param response     outgoing response
+     * @param context      state of the traced exchange
      */
-    void build(StringBuilder traceMessage, HttpServletRequest request, HttpServletResponse response);
+    void build(StringBuilder traceMessage, ServerHttpRequest request, ServerHttpResponse response, RestTraceContext context);
 }
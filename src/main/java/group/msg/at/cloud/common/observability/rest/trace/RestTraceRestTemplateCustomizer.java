@@ -23,5 +23,10 @@ public final class RestTraceRestTemplateCustomizer implements RestTemplateCustom
         List<ClientHttpRequestInterceptor> customizedInterceptors = new ArrayList<>(restTemplate.getInterceptors());
         customizedInterceptors.add(interceptor);
         restTemplate.setInterceptors(customizedInterceptors);
+        if (!(restTemplate.getUriTemplateHandler() instanceof RestTraceUriTemplateHandler)) {
+            // URI templates are only known while they are expanded, so they are captured to serve as routes
+            // of both sampling and latency metrics
+            restTemplate.setUriTemplateHandler(new RestTraceUriTemplateHandler(restTemplate.getUriTemplateHandler()));
+        }
     }
 }
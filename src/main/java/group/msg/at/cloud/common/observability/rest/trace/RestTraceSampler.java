@@ -0,0 +1,221 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which REST exchanges are traced; shared by all REST tracing components.
+ * <p>
+ * Head sampling happens when an exchange starts: an exchange is sampled with the configured probability
+ * and only if the token bucket of its route still has a token left. Token buckets which are full again carry no
+ * state, so they are evicted once the maximum number of buckets is reached.
+ * Exchanges which are not head-sampled are deferred if any tail rule is active: their request is not rendered
+ * until the exchange is complete, and both request and response are traced only if the response has a 5xx status
+ * or the exchange took longer than the configured latency threshold.
+ * </p>
+ */
+public final class RestTraceSampler {
+
+    /**
+     * Head sampling decision for a single REST exchange.
+     */
+    public enum Decision {
+        /**
+         * Request and response are traced.
+         */
+        TRACE,
+        /**
+         * Request and response are traced only if the tail rules apply once the exchange is complete.
+         */
+        DEFER,
+        /**
+         * Neither request nor response are traced.
+         */
+        SKIP
+    }
+
+    /**
+     * Maximum number of routes with a dedicated token bucket; all other routes share a single bucket.
+     */
+    static final int MAX_ROUTE_BUCKETS = 1024;
+
+    /**
+     * Minimum interval between two evictions of idle token buckets.
+     */
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double probability;
+
+    private final double rateLimitPerRoute;
+
+    private final boolean tailOnServerError;
+
+    private final long tailLatencyThresholdNanos;
+
+    private final Map<String, TokenBucket> routeBuckets = new ConcurrentHashMap<>();
+
+    private final TokenBucket overflowBucket;
+
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a new sampler.
+     *
+     * @param probability               probability in the range [0, 1] an exchange is head-sampled with
+     * @param rateLimitPerRoute         maximum number of head-sampled exchanges per route and second; {@code 0} means unlimited
+     * @param tailOnServerError         trace deferred exchanges whose response has a 5xx status
+     * @param tailLatencyThresholdNanos trace deferred exchanges which took longer than this number of nanoseconds; {@code 0} disables this rule
+     */
+    public RestTraceSampler(double probability, double rateLimitPerRoute, boolean tailOnServerError, long tailLatencyThresholdNanos) {
+        if (probability < 0.0 || probability > 1.0) {
+            throw new IllegalArgumentException("probability must be in the range [0, 1]");
+        }
+        if (rateLimitPerRoute < 0.0) {
+            throw new IllegalArgumentException("rateLimitPerRoute must not be negative");
+        }
+        this.probability = probability;
+        this.rateLimitPerRoute = rateLimitPerRoute;
+        this.tailOnServerError = tailOnServerError;
+        this.tailLatencyThresholdNanos = Math.max(0, tailLatencyThresholdNanos);
+        this.overflowBucket = rateLimitPerRoute > 0.0 ? new TokenBucket(rateLimitPerRoute) : null;
+    }
+
+    /**
+     * Returns a sampler which traces every exchange.
+     */
+    public static RestTraceSampler always() {
+        return new RestTraceSampler(1.0, 0.0, false, 0);
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    public double getRateLimitPerRoute() {
+        return rateLimitPerRoute;
+    }
+
+    public boolean isTailOnServerError() {
+        return tailOnServerError;
+    }
+
+    public long getTailLatencyThresholdNanos() {
+        return tailLatencyThresholdNanos;
+    }
+
+    /**
+     * Returns {@code true}, if any tail rule is active.
+     */
+    public boolean isTailSamplingEnabled() {
+        return this.tailOnServerError || this.tailLatencyThresholdNanos > 0;
+    }
+
+    /**
+     * Makes the head sampling decision for a new exchange on the given route.
+     *
+     * @param route route template of the exchange, e.g. {@code /api/v1/orders/{id}}, or a path whose
+     *              identifier segments are collapsed by {@link RestRoutes#routeOfPath(String)}
+     */
+    public Decision sample(String route) {
+        if (isHeadSampled(route)) {
+            return Decision.TRACE;
+        }
+        return isTailSamplingEnabled() ? Decision.DEFER : Decision.SKIP;
+    }
+
+    /**
+     * Returns {@code true}, if a deferred exchange with the given outcome must be traced.
+     *
+     * @param statusCode    HTTP status code of the response
+     * @param durationNanos duration of the exchange in nanoseconds
+     */
+    public boolean isTailSampled(int statusCode, long durationNanos) {
+        return (this.tailOnServerError && statusCode >= 500 && statusCode <= 599)
+                || (this.tailLatencyThresholdNanos > 0 && durationNanos > this.tailLatencyThresholdNanos);
+    }
+
+    private boolean isHeadSampled(String route) {
+        if (this.probability < 1.0 && (this.probability == 0.0 || ThreadLocalRandom.current().nextDouble() >= this.probability)) {
+            return false;
+        }
+        if (this.overflowBucket == null) {
+            return true;
+        }
+        long nowNanos = System.nanoTime();
+        return bucketOf(route, nowNanos).tryAcquire(nowNanos);
+    }
+
+    private TokenBucket bucketOf(String route, long nowNanos) {
+        if (route == null) {
+            return this.overflowBucket;
+        }
+        TokenBucket result = this.routeBuckets.get(route);
+        if (result == null) {
+            if (this.routeBuckets.size() >= MAX_ROUTE_BUCKETS) {
+                evictIdleBuckets(nowNanos);
+                if (this.routeBuckets.size() >= MAX_ROUTE_BUCKETS) {
+                    return this.overflowBucket;
+                }
+            }
+            result = this.routeBuckets.computeIfAbsent(route, k -> new TokenBucket(this.rateLimitPerRoute));
+        }
+        return result;
+    }
+
+    /**
+     * Removes all token buckets which are full again, at most once per eviction interval.
+     */
+    private void evictIdleBuckets(long nowNanos) {
+        long lastEviction = this.lastEvictionNanos.get();
+        if (nowNanos - lastEviction >= EVICTION_INTERVAL_NANOS && this.lastEvictionNanos.compareAndSet(lastEviction, nowNanos)) {
+            this.routeBuckets.values().removeIf(bucket -> bucket.isIdle(nowNanos));
+        }
+    }
+
+    int getRouteBucketCount() {
+        return this.routeBuckets.size();
+    }
+
+    /**
+     * Lock-free token bucket implemented as generic cell rate algorithm: a single atomic holds the theoretical
+     * arrival time of the next token, allowing a burst of up to one second worth of tokens.
+     */
+    static final class TokenBucket {
+
+        private final long emissionIntervalNanos;
+
+        private final long burstToleranceNanos;
+
+        private final AtomicLong theoreticalArrivalTime = new AtomicLong(Long.MIN_VALUE);
+
+        TokenBucket(double tokensPerSecond) {
+            this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+            this.burstToleranceNanos = Math.max(this.emissionIntervalNanos, TimeUnit.SECONDS.toNanos(1));
+        }
+
+        /**
+         * Returns {@code true}, if the bucket is full again, i.e. in the same state as a new bucket.
+         */
+        boolean isIdle(long nowNanos) {
+            long current = this.theoreticalArrivalTime.get();
+            return current == Long.MIN_VALUE || current - nowNanos <= 0;
+        }
+
+        boolean tryAcquire(long nowNanos) {
+            while (true) {
+                long current = this.theoreticalArrivalTime.get();
+                long base = current == Long.MIN_VALUE || current - nowNanos < 0 ? nowNanos : current;
+                long next = base + this.emissionIntervalNanos;
+                if (next - nowNanos > this.burstToleranceNanos) {
+                    return false;
+                }
+                if (this.theoreticalArrivalTime.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.springframework.web.util.UriTemplateHandler;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * {@code UriTemplateHandler} decorator which remembers the URI template a {@code RestTemplate} expanded on the current thread,
+ * so the {@link RestTraceClientInterceptor} can use the template as route of the following exchange.
+ * <p>
+ * The expanded URI is remembered along with the template: an exchange only gets the template, if its URI is the expanded one,
+ * so a template left over by an expansion without exchange never becomes the route of an exchange with a URI passed directly.
+ * </p>
+ */
+final class RestTraceUriTemplateHandler implements UriTemplateHandler {
+
+    private static final ThreadLocal<Expansion> CURRENT_EXPANSION = ThreadLocal.withInitial(Expansion::new);
+
+    private final UriTemplateHandler delegate;
+
+    RestTraceUriTemplateHandler(UriTemplateHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the URI template last expanded on the current thread, if it has been expanded to the given URI,
+     * and forgets it in any case.
+     *
+     * @param uri URI of the exchange
+     * @return URI template or {@code null}, if no URI template has been expanded to the given URI
+     */
+    static String takeCurrentTemplate(URI uri) {
+        Expansion expansion = CURRENT_EXPANSION.get();
+        String result = expansion.template != null && (expansion.uri == uri || expansion.uri.equals(uri)) ? expansion.template : null;
+        expansion.template = null;
+        expansion.uri = null;
+        return result;
+    }
+
+    @Override
+    public URI expand(String uriTemplate, Map<String, ?> uriVariables) {
+        return remember(uriTemplate, this.delegate.expand(uriTemplate, uriVariables));
+    }
+
+    @Override
+    public URI expand(String uriTemplate, Object... uriVariables) {
+        return remember(uriTemplate, this.delegate.expand(uriTemplate, uriVariables));
+    }
+
+    private static URI remember(String uriTemplate, URI uri) {
+        Expansion expansion = CURRENT_EXPANSION.get();
+        expansion.template = uriTemplate;
+        expansion.uri = uri;
+        return uri;
+    }
+
+    /**
+     * Last expansion of a URI template on a thread; reused, so remembering an expansion doesn't allocate.
+     */
+    private static final class Expansion {
+
+        private String template;
+
+        private URI uri;
+    }
+}
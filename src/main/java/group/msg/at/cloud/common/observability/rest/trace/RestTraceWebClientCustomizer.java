@@ -12,18 +12,30 @@ import org.springframework.web.reactive.function.client.WebClient;
  */
 public class RestTraceWebClientCustomizer implements WebClientCustomizer {
 
-    private boolean enabled;
+    private final RestTraceExchangeFilterFunction filterFunction;
+
+    public RestTraceWebClientCustomizer() {
+        this(new RestTraceExchangeFilterFunction());
+    }
+
+    public RestTraceWebClientCustomizer(RestTraceExchangeFilterFunction filterFunction) {
+        this.filterFunction = filterFunction;
+    }
 
     @Override
     public void customize(WebClient.Builder webClientBuilder) {
-        webClientBuilder.filter(new RestTraceExchangeFilterFunction(enabled));
+        webClientBuilder.filter(this.filterFunction);
+    }
+
+    public RestTraceExchangeFilterFunction getFilterFunction() {
+        return filterFunction;
     }
 
     public boolean isEnabled() {
-        return enabled;
+        return this.filterFunction.isEnabled();
     }
 
     public void setEnabled(boolean enabled) {
-        this.enabled = enabled;
+        this.filterFunction.setEnabled(enabled);
     }
 }
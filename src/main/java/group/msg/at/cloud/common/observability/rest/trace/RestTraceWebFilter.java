@@ -0,0 +1,224 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import group.msg.at.cloud.common.observability.web.RequestPathSelector;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * {@code WebFilter} which traces incoming REST requests and outgoing REST responses of reactive web applications.
+ * <p>
+ * Reactive counterpart of {@link RestTraceContainerFilter}. If a {@link RestLatencyRecorder} is set,
+ * the latency of every inbound exchange is recorded as well.
+ * </p>
+ */
+public final class RestTraceWebFilter implements WebFilter, Ordered {
+
+    private RestTraceMessageBuilder messageBuilder = new DefaultRestTraceMessageBuilder();
+
+    private RestTraceMessageBuffers messageBuffers = RestTraceMessageBuffers.allocating();
+
+    private RestTraceWriter writer = new LoggingRestTraceWriter();
+
+    private RestTraceSampler sampler = RestTraceSampler.always();
+
+    private RestTraceBodyPolicy bodyPolicy = RestTraceBodyPolicy.disabled();
+
+    private RestLatencyRecorder latencyRecorder;
+
+    private RequestPathSelector pathSelector = RequestPathSelector.all();
+
+    private int order = Ordered.LOWEST_PRECEDENCE;
+
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public RestTraceMessageBuilder getMessageBuilder() {
+        return messageBuilder;
+    }
+
+    public void setMessageBuilder(RestTraceMessageBuilder messageBuilder) {
+        this.messageBuilder = messageBuilder;
+    }
+
+    public RestTraceMessageBuffers getMessageBuffers() {
+        return messageBuffers;
+    }
+
+    public void setMessageBuffers(RestTraceMessageBuffers messageBuffers) {
+        this.messageBuffers = messageBuffers;
+    }
+
+    public RestTraceWriter getWriter() {
+        return writer;
+    }
+
+    public void setWriter(RestTraceWriter writer) {
+        this.writer = writer;
+    }
+
+    public RestTraceSampler getSampler() {
+        return sampler;
+    }
+
+    public void setSampler(RestTraceSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    public RestTraceBodyPolicy getBodyPolicy() {
+        return bodyPolicy;
+    }
+
+    public void setBodyPolicy(RestTraceBodyPolicy bodyPolicy) {
+        this.bodyPolicy = bodyPolicy;
+    }
+
+    public RestLatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * Sets the recorder receiving the latency of every inbound exchange, regardless of whether the exchange is traced.
+     */
+    public void setLatencyRecorder(RestLatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    public RequestPathSelector getPathSelector() {
+        return pathSelector;
+    }
+
+    /**
+     * Sets the selector of the requests this filter applies to, matching the path within the application.
+     */
+    public void setPathSelector(RequestPathSelector pathSelector) {
+        this.pathSelector = pathSelector;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if ((!isTracing() && this.latencyRecorder == null) || !matches(exchange.getRequest())) {
+            return chain.filter(exchange);
+        }
+        RestTraceSampler.Decision decision = isTracing() ? this.sampler.sample(RestRoutes.routeOfPath(exchange.getRequest().getPath().pathWithinApplication().value())) : RestTraceSampler.Decision.SKIP;
+        if (decision == RestTraceSampler.Decision.SKIP) {
+            return this.latencyRecorder != null ? filterMeasured(exchange, chain) : chain.filter(exchange);
+        }
+        // exchange duration is measured from subscription, not from assembly of the filter chain
+        return Mono.defer(() -> {
+            RestTraceContext context = new RestTraceContext(System.nanoTime());
+            ServerWebExchange exchangeToUse = captureBodies(exchange, context);
+            if (decision == RestTraceSampler.Decision.TRACE) {
+                traceRequest(exchange.getRequest(), context);
+            }
+            return chain.filter(exchangeToUse)
+                    .doFinally(signal -> completeExchange(exchange, decision, context, signal != SignalType.ON_COMPLETE));
+        });
+    }
+
+    private boolean isTracing() {
+        return this.enabled && this.writer.isEnabled();
+    }
+
+    private boolean matches(ServerHttpRequest request) {
+        return this.pathSelector.selects(request.getPath().pathWithinApplication().value());
+    }
+
+    private Mono<Void> filterMeasured(ServerWebExchange exchange, WebFilterChain chain) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return chain.filter(exchange)
+                    .doFinally(signal -> recordLatency(exchange, System.nanoTime() - startNanos, signal != SignalType.ON_COMPLETE));
+        });
+    }
+
+    private ServerWebExchange captureBodies(ServerWebExchange exchange, RestTraceContext context) {
+        if (!this.bodyPolicy.isEnabled()) {
+            return exchange;
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        RestTraceBodyCapture requestBody = this.bodyPolicy.newCapture(request.getHeaders().getContentType());
+        if (requestBody != null) {
+            context.setRequestBody(requestBody);
+            request = new BodyCapturingServerHttpRequest(request, requestBody);
+        }
+        return exchange.mutate()
+                .request(request)
+                .response(new BodyCapturingServerHttpResponse(exchange.getResponse(), this.bodyPolicy, context))
+                .build();
+    }
+
+    private void completeExchange(ServerWebExchange exchange, RestTraceSampler.Decision decision, RestTraceContext context, boolean failed) {
+        context.complete(System.nanoTime());
+        recordLatency(exchange, context.getDurationNanos(), failed);
+        if (decision == RestTraceSampler.Decision.TRACE) {
+            traceResponse(exchange.getRequest(), exchange.getResponse(), context);
+        } else if (this.sampler.isTailSampled(statusCodeOf(exchange.getResponse(), failed), context.getDurationNanos())) {
+            // request has been deferred until now, since only the outcome of the exchange tells if it is traced
+            traceRequest(exchange.getRequest(), context);
+            traceResponse(exchange.getRequest(), exchange.getResponse(), context);
+        }
+    }
+
+    private void recordLatency(ServerWebExchange exchange, long durationNanos, boolean failed) {
+        if (this.latencyRecorder != null) {
+            int statusCode = statusCodeOf(exchange.getResponse(), failed);
+            String route = RestRoutes.routeOf(exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE), statusCode);
+            this.latencyRecorder.record(route, exchange.getRequest().getMethod().name(), statusCode, durationNanos);
+        }
+    }
+
+    private static int statusCodeOf(ServerHttpResponse response, boolean failed) {
+        HttpStatusCode status = response.getStatusCode();
+        int result = status != null ? status.value() : 200;
+        if (failed && result < 400) {
+            // error will be turned into an error response by the exception handlers of the web handler
+            result = 500;
+        }
+        return result;
+    }
+
+    private void traceRequest(ServerHttpRequest request, RestTraceContext context) {
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
+        }
+    }
+
+    private void traceResponse(ServerHttpRequest request, ServerHttpResponse response, RestTraceContext context) {
+        // buffer is borrowed from the thread emitting the terminal signal and returned before this method exits
+        StringBuilder traceMessage = this.messageBuffers.acquire();
+        try {
+            this.messageBuilder.build(traceMessage, request, response, context);
+            this.writer.write(traceMessage);
+        } finally {
+            this.messageBuffers.release(traceMessage);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+/**
+ * {@code Writer} which emits REST trace messages built by a {@link RestTraceMessageBuilder}.
+ */
+public interface RestTraceWriter {
+
+    /**
+     * Returns {@code true}, if trace messages passed to this writer will actually be emitted.
+     */
+    boolean isEnabled();
+
+    /**
+     * Emits the given trace message.
+     * <p>
+     * The given character sequence may be a recycled buffer; implementations must not retain it after this method returns.
+     * </p>
+     *
+     * @param traceMessage trace message to emit
+     */
+    void write(CharSequence traceMessage);
+}
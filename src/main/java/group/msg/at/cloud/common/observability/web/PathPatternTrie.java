@@ -0,0 +1,241 @@
+package group.msg.at.cloud.common.observability.web;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches request paths against a set of {@code PathPattern}s compiled into a trie of their literal leading segments.
+ * <p>
+ * Matching walks the trie along the segments of the path, so its cost is proportional to the length of the path
+ * instead of the number of patterns, and it doesn't allocate. Patterns ending with {@code /**} or {@code /{*name}}
+ * after literal segments, like {@code /actuator/**}, and purely literal patterns are decided by the trie alone;
+ * only the remaining patterns with wildcards or captures in between are evaluated by {@code PathPattern} itself,
+ * once the walk reaches their literal prefix. Paths with encoded characters, matrix parameters or empty segments
+ * are always evaluated by {@code PathPattern}. Patterns must be parsed case-sensitively, which is the default.
+ * </p>
+ */
+public final class PathPatternTrie {
+
+    private final List<PathPattern> patterns;
+
+    private final Node root;
+
+    public PathPatternTrie(Collection<PathPattern> patterns) {
+        this.patterns = List.copyOf(patterns);
+        NodeBuilder rootBuilder = new NodeBuilder();
+        for (PathPattern current : this.patterns) {
+            rootBuilder.insert(current);
+        }
+        this.root = rootBuilder.build();
+    }
+
+    public List<PathPattern> getPatterns() {
+        return patterns;
+    }
+
+    public boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /**
+     * Returns {@code true}, if the given path matches any of the patterns.
+     */
+    public boolean matches(String path) {
+        return matches(path, 0);
+    }
+
+    /**
+     * Returns {@code true}, if the part of the given path starting at the given index matches any of the patterns,
+     * e.g. the request URI without the context path.
+     */
+    public boolean matches(String path, int start) {
+        if (this.patterns.isEmpty()) {
+            return false;
+        }
+        int length = path.length();
+        if (start == length || path.charAt(start) != '/' || requiresPathPattern(path, start)) {
+            return matchesAny(this.patterns, path, start);
+        }
+        Node node = this.root;
+        int index = start + 1;
+        boolean trailingSlash = false;
+        while (true) {
+            if (node.prefix) {
+                return true;
+            }
+            if (node.residual != null && matchesAny(node.residual, path, start)) {
+                return true;
+            }
+            if (index >= length) {
+                // trailing slashes are matched according to the configuration of the pattern parser
+                return node.exact != null && (!trailingSlash || matchesAny(node.exact, path, start));
+            }
+            int end = path.indexOf('/', index);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.child(path, index, end);
+            if (node == null) {
+                return false;
+            }
+            trailingSlash = end == length - 1;
+            index = end + 1;
+        }
+    }
+
+    /**
+     * Returns {@code true}, if the path contains anything which is decoded or removed before {@code PathPattern}
+     * matches segments, or any empty segments apart from a trailing slash.
+     */
+    private static boolean requiresPathPattern(String path, int start) {
+        char previous = 0;
+        for (int i = start; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' || c == ';' || (c == '/' && previous == '/')) {
+                return true;
+            }
+            previous = c;
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(List<PathPattern> patterns, String path, int start) {
+        PathContainer pathContainer = PathContainer.parsePath(start == 0 ? path : path.substring(start));
+        for (PathPattern current : patterns) {
+            if (current.matches(pathContainer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Immutable trie node; children are held in an open-addressing hash table keyed by segment.
+     */
+    private static final class Node {
+
+        private final String[] segments;
+
+        private final Node[] children;
+
+        private final int mask;
+
+        private final boolean prefix;
+
+        private final List<PathPattern> exact;
+
+        private final List<PathPattern> residual;
+
+        Node(Map<String, Node> children, boolean prefix, List<PathPattern> exact, List<PathPattern> residual) {
+            int capacity = Integer.highestOneBit(Math.max(2, children.size() * 2) - 1) << 1;
+            this.segments = new String[capacity];
+            this.children = new Node[capacity];
+            this.mask = capacity - 1;
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                String segment = entry.getKey();
+                int index = hash(segment, 0, segment.length()) & this.mask;
+                while (this.segments[index] != null) {
+                    index = (index + 1) & this.mask;
+                }
+                this.segments[index] = segment;
+                this.children[index] = entry.getValue();
+            }
+            this.prefix = prefix;
+            this.exact = exact.isEmpty() ? null : List.copyOf(exact);
+            this.residual = residual.isEmpty() ? null : List.copyOf(residual);
+        }
+
+        Node child(String path, int start, int end) {
+            int length = end - start;
+            int index = hash(path, start, end) & this.mask;
+            String current;
+            while ((current = this.segments[index]) != null) {
+                if (current.length() == length && path.startsWith(current, start)) {
+                    return this.children[index];
+                }
+                index = (index + 1) & this.mask;
+            }
+            return null;
+        }
+
+        private static int hash(String value, int start, int end) {
+            int result = 0;
+            for (int i = start; i < end; i++) {
+                result = 31 * result + value.charAt(i);
+            }
+            return result ^ (result >>> 16);
+        }
+    }
+
+    /**
+     * Mutable trie node used while compiling the patterns.
+     */
+    private static final class NodeBuilder {
+
+        private final Map<String, NodeBuilder> children = new LinkedHashMap<>();
+
+        private final List<PathPattern> exact = new ArrayList<>();
+
+        private final List<PathPattern> residual = new ArrayList<>();
+
+        private boolean prefix;
+
+        void insert(PathPattern pattern) {
+            String patternString = pattern.getPatternString();
+            if (!patternString.startsWith("/")) {
+                this.residual.add(pattern);
+                return;
+            }
+            if (patternString.length() == 1) {
+                this.exact.add(pattern);
+                return;
+            }
+            String[] segments = patternString.substring(1).split("/", -1);
+            NodeBuilder node = this;
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                boolean last = i == segments.length - 1;
+                if (last && segment.isEmpty()) {
+                    // trailing slash of the pattern itself
+                    node.residual.add(pattern);
+                    return;
+                }
+                if (last && (segment.equals("**") || (segment.startsWith("{*") && segment.endsWith("}")))) {
+                    node.prefix = true;
+                    return;
+                }
+                if (!isLiteral(segment)) {
+                    node.residual.add(pattern);
+                    return;
+                }
+                node = node.children.computeIfAbsent(segment, key -> new NodeBuilder());
+            }
+            node.exact.add(pattern);
+        }
+
+        Node build() {
+            Map<String, Node> builtChildren = new LinkedHashMap<>();
+            this.children.forEach((segment, child) -> builtChildren.put(segment, child.build()));
+            return new Node(builtChildren, this.prefix, this.exact, this.residual);
+        }
+
+        private static boolean isLiteral(String segment) {
+            if (segment.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (c == '*' || c == '?' || c == '{' || c == '}' || c == '\\' || c == '%' || c == ';') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
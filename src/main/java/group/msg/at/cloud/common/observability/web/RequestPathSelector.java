@@ -0,0 +1,89 @@
+package group.msg.at.cloud.common.observability.web;
+
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Selects the requests an observability filter processes by include and exclude lists of path patterns
+ * in {@code PathPattern} syntax, e.g. {@code /api/**}.
+ * <p>
+ * A request path is selected, if it matches any include pattern (or if there are none) and no exclude pattern.
+ * Both lists are compiled once into a {@link PathPatternTrie}, so skipping excluded requests like health checks
+ * and metrics scrapes costs a walk over the path segments only.
+ * </p>
+ */
+public final class RequestPathSelector {
+
+    private static final RequestPathSelector ALL = new RequestPathSelector(List.of(), List.of());
+
+    private final List<String> includes;
+
+    private final List<String> excludes;
+
+    private final PathPatternTrie includePatterns;
+
+    private final PathPatternTrie excludePatterns;
+
+    /**
+     * Creates a new selector.
+     *
+     * @param includes path patterns of the requests to process; an empty collection includes all requests
+     * @param excludes path patterns of the requests to skip, even if included
+     */
+    public RequestPathSelector(Collection<String> includes, Collection<String> excludes) {
+        this.includes = List.copyOf(includes);
+        this.excludes = List.copyOf(excludes);
+        this.includePatterns = new PathPatternTrie(parse(includes));
+        this.excludePatterns = new PathPatternTrie(parse(excludes));
+    }
+
+    /**
+     * Returns a selector which selects all requests.
+     */
+    public static RequestPathSelector all() {
+        return ALL;
+    }
+
+    /**
+     * Converts a servlet URL pattern into an equivalent path pattern: path prefix mappings like {@code /api/*} match all
+     * paths below the prefix, which takes {@code /api/**} as path pattern.
+     */
+    public static String fromServletUrlPattern(String urlPattern) {
+        return urlPattern.endsWith("/*") ? urlPattern + "*" : urlPattern;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Returns {@code true}, if requests with the given path within the application are processed.
+     */
+    public boolean selects(String path) {
+        return selects(path, 0);
+    }
+
+    /**
+     * Returns {@code true}, if requests with the given path are processed, ignoring all characters before the given index;
+     * e.g. pass the request URI and the length of the context path.
+     */
+    public boolean selects(String path, int start) {
+        return !this.excludePatterns.matches(path, start) && (this.includePatterns.isEmpty() || this.includePatterns.matches(path, start));
+    }
+
+    @Override
+    public String toString() {
+        return "RequestPathSelector{includes=" + includes + ", excludes=" + excludes + '}';
+    }
+
+    private static List<PathPattern> parse(Collection<String> patterns) {
+        return patterns.stream().map(String::trim).filter(pattern -> !pattern.isEmpty()).map(PathPatternParser.defaultInstance::parse).toList();
+    }
+}
@@ -0,0 +1,199 @@
+package group.msg.at.cloud.common.observability.context;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Feeds randomly mutated trace headers to {@link TraceContextParser} and fails if the parser throws
+ * or disagrees with a regular expression based reference implementation.
+ * <p>
+ * {@code TraceContextParserTest} runs it with a fixed seed as part of the build; longer runs with other seeds:
+ * </p>
+ * <pre>
+ * mvn -P jmh test-compile exec:exec -Djmh.main=group.msg.at.cloud.common.observability.context.TraceContextParserFuzzer \
+ *     -Djmh.args="[iterations] [seed]"
+ * </pre>
+ */
+public final class TraceContextParserFuzzer {
+
+    private static final int DEFAULT_ITERATIONS = 1_000_000;
+
+    private static final String HEX = "[0-9a-f]";
+
+    private static final String SEPARATOR = "(?::|%3[aA])";
+
+    private static final Pattern W3C = Pattern.compile("(?!ff)(" + HEX + "{2})-(?!0{32})(" + HEX + "{32})-(?!0{16})(" + HEX + "{16})-" + HEX + "(" + HEX + ")(-.*)?\\z", Pattern.DOTALL);
+
+    private static final Pattern B3_SINGLE = Pattern.compile("(?!0+-)(" + HEX + "{16}|" + HEX + "{32})-(?!0{16})(" + HEX + "{16})(?:-([01d])(?:-" + HEX + "{16})?)?\\z");
+
+    private static final Pattern JAEGER = Pattern.compile("(?!0+" + SEPARATOR + ")([0-9a-fA-F]{1,32})" + SEPARATOR
+            + "(?!0+" + SEPARATOR + ")([0-9a-fA-F]{1,16})" + SEPARATOR + "[0-9a-fA-F]{1,16}" + SEPARATOR + "[0-9a-fA-F]?([0-9a-fA-F])\\z");
+
+    private static final String[] SEEDS = {
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00",
+            "01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-future",
+            "4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-1-05e3ac9a4f6e3b90",
+            "a3ce929d0e0e4736-00f067aa0ba902b7-d",
+            "a3ce929d0e0e4736-00f067aa0ba902b7",
+            "4bf92f3577b34da6a3ce929d0e0e4736:00f067aa0ba902b7:0:1",
+            "4bf92f3577b34da6a3ce929d0e0e4736%3A00f067aa0ba902b7%3A0%3A1",
+            "abc%3adef%3a0%3a03",
+            "k1=v1,userId = alice;prop=1, tenant=acme%20corp",
+    };
+
+    private static final String ALPHABET = "0123456789abcdefABCDEF-:%3Adf ;=,\t\nä\ud83d";
+
+    private TraceContextParserFuzzer() {
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        try {
+            int accepted = run(iterations, seed);
+            System.out.printf("PASSED %d iterations with seed %d, %d inputs accepted%n", iterations, seed, accepted);
+        } catch (AssertionError ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Fuzzes the parser with the given number of inputs mutated by a random generator with the given seed.
+     *
+     * @return number of inputs accepted by any of the parsers
+     * @throws AssertionError if the parser throws or disagrees with the reference implementation
+     */
+    static int run(int iterations, long seed) {
+        Random random = new Random(seed);
+        TraceContext traceContext = new TraceContext();
+        int accepted = 0;
+        for (int i = 0; i < iterations; i++) {
+            String input = mutate(SEEDS[random.nextInt(SEEDS.length)], random);
+            try {
+                accepted += check(input, traceContext);
+            } catch (RuntimeException | AssertionError ex) {
+                throw new AssertionError(String.format("FAILED after %d iterations with seed %d on input [%s]: %s", i, seed, escape(input), ex), ex);
+            }
+        }
+        return accepted;
+    }
+
+    private static int check(String input, TraceContext traceContext) {
+        int accepted = 0;
+        traceContext.clear();
+        Matcher w3c = W3C.matcher(input);
+        boolean w3cValid = w3c.matches() && (!w3c.group(1).equals("00") || w3c.group(5) == null);
+        verify("W3C", input, TraceContextParser.parseTraceparent(input, traceContext), w3cValid, traceContext,
+                w3cValid ? w3c.group(2) : null, w3cValid ? w3c.group(3) : null, w3cValid ? (Character.digit(w3c.group(4).charAt(0), 16) & 1) != 0 : null);
+        accepted += w3cValid ? 1 : 0;
+
+        traceContext.clear();
+        Matcher b3 = B3_SINGLE.matcher(input);
+        boolean b3Valid = b3.matches();
+        verify("B3 single", input, TraceContextParser.parseB3Single(input, traceContext), b3Valid, traceContext,
+                b3Valid ? b3.group(1) : null, b3Valid ? b3.group(2) : null, b3Valid && b3.group(3) != null ? !b3.group(3).equals("0") : null);
+        accepted += b3Valid ? 1 : 0;
+
+        traceContext.clear();
+        Matcher jaeger = JAEGER.matcher(input);
+        boolean jaegerValid = jaeger.matches();
+        verify("Jaeger", input, TraceContextParser.parseJaeger(input, traceContext), jaegerValid, traceContext,
+                jaegerValid ? jaeger.group(1) : null, jaegerValid ? jaeger.group(2) : null, jaegerValid ? (Character.digit(jaeger.group(3).charAt(0), 16) & 1) != 0 : null);
+        accepted += jaegerValid ? 1 : 0;
+
+        // B3 multi headers are validated one by one, so the input is used as either of them
+        traceContext.clear();
+        boolean b3MultiValid = input.matches("(?!0+\\z)(" + HEX + "{16}|" + HEX + "{32})\\z");
+        verify("B3 multi", input, TraceContextParser.parseB3Multi(input, "00f067aa0ba902b7", null, null, traceContext), b3MultiValid, traceContext,
+                b3MultiValid ? input : null, b3MultiValid ? "00f067aa0ba902b7" : null, null);
+
+        String expectedBaggage = referenceBaggageValue(input, "tenant");
+        String actualBaggage = TraceContextParser.baggageValue(input, "tenant");
+        if (expectedBaggage != null && expectedBaggage.indexOf('%') < 0 && !expectedBaggage.equals(actualBaggage)) {
+            throw new AssertionError("baggage: expected [" + expectedBaggage + "], but got [" + actualBaggage + "]");
+        }
+        if (expectedBaggage == null && actualBaggage != null) {
+            throw new AssertionError("baggage: expected none, but got [" + actualBaggage + "]");
+        }
+        return accepted;
+    }
+
+    private static void verify(String format, String input, boolean actualValid, boolean expectedValid, TraceContext traceContext,
+                               String expectedTraceId, String expectedSpanId, Boolean expectedSampled) {
+        if (actualValid != expectedValid) {
+            throw new AssertionError(format + ": expected valid=" + expectedValid + ", but got " + actualValid);
+        }
+        if (actualValid != traceContext.isValid()) {
+            throw new AssertionError(format + ": trace context validity doesn't match result " + actualValid);
+        }
+        if (expectedValid && (!expectedTraceId.equals(traceContext.getTraceId()) || !expectedSpanId.equals(traceContext.getSpanId())
+                || expectedSampled != traceContext.getSampled())) {
+            throw new AssertionError(format + ": expected traceId=" + expectedTraceId + ", spanId=" + expectedSpanId
+                    + ", sampled=" + expectedSampled + ", but got " + traceContext);
+        }
+    }
+
+    private static String referenceBaggageValue(String baggage, String key) {
+        for (String member : baggage.split(",", -1)) {
+            int equals = member.indexOf('=');
+            if (equals >= 0 && strip(member.substring(0, equals)).equals(key)) {
+                String value = member.substring(equals + 1);
+                int properties = value.indexOf(';');
+                return strip(properties >= 0 ? value.substring(0, properties) : value);
+            }
+        }
+        return null;
+    }
+
+    private static String strip(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && (value.charAt(start) == ' ' || value.charAt(start) == '\t')) {
+            start++;
+        }
+        while (end > start && (value.charAt(end - 1) == ' ' || value.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        return value.substring(start, end);
+    }
+
+    private static String mutate(String seed, Random random) {
+        StringBuilder result = new StringBuilder(seed);
+        int mutations = random.nextInt(4);
+        for (int i = 0; i < mutations; i++) {
+            int index = result.length() == 0 ? 0 : random.nextInt(result.length());
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    if (result.length() > 0) {
+                        result.setCharAt(index, ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                    }
+                }
+                case 1 -> result.insert(index, ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                case 2 -> {
+                    if (result.length() > 0) {
+                        result.deleteCharAt(index);
+                    }
+                }
+                case 3 -> result.setLength(index);
+                default -> result.append(result, index, Math.min(result.length(), index + 1 + random.nextInt(8)));
+            }
+        }
+        return result.toString();
+    }
+
+    private static String escape(String value) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7e) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package group.msg.at.cloud.common.observability.context;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+class TraceContextParserTest {
+
+    private static final String W3C = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    private static final String B3_SINGLE = "80f198ee56343ba864fe8b2a57d3eff7-e457b5a2e4d86bd1-0";
+
+    private static final String B3_TRACE_ID = "463ac35c9f6413ad48485a3953bb6124";
+
+    private static final String B3_SPAN_ID = "a2fb4a1d1a96d312";
+
+    private static final String JAEGER = "5af7183fb1d4cf5f:6b221d5bc9e6496c:0:1";
+
+    private final TraceContext traceContext = new TraceContext();
+
+    @Test
+    void fuzzerFindsNoDeviationFromReferenceImplementation() {
+        int accepted = TraceContextParserFuzzer.run(200_000, 42L);
+
+        assertThat(accepted).isPositive();
+    }
+
+    static Stream<Arguments> precedence() {
+        return Stream.of(
+                arguments(headers("traceparent", W3C, "b3", B3_SINGLE, "X-B3-TraceId", B3_TRACE_ID, "X-B3-SpanId", B3_SPAN_ID, "uber-trace-id", JAEGER),
+                        TraceContext.Format.W3C, "4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7", true),
+                arguments(headers("b3", B3_SINGLE, "X-B3-TraceId", B3_TRACE_ID, "X-B3-SpanId", B3_SPAN_ID, "uber-trace-id", JAEGER),
+                        TraceContext.Format.B3_SINGLE, "80f198ee56343ba864fe8b2a57d3eff7", "e457b5a2e4d86bd1", false),
+                arguments(headers("X-B3-TraceId", B3_TRACE_ID, "X-B3-SpanId", B3_SPAN_ID, "X-B3-Sampled", "1", "uber-trace-id", JAEGER),
+                        TraceContext.Format.B3_MULTI, B3_TRACE_ID, B3_SPAN_ID, true),
+                arguments(headers("uber-trace-id", JAEGER),
+                        TraceContext.Format.JAEGER, "5af7183fb1d4cf5f", "6b221d5bc9e6496c", true),
+                // malformed headers of higher precedence fall through to the next valid one
+                arguments(headers("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7", "b3", B3_SINGLE),
+                        TraceContext.Format.B3_SINGLE, "80f198ee56343ba864fe8b2a57d3eff7", "e457b5a2e4d86bd1", false),
+                arguments(headers("b3", "0", "X-B3-TraceId", B3_TRACE_ID, "X-B3-SpanId", B3_SPAN_ID),
+                        TraceContext.Format.B3_MULTI, B3_TRACE_ID, B3_SPAN_ID, null),
+                arguments(headers("X-B3-TraceId", B3_TRACE_ID, "uber-trace-id", JAEGER),
+                        TraceContext.Format.JAEGER, "5af7183fb1d4cf5f", "6b221d5bc9e6496c", true),
+                arguments(headers("uber-trace-id", "5af7183fb1d4cf5f%3A6b221d5bc9e6496c%3A0%3A0"),
+                        TraceContext.Format.JAEGER, "5af7183fb1d4cf5f", "6b221d5bc9e6496c", false)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("precedence")
+    void extractTakesFirstValidHeaderInOrderOfPrecedence(Map<String, String> headers, TraceContext.Format format,
+                                                          String traceId, String spanId, Boolean sampled) {
+        boolean result = TraceContextParser.extract(headers, Map::get, this.traceContext);
+
+        assertThat(result).isTrue();
+        assertThat(this.traceContext.getFormat()).isEqualTo(format);
+        assertThat(this.traceContext.getTraceId()).isEqualTo(traceId);
+        assertThat(this.traceContext.getSpanId()).isEqualTo(spanId);
+        assertThat(this.traceContext.getSampled()).isEqualTo(sampled);
+    }
+
+    @Test
+    void extractWithoutTraceHeadersClearsTraceContext() {
+        TraceContextParser.parseTraceparent(W3C, this.traceContext);
+
+        boolean result = TraceContextParser.extract(Map.of("baggage", "userId=alice"), Map::get, this.traceContext);
+
+        assertThat(result).isFalse();
+        assertThat(this.traceContext.isValid()).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-future",
+            "ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+            "00-00000000000000000000000000000000-00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01",
+            "00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01",
+            "00_4bf92f3577b34da6a3ce929d0e0e4736_00f067aa0ba902b7_01",
+            "01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01future",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-0g"
+    })
+    void parseTraceparentRejectsMalformedHeader(String header) {
+        assertThat(TraceContextParser.parseTraceparent(header, this.traceContext)).isFalse();
+        assertThat(this.traceContext.isValid()).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "0",
+            "d",
+            "80f198ee56343ba864fe8b2a57d3eff7",
+            "80f198ee56343ba8-e457b5a2e4d86bd",
+            "80f198ee56343ba864fe8b2a57d3eff-e457b5a2e4d86bd1",
+            "0000000000000000-e457b5a2e4d86bd1",
+            "80f198ee56343ba8-0000000000000000",
+            "80f198ee56343ba8-e457b5a2e4d86bd1-x",
+            "80f198ee56343ba8-e457b5a2e4d86bd1-1-05e3ac9a4f6e3b9"
+    })
+    void parseB3SingleRejectsMalformedHeader(String header) {
+        assertThat(TraceContextParser.parseB3Single(header, this.traceContext)).isFalse();
+        assertThat(this.traceContext.isValid()).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "5af7183fb1d4cf5f:6b221d5bc9e6496c:0",
+            "5af7183fb1d4cf5f:6b221d5bc9e6496c:0:",
+            "0:6b221d5bc9e6496c:0:1",
+            "5af7183fb1d4cf5f:0:0:1",
+            "5af7183fb1d4cf5f::0:1",
+            "5af7183fb1d4cf5f:6b221d5bc9e6496c:0:100",
+            "5af7183fb1d4cf5f:6b221d5bc9e6496c0:0:1",
+            "5af7183fb1d4cf5f%3B6b221d5bc9e6496c%3B0%3B1",
+            "5af7183fb1d4cf5f:6b221d5bc9e6496c:0:1:"
+    })
+    void parseJaegerRejectsMalformedHeader(String header) {
+        assertThat(TraceContextParser.parseJaeger(header, this.traceContext)).isFalse();
+        assertThat(this.traceContext.isValid()).isFalse();
+    }
+
+    @Test
+    void parseB3MultiRejectsMissingOrMalformedSpanId() {
+        assertThat(TraceContextParser.parseB3Multi(B3_TRACE_ID, null, "1", null, this.traceContext)).isFalse();
+        assertThat(TraceContextParser.parseB3Multi(B3_TRACE_ID, "a2fb4a1d1a96d31", "1", null, this.traceContext)).isFalse();
+        assertThat(TraceContextParser.parseB3Multi("463ac35c9f6413a", B3_SPAN_ID, "1", null, this.traceContext)).isFalse();
+        assertThat(this.traceContext.isValid()).isFalse();
+    }
+
+    @Test
+    void parseB3MultiTakesDebugFlagAsSampled() {
+        assertThat(TraceContextParser.parseB3Multi(B3_TRACE_ID, B3_SPAN_ID, "0", "1", this.traceContext)).isTrue();
+        assertThat(this.traceContext.getSampled()).isTrue();
+    }
+
+    private static Map<String, String> headers(String... namesAndValues) {
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            result.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return result;
+    }
+}
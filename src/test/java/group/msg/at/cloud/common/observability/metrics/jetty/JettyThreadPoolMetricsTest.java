@@ -0,0 +1,42 @@
+package group.msg.at.cloud.common.observability.metrics.jetty;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JettyThreadPoolMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final JettyThreadPoolMetrics metrics = new JettyThreadPoolMetrics();
+
+    @Test
+    void threadPoolWithDefaultNameIsTaggedWithStableName() {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        this.metrics.bindTo(this.meterRegistry);
+
+        this.metrics.bindTo(new Server(threadPool));
+
+        assertThat(threadPool.getName()).startsWith("qtp");
+        assertThat(this.meterRegistry.find("jetty.threads.max.pool.size").tag("name", JettyThreadPoolMetrics.DEFAULT_THREAD_POOL_NAME).gauge()).isNotNull();
+    }
+
+    @Test
+    void threadPoolWithExplicitNameIsTaggedWithItsName() {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("api");
+        this.metrics.bindTo(this.meterRegistry);
+
+        this.metrics.bindTo(new Server(threadPool));
+
+        assertThat(this.meterRegistry.find("jetty.threads.max.pool.size").tag("name", "api").gauge()).isNotNull();
+    }
+
+    @Test
+    void nameOfThreadPoolIsStableAcrossInstances() {
+        assertThat(JettyThreadPoolMetrics.nameOf(new QueuedThreadPool())).isEqualTo(JettyThreadPoolMetrics.nameOf(new QueuedThreadPool()));
+    }
+}
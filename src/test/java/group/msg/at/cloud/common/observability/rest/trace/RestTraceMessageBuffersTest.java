@@ -0,0 +1,219 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Enforces what {@code RestTraceMessageBuffersBenchmark} shows with the GC profiler: building trace messages of
+ * outgoing requests and their responses into recycled buffers produces no garbage once the buffer of the current
+ * thread has grown to the message size.
+ * <p>
+ * The only allocations left in steady state are the iterators over the entries of the {@code HttpHeaders}, which
+ * the builders can't avoid without copying the headers. They don't depend on the number or size of the headers,
+ * so each message may allocate at most {@link #TOLERATED_BYTES_PER_HEADERS_ITERATION}, far less than the message.
+ * </p>
+ */
+class RestTraceMessageBuffersTest {
+
+    private static final int WARMUP_BUILDS = 10_000;
+
+    private static final int MEASURED_BUILDS = 10_000;
+
+    /**
+     * Bytes a single iteration over the entries of {@code HttpHeaders} may allocate: the iterator of the
+     * {@code LinkedCaseInsensitiveMap} and the one of its backing {@code LinkedHashMap}, 64 bytes with compressed oops.
+     */
+    private static final long TOLERATED_BYTES_PER_HEADERS_ITERATION = 96;
+
+    /**
+     * Bytes the measurement itself may allocate.
+     */
+    private static final long TOLERATED_BYTES = 256;
+
+    private static final int MAX_VALUE_LENGTH = 64;
+
+    private static final RestTraceHeaderPolicy HEADER_POLICY = new RestTraceHeaderPolicy(
+            RestTraceHeaderPolicy.DEFAULT_REDACTED_HEADERS, List.of(), List.of(), MAX_VALUE_LENGTH);
+
+    private final StubRequest request = new StubRequest(URI.create("http://localhost:8080/api/v1/customers/4711?expand=orders"), headers(
+            HttpHeaders.AUTHORIZATION, "Bearer " + "eyJhbGciOiJSUzI1NiJ9".repeat(16),
+            HttpHeaders.ACCEPT, "application/json",
+            HttpHeaders.USER_AGENT, "cnj-observability-test/1.0 " + "x".repeat(2 * MAX_VALUE_LENGTH),
+            "traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+
+    private final StubResponse response = new StubResponse(HttpStatus.OK, headers(
+            HttpHeaders.CONTENT_TYPE, "application/json",
+            HttpHeaders.SET_COOKIE, "SESSION=5d2e1a7c-0b3f-4a8e-9c6d-2f1e0a9b8c7d; Path=/; HttpOnly",
+            HttpHeaders.VARY, "Origin",
+            HttpHeaders.VARY, "Access-Control-Request-Method",
+            "X-Request-Details", "y".repeat(4 * MAX_VALUE_LENGTH)));
+
+    private final RestTraceContext context = new RestTraceContext(System.nanoTime());
+
+    private ThreadMXBean threadMXBean;
+
+    static Stream<RestTraceMessageBuilder> builders() {
+        return Stream.of(new DefaultRestTraceMessageBuilder(HEADER_POLICY), new JsonRestTraceMessageBuilder(HEADER_POLICY));
+    }
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        this.threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(this.threadMXBean.isThreadAllocatedMemorySupported());
+        this.threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        this.context.complete(this.context.getStartNanos() + 42_000_000);
+    }
+
+    @ParameterizedTest
+    @MethodSource("builders")
+    void builtMessagesRedactAndTruncateHeaders(RestTraceMessageBuilder builder) {
+        StringBuilder requestMessage = new StringBuilder();
+        StringBuilder responseMessage = new StringBuilder();
+
+        builder.build(requestMessage, this.request, this.context);
+        builder.build(responseMessage, this.request, this.response, this.context);
+
+        assertThat(requestMessage).contains("_redacted(327)_", "_truncated(155)_").doesNotContain("Bearer");
+        assertThat(responseMessage).contains("_redacted(62)_", "_truncated(256)_").doesNotContain("SESSION");
+    }
+
+    @ParameterizedTest
+    @MethodSource("builders")
+    void recyclingBuffersProduceNoGarbageInSteadyState(RestTraceMessageBuilder builder) {
+        RestTraceMessageBuffers buffers = RestTraceMessageBuffers.recycling(RestTraceMessageBuffers.DEFAULT_INITIAL_CAPACITY,
+                RestTraceMessageBuffers.DEFAULT_MAX_RETAINED_CAPACITY);
+
+        long allocatedBytes = allocatedBytes(buffers, builder);
+
+        // both the request and the response message iterate over their headers once
+        assertThat(allocatedBytes).isLessThan(MEASURED_BUILDS * 2 * TOLERATED_BYTES_PER_HEADERS_ITERATION + TOLERATED_BYTES);
+    }
+
+    @ParameterizedTest
+    @MethodSource("builders")
+    void allocatingBuffersProduceGarbageForEachMessage(RestTraceMessageBuilder builder) {
+        RestTraceMessageBuffers buffers = RestTraceMessageBuffers.allocating();
+        int messageLength = buildMessages(buffers, builder);
+
+        long allocatedBytes = allocatedBytes(buffers, builder);
+
+        assertThat(allocatedBytes).isGreaterThan((long) MEASURED_BUILDS * messageLength);
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread while building request and response messages after a warm-up.
+     */
+    private long allocatedBytes(RestTraceMessageBuffers buffers, RestTraceMessageBuilder builder) {
+        int expectedLength = buildMessages(buffers, builder);
+        int checksum = 0;
+        for (int i = 0; i < WARMUP_BUILDS; i++) {
+            checksum += buildMessages(buffers, builder);
+        }
+        long before = this.threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_BUILDS; i++) {
+            checksum += buildMessages(buffers, builder);
+        }
+        long after = this.threadMXBean.getCurrentThreadAllocatedBytes();
+        assertThat(checksum).isEqualTo((WARMUP_BUILDS + MEASURED_BUILDS) * expectedLength);
+        return after - before;
+    }
+
+    /**
+     * Builds the request and the response message of the exchange and returns their total length.
+     */
+    private int buildMessages(RestTraceMessageBuffers buffers, RestTraceMessageBuilder builder) {
+        return buildRequestMessage(buffers, builder) + buildResponseMessage(buffers, builder);
+    }
+
+    private int buildRequestMessage(RestTraceMessageBuffers buffers, RestTraceMessageBuilder builder) {
+        StringBuilder traceMessage = buffers.acquire();
+        try {
+            builder.build(traceMessage, this.request, this.context);
+            return traceMessage.length();
+        } finally {
+            buffers.release(traceMessage);
+        }
+    }
+
+    private int buildResponseMessage(RestTraceMessageBuffers buffers, RestTraceMessageBuilder builder) {
+        StringBuilder traceMessage = buffers.acquire();
+        try {
+            builder.build(traceMessage, this.request, this.response, this.context);
+            return traceMessage.length();
+        } finally {
+            buffers.release(traceMessage);
+        }
+    }
+
+    private static HttpHeaders headers(String... namesAndValues) {
+        HttpHeaders result = new HttpHeaders();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            result.add(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return result;
+    }
+
+    private record StubRequest(URI uri, HttpHeaders headers) implements HttpRequest {
+
+        @Override
+        public HttpMethod getMethod() {
+            return HttpMethod.GET;
+        }
+
+        @Override
+        public URI getURI() {
+            return this.uri;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+    }
+
+    private record StubResponse(HttpStatusCode statusCode, HttpHeaders headers) implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return this.statusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package group.msg.at.cloud.common.observability.rest.trace;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RestTraceUriTemplateHandlerTest {
+
+    private final RestTraceUriTemplateHandler handler = new RestTraceUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:8080"));
+
+    @AfterEach
+    void tearDown() {
+        RestTraceUriTemplateHandler.takeCurrentTemplate(null);
+    }
+
+    @Test
+    void exchangeWithExpandedUriGetsTemplate() {
+        URI uri = this.handler.expand("/api/v1/customers/{id}", 42);
+
+        assertThat(RestTraceUriTemplateHandler.takeCurrentTemplate(uri)).isEqualTo("/api/v1/customers/{id}");
+        assertThat(RestTraceUriTemplateHandler.takeCurrentTemplate(uri)).isNull();
+    }
+
+    @Test
+    void exchangeWithUriPassedDirectlyDoesNotGetTemplateOfPreviousExpansion() {
+        this.handler.expand("/api/v1/customers/{id}", 42);
+
+        URI uri = URI.create("http://localhost:8080/api/v1/orders/4711");
+
+        assertThat(RestTraceUriTemplateHandler.takeCurrentTemplate(uri)).isNull();
+    }
+
+    @Test
+    void customizerCapturesTemplatesOfTracedRestTemplateWithoutLatencyMetrics() {
+        RestTraceClientInterceptor interceptor = new RestTraceClientInterceptor();
+        RestTemplate restTemplate = new RestTemplate();
+
+        new RestTraceRestTemplateCustomizer(interceptor).customize(restTemplate);
+        URI uri = restTemplate.getUriTemplateHandler().expand("/api/v1/users/{name}", "john");
+
+        assertThat(interceptor.getLatencyRecorder()).isNull();
+        assertThat(restTemplate.getUriTemplateHandler()).isInstanceOf(RestTraceUriTemplateHandler.class);
+        assertThat(RestTraceUriTemplateHandler.takeCurrentTemplate(uri)).isEqualTo("/api/v1/users/{name}");
+    }
+
+    @Test
+    void customizerInstallsTemplateHandlerOnlyOnce() {
+        RestTraceRestTemplateCustomizer customizer = new RestTraceRestTemplateCustomizer(new RestTraceClientInterceptor());
+        RestTemplate restTemplate = new RestTemplate();
+
+        customizer.customize(restTemplate);
+        RestTraceUriTemplateHandler handler = (RestTraceUriTemplateHandler) restTemplate.getUriTemplateHandler();
+        customizer.customize(restTemplate);
+
+        assertThat(restTemplate.getUriTemplateHandler()).isSameAs(handler);
+    }
+}